@@ -0,0 +1,207 @@
+package com.ud.bundle.bench;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.ContextBundle;
+import com.ud.bundle.FrozenAppContext;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of the per-request bundle accessors: {@link AppContext#getBundle}, {@link AppContext#useBundle} and
+ * {@link AppContext#isBundleRegistered}, both unqualified and qualified, against a context holding a handful of bundle types the way a
+ * typical service does. The frozen variants run the same lookups against {@link AppContext#freeze()}, the child variants create a
+ * per-request {@link AppContext#newChild()} and look up through one that shadows a single bundle. The legacy variants replicate the
+ * original {@code HashMap<BundleKey, ContextBundle>} registry (a key allocated per lookup, hashed through {@code Objects.hash}, then
+ * {@code containsKey} followed by {@code get}) as a fixed point of comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BundleLookupBenchmark {
+
+  private AppContext ctx;
+  private FrozenAppContext frozen;
+  private AppContext child;
+  private Map<LegacyBundleKey, ContextBundle> legacy;
+
+  @Setup
+  public void setup() {
+    ctx = new AppContext();
+    ctx.registerBundle(new DatabaseBundle());
+    ctx.registerBundle(new CacheBundle());
+    ctx.registerBundle(new MetricsBundle());
+    for (final Shard shard : Shard.values()) {
+      ctx.registerBundle(new DatabaseBundle(), shard);
+    }
+    frozen = ctx.freeze();
+    child = ctx.newChild();
+    child.registerBundle(new CacheBundle());
+
+    legacy = new HashMap<>();
+    legacy.put(new LegacyBundleKey(NoQualifier.INSTANCE, DatabaseBundle.class), ctx.getBundle(DatabaseBundle.class));
+    legacy.put(new LegacyBundleKey(NoQualifier.INSTANCE, CacheBundle.class), ctx.getBundle(CacheBundle.class));
+    legacy.put(new LegacyBundleKey(NoQualifier.INSTANCE, MetricsBundle.class), ctx.getBundle(MetricsBundle.class));
+    for (final Shard shard : Shard.values()) {
+      legacy.put(new LegacyBundleKey(shard, DatabaseBundle.class), ctx.getBundle(DatabaseBundle.class, shard));
+    }
+  }
+
+  @Benchmark
+  public DatabaseBundle getBundle() {
+    return ctx.getBundle(DatabaseBundle.class);
+  }
+
+  @Benchmark
+  public DatabaseBundle getQualifiedBundle() {
+    return ctx.getBundle(DatabaseBundle.class, Shard.SHARD_5);
+  }
+
+  @Benchmark
+  public void useBundle(final Blackhole bh) {
+    ctx.useBundle(CacheBundle.class, bh::consume);
+  }
+
+  @Benchmark
+  public boolean isBundleRegistered() {
+    return ctx.isBundleRegistered(MetricsBundle.class);
+  }
+
+  @Benchmark
+  public boolean isBundleRegisteredMiss() {
+    return ctx.isBundleRegistered(MetricsBundle.class, Shard.SHARD_0);
+  }
+
+  @Benchmark
+  public DatabaseBundle frozenGetBundle() {
+    return frozen.getBundle(DatabaseBundle.class);
+  }
+
+  @Benchmark
+  public DatabaseBundle frozenGetQualifiedBundle() {
+    return frozen.getBundle(DatabaseBundle.class, Shard.SHARD_5);
+  }
+
+  @Benchmark
+  public boolean frozenIsBundleRegisteredMiss() {
+    return frozen.isBundleRegistered(MetricsBundle.class, Shard.SHARD_0);
+  }
+
+  @Benchmark
+  public AppContext newChild() {
+    return ctx.newChild();
+  }
+
+  @Benchmark
+  public DatabaseBundle childGetParentBundle() {
+    return child.getBundle(DatabaseBundle.class);
+  }
+
+  @Benchmark
+  public CacheBundle childGetOwnBundle() {
+    return child.getBundle(CacheBundle.class);
+  }
+
+  @Benchmark
+  public DatabaseBundle legacyGetBundle() {
+    return legacyGet(DatabaseBundle.class, NoQualifier.INSTANCE);
+  }
+
+  @Benchmark
+  public DatabaseBundle legacyGetQualifiedBundle() {
+    return legacyGet(DatabaseBundle.class, Shard.SHARD_5);
+  }
+
+  @Benchmark
+  public boolean legacyIsBundleRegisteredMiss() {
+    return legacy.containsKey(new LegacyBundleKey(Shard.SHARD_0, MetricsBundle.class));
+  }
+
+  private <T extends ContextBundle> T legacyGet(final Class<T> clazz, final Enum<?> qualifier) {
+    final var key = new LegacyBundleKey(qualifier, clazz);
+    if (!legacy.containsKey(key)) {
+      throw new IllegalArgumentException("Bundle for " + clazz + " has not yet been registered.");
+    }
+    return clazz.cast(legacy.get(key));
+  }
+
+  enum Shard {
+    SHARD_0,
+    SHARD_1,
+    SHARD_2,
+    SHARD_3,
+    SHARD_4,
+    SHARD_5,
+    SHARD_6,
+    SHARD_7
+  }
+
+  public static final class DatabaseBundle implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+  }
+
+  public static final class CacheBundle implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+  }
+
+  public static final class MetricsBundle implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+  }
+
+  enum NoQualifier {
+    INSTANCE
+  }
+
+  private static final class LegacyBundleKey {
+
+    private final Enum<?> qualifier;
+    private final Class<?> clazz;
+
+    private LegacyBundleKey(final Enum<?> qualifier, final Class<?> clazz) {
+      this.qualifier = qualifier;
+      this.clazz = clazz;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final LegacyBundleKey that = (LegacyBundleKey) o;
+      return qualifier.equals(that.qualifier) && clazz.equals(that.clazz);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(qualifier, clazz);
+    }
+  }
+}
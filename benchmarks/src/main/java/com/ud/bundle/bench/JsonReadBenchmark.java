@@ -0,0 +1,59 @@
+package com.ud.bundle.bench;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.reader.JsonContextValueReader;
+import com.ud.bundle.reader.Utf8JsonContextValueReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of ingesting a JSON document through {@link JsonContextValueReader#readInto(AppContext)}, from an in-memory string into a fresh
+ * context. Reading from memory keeps disk I/O out of the numbers; the allocation figures include everything the reader buffers.
+ * {@code readUtf8Into} reads the same document from its UTF-8 bytes with {@link Utf8JsonContextValueReader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JsonReadBenchmark {
+
+  @Param({"100", "10000", "1000000"})
+  public int leaves;
+
+  private String json;
+  private ByteBuffer utf8;
+
+  @Setup
+  public void setup() {
+    json = SyntheticConfig.generate(leaves).json();
+    utf8 = ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public AppContext readInto() {
+    final var ctx = new AppContext();
+    new JsonContextValueReader(json).readInto(ctx);
+    return ctx;
+  }
+
+  @Benchmark
+  public AppContext readUtf8Into() {
+    final var ctx = new AppContext();
+    new Utf8JsonContextValueReader(utf8).readInto(ctx);
+    return ctx;
+  }
+}
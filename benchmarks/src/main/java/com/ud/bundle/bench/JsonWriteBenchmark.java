@@ -0,0 +1,46 @@
+package com.ud.bundle.bench;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.reader.JsonContextValueReader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of dumping a whole context back to JSON through {@link AppContext#writeJson(Writer)}. The output is discarded, so the GC
+ * profiler's normalised allocation rate is what the walk itself allocates, independent of where the JSON goes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JsonWriteBenchmark {
+
+  @Param({"10000", "1000000"})
+  public int leaves;
+
+  private AppContext ctx;
+
+  @Setup
+  public void setup() {
+    ctx = new AppContext();
+    new JsonContextValueReader(SyntheticConfig.generate(leaves).json()).readInto(ctx);
+  }
+
+  @Benchmark
+  public void writeJson() {
+    ctx.writeJson(Writer.nullWriter());
+  }
+}
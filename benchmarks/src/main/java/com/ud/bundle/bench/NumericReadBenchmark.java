@@ -0,0 +1,85 @@
+package com.ud.bundle.bench;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.ContextValue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of reading a numeric leaf that has already been looked up, the way hot code reads a timeout or a limit it holds on to. Covers
+ * leaves registered as numbers and as numeric strings, through the boxed {@link ContextValue#asNumber()} and the primitive accessors.
+ * {@link #legacyStringAsNumber()} replays the previous implementation, which parsed numeric strings on every read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NumericReadBenchmark {
+
+  private ContextValue longLeaf;
+  private ContextValue doubleLeaf;
+  private ContextValue longString;
+  private ContextValue doubleString;
+
+  @Setup
+  public void setup() {
+    final var ctx = new AppContext();
+    longLeaf = ctx.registerValue("timeoutMs", 2500L);
+    doubleLeaf = ctx.registerValue("ratio", 0.75);
+    longString = ctx.registerValue("env.timeoutMs", "2500");
+    doubleString = ctx.registerValue("env.ratio", "0.75");
+  }
+
+  @Benchmark
+  public long longLeafAsLong() {
+    return longLeaf.asLong();
+  }
+
+  @Benchmark
+  public long longLeafAsNumber() {
+    return longLeaf.asNumber().longValue();
+  }
+
+  @Benchmark
+  public double doubleLeafAsDouble() {
+    return doubleLeaf.asDouble();
+  }
+
+  @Benchmark
+  public long stringAsLong() {
+    return longString.asLong();
+  }
+
+  @Benchmark
+  public double stringAsDouble() {
+    return doubleString.asDouble();
+  }
+
+  @Benchmark
+  public double legacyStringAsNumber() {
+    return legacyAsNumber(doubleString.asString()).doubleValue();
+  }
+
+  private static Number legacyAsNumber(final String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (final NumberFormatException ignored) {
+    }
+    try {
+      return Double.parseDouble(value);
+    } catch (final NumberFormatException ignored) {
+    }
+    throw new UnsupportedOperationException("Cannot represent the value " + value + " as a number.");
+  }
+}
@@ -0,0 +1,72 @@
+package com.ud.bundle.bench;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.reader.JsonContextValueReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Boot-time cost of bringing a config into a fresh {@link AppContext} from disk: parsing the JSON file versus loading a snapshot written
+ * by {@link AppContext#writeSnapshot(Path)} from the same values. Both read from files, so both include going through the page cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SnapshotLoadBenchmark {
+
+  @Param({"10000", "1000000"})
+  public int leaves;
+
+  private Path dir;
+  private Path json;
+  private Path snapshot;
+
+  @Setup
+  public void setup() throws IOException {
+    dir = Files.createTempDirectory("snapshot-bench");
+    json = Files.writeString(dir.resolve("config.json"), SyntheticConfig.generate(leaves).json(), StandardCharsets.UTF_8);
+    snapshot = dir.resolve("config.snapshot");
+    final var ctx = new AppContext();
+    new JsonContextValueReader(json).readInto(ctx);
+    ctx.writeSnapshot(snapshot);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(json);
+    Files.deleteIfExists(snapshot);
+    Files.deleteIfExists(dir);
+  }
+
+  @Benchmark
+  public AppContext readJson() {
+    final var ctx = new AppContext();
+    new JsonContextValueReader(json).readInto(ctx);
+    return ctx;
+  }
+
+  @Benchmark
+  public AppContext loadSnapshot() {
+    final var ctx = new AppContext();
+    ctx.loadSnapshot(snapshot);
+    return ctx;
+  }
+}
@@ -0,0 +1,103 @@
+package com.ud.bundle.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates deterministic configuration shaped like a multi-tenant service config: a {@code services} object holding one block per
+ * service, each block contributing {@link #LEAVES_PER_SERVICE} leaves spread over nested objects and arrays. Keys and many leaf strings
+ * repeat across blocks, the same way they do in real configs.
+ */
+final class SyntheticConfig {
+
+  static final int LEAVES_PER_SERVICE = 10;
+
+  private final List<String> paths;
+  private final List<Object> values;
+  private final String json;
+
+  private SyntheticConfig(final List<String> paths, final List<Object> values, final String json) {
+    this.paths = paths;
+    this.values = values;
+    this.json = json;
+  }
+
+  static SyntheticConfig generate(final int leaves) {
+    if (leaves <= 0 || leaves % LEAVES_PER_SERVICE != 0) {
+      throw new IllegalArgumentException("Leaf count must be a positive multiple of " + LEAVES_PER_SERVICE + ". Was: " + leaves);
+    }
+    final int services = leaves / LEAVES_PER_SERVICE;
+    final var paths = new ArrayList<String>(leaves);
+    final var values = new ArrayList<Object>(leaves);
+    final var json = new StringBuilder(leaves * 24);
+    json.append("{\"services\":{");
+    for (int i = 0; i < services; i++) {
+      final var prefix = "services.s" + i + ".";
+      final var host = "host-" + (i % 50) + ".internal";
+      final long port = 8000 + (i % 100);
+      final long timeoutMs = 250L * (1 + (i % 8));
+      final var name = "service-" + i;
+      final long rps = 100L * (1 + (i % 20));
+      final long burst = rps * 2;
+      final double ratio = (i % 100) / 100.0;
+      final var tag0 = "tier-" + (i % 3);
+      final var tag1 = "zone-" + (i % 5);
+      final long weight = i % 16;
+
+      add(paths, values, prefix + "host", host);
+      add(paths, values, prefix + "port", port);
+      add(paths, values, prefix + "timeoutMs", timeoutMs);
+      add(paths, values, prefix + "name", name);
+      add(paths, values, prefix + "limits.rps", rps);
+      add(paths, values, prefix + "limits.burst", burst);
+      add(paths, values, prefix + "ratio", ratio);
+      add(paths, values, prefix + "tags.0", tag0);
+      add(paths, values, prefix + "tags.1", tag1);
+      add(paths, values, prefix + "weights.0", weight);
+
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("\"s").append(i).append("\":{")
+          .append("\"host\":\"").append(host).append("\",")
+          .append("\"port\":").append(port).append(',')
+          .append("\"timeoutMs\":").append(timeoutMs).append(',')
+          .append("\"name\":\"").append(name).append("\",")
+          .append("\"limits\":{\"rps\":").append(rps).append(",\"burst\":").append(burst).append("},")
+          .append("\"ratio\":").append(ratio).append(',')
+          .append("\"tags\":[\"").append(tag0).append("\",\"").append(tag1).append("\"],")
+          .append("\"weights\":[").append(weight).append("]}");
+    }
+    json.append("}}");
+    return new SyntheticConfig(paths, values, json.toString());
+  }
+
+  private static void add(final List<String> paths, final List<Object> values, final String path, final Object value) {
+    paths.add(path);
+    values.add(value);
+  }
+
+  int size() {
+    return paths.size();
+  }
+
+  String path(final int i) {
+    return paths.get(i);
+  }
+
+  Object value(final int i) {
+    return values.get(i);
+  }
+
+  String[] pathArray() {
+    return paths.toArray(new String[0]);
+  }
+
+  Object[] valueArray() {
+    return values.toArray();
+  }
+
+  String json() {
+    return json;
+  }
+}
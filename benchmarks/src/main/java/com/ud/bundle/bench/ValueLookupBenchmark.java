@@ -0,0 +1,92 @@
+package com.ud.bundle.bench;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.ContextValue;
+import com.ud.bundle.FrozenAppContext;
+import com.ud.bundle.ValuePath;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single {@link AppContext#getValue(String)} against a fully populated context. Lookups cycle through a fixed, shuffled sample
+ * of registered leaf paths so that the benchmark sees a realistic spread of keys rather than one hot entry. The precompiled variant looks
+ * up the same sample through {@link ValuePath} handles, the frozen one through {@link AppContext#freeze()}. The dense variant only looks
+ * up elements of numeric arrays, which are stored without a holder per element; run through {@link BenchmarkRunner}, its normalised
+ * allocation rate should be zero just like the precompiled one's, since the array hands out the same view of an element every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ValueLookupBenchmark {
+
+  private static final int SAMPLE_SIZE = 1024;
+
+  @Param({"100", "10000", "1000000"})
+  public int leaves;
+
+  private AppContext ctx;
+  private FrozenAppContext frozen;
+  private String[] sample;
+  private ValuePath[] compiledSample;
+  private ValuePath[] denseSample;
+  private int next;
+
+  @Setup
+  public void setup() {
+    final var config = SyntheticConfig.generate(leaves);
+    ctx = new AppContext();
+    for (int i = 0; i < config.size(); i++) {
+      ctx.registerValue(config.path(i), config.value(i));
+    }
+
+    final var random = new Random(42);
+    sample = new String[SAMPLE_SIZE];
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      sample[i] = config.path(random.nextInt(config.size()));
+    }
+    compiledSample = new ValuePath[SAMPLE_SIZE];
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      compiledSample[i] = ValuePath.of(sample[i]);
+    }
+    denseSample = new ValuePath[SAMPLE_SIZE];
+    final var services = config.size() / SyntheticConfig.LEAVES_PER_SERVICE;
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      denseSample[i] = ValuePath.of("services.s" + random.nextInt(services) + ".weights.0");
+    }
+    frozen = ctx.freeze();
+  }
+
+  @Benchmark
+  public ContextValue getValue() {
+    return ctx.getValue(sample[next++ & (SAMPLE_SIZE - 1)]);
+  }
+
+  @Benchmark
+  public ContextValue getValuePrecompiled() {
+    return ctx.getValue(compiledSample[next++ & (SAMPLE_SIZE - 1)]);
+  }
+
+  @Benchmark
+  public ContextValue getDenseElementPrecompiled() {
+    return ctx.getValue(denseSample[next++ & (SAMPLE_SIZE - 1)]);
+  }
+
+  @Benchmark
+  public ContextValue frozenGetValuePrecompiled() {
+    return frozen.getValue(compiledSample[next++ & (SAMPLE_SIZE - 1)]);
+  }
+}
@@ -0,0 +1,63 @@
+package com.ud.bundle.bench;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.ValueBatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of building a whole value tree through {@link AppContext#registerValue(String, Object)}, and through a {@link ValueBatch} fed the
+ * leaves in the same (document) order. One operation registers every leaf of the synthetic config into a fresh context, so the GC
+ * profiler's normalised allocation rate is the allocation per full ingest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ValueRegistrationBenchmark {
+
+  @Param({"100", "10000", "1000000"})
+  public int leaves;
+
+  private String[] paths;
+  private Object[] values;
+
+  @Setup
+  public void setup() {
+    final var config = SyntheticConfig.generate(leaves);
+    paths = config.pathArray();
+    values = config.valueArray();
+  }
+
+  @Benchmark
+  public AppContext registerValue() {
+    final var ctx = new AppContext();
+    for (int i = 0; i < paths.length; i++) {
+      ctx.registerValue(paths[i], values[i]);
+    }
+    return ctx;
+  }
+
+  @Benchmark
+  public AppContext registerBatch() {
+    final var ctx = new AppContext();
+    final var batch = ctx.batch();
+    for (int i = 0; i < paths.length; i++) {
+      batch.add(paths[i], values[i]);
+    }
+    batch.register();
+    return ctx;
+  }
+}
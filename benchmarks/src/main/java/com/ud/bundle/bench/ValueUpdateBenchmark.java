@@ -0,0 +1,57 @@
+package com.ud.bundle.bench;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.ContextValue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads of a leaf that is being updated at the same time, the way a rate limit or a feature flag is flipped at runtime while request
+ * threads keep reading it. Three readers share the value with one writer, so the read timings include the cost of seeing every update.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValueUpdateBenchmark {
+
+  private ContextValue limit;
+
+  @Setup
+  public void setup() {
+    limit = new AppContext().registerValue("limits.rps", 0L);
+  }
+
+  @Benchmark
+  @Group("readWhileUpdating")
+  @GroupThreads(3)
+  public long read() {
+    return limit.asLong();
+  }
+
+  @Benchmark
+  @Group("readWhileUpdating")
+  @GroupThreads(1)
+  public Object update() {
+    return limit.getAndUpdate(v -> (Long) v + 1);
+  }
+
+  @Benchmark
+  @Group("uncontendedUpdate")
+  public Object uncontendedUpdate() {
+    return limit.getAndUpdate(v -> (Long) v + 1);
+  }
+}
@@ -0,0 +1,95 @@
+package com.ud.bundle;
+
+import com.ud.bundle.QualifiedBundle.NoQualifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+// Hit and miss counters for getValue and getBundle, switched on through AppContext.enableMetrics. Only one in every sampleEvery lookups
+// (picked at random) is counted, and it is counted sampleEvery times, so the counts are estimates whose cost shrinks with the rate.
+// Counters are LongAdders so that hot paths read from many threads at once don't contend on a single cache line.
+//
+// Counters are keyed the same way the lookups are: values by qualifier and then normalised path, bundles by class and then qualifier.
+// Neither key is allocated to count a lookup. Lookups of paths that aren't registered at all share a single counter instead, since those
+// paths can be anything a caller makes up and counting them per path would grow the counters without bound.
+final class AccessMetrics {
+
+  private final int sampleEvery;
+  private final Map<Enum<?>, Map<String, Counter>> values = new ConcurrentHashMap<>();
+  private final Map<Class<?>, Map<Enum<?>, Counter>> bundles = new ConcurrentHashMap<>();
+  private final LongAdder unregisteredValues = new LongAdder();
+
+  AccessMetrics(final int sampleEvery) {
+    this.sampleEvery = sampleEvery;
+  }
+
+  int sampleEvery() {
+    return sampleEvery;
+  }
+
+  private boolean sampled() {
+    return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+  }
+
+  void value(@NotNull final String path, @NotNull final Enum<?> qualifier, final boolean hit) {
+    if (sampled()) {
+      values.computeIfAbsent(qualifier, q -> new ConcurrentHashMap<>())
+          .computeIfAbsent(path, p -> new Counter())
+          .add(hit, sampleEvery);
+    }
+  }
+
+  void unregisteredValue() {
+    if (sampled()) {
+      unregisteredValues.add(sampleEvery);
+    }
+  }
+
+  void bundle(@NotNull final Class<?> clazz, @NotNull final Enum<?> qualifier, final boolean hit) {
+    if (sampled()) {
+      bundles.computeIfAbsent(clazz, c -> new ConcurrentHashMap<>())
+          .computeIfAbsent(qualifier, q -> new Counter())
+          .add(hit, sampleEvery);
+    }
+  }
+
+  @NotNull
+  Map<Enum<?>, Map<String, Counter>> values() {
+    return values;
+  }
+
+  @NotNull
+  Map<Class<?>, Map<Enum<?>, Counter>> bundles() {
+    return bundles;
+  }
+
+  long unregisteredValues() {
+    return unregisteredValues.sum();
+  }
+
+  // Names a qualified lookup the way BundleKey does: the path or class name, followed by the qualifier in brackets when there is one.
+  @NotNull
+  static String name(@NotNull final String name, @NotNull final Enum<?> qualifier) {
+    return qualifier == NoQualifier.INSTANCE ? name : name + "[" + qualifier + "]";
+  }
+
+  static final class Counter {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private void add(final boolean hit, final int count) {
+      (hit ? hits : misses).add(count);
+    }
+
+    long hits() {
+      return hits.sum();
+    }
+
+    long misses() {
+      return misses.sum();
+    }
+  }
+}
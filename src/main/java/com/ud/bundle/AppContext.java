@@ -1,37 +1,183 @@
 package com.ud.bundle;
 
 import com.ud.bundle.QualifiedBundle.NoQualifier;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-public class AppContext {
-
-  private static final Pattern PATH_SPLITTER = Pattern.compile("\\.");
+public class AppContext implements AutoCloseable {
 
   public static final String VALUE_PATH_SEPARATOR = ".";
+  private static final int INITIAL_DENSE_CAPACITY = 8;
+  private static final String WILDCARD = "*";
+  private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+  // Closing tends to block on I/O (flushing, disconnecting), which has no business on the common pool that async applies and everything
+  // else in the process share, so close() brings threads of its own.
+  static final int CLOSE_THREADS = 4;
+  // How many children of a container writeJson lists per acquisition of the value lock.
+  private static final int WRITE_CHUNK_SIZE = 1024;
+  private static final CompletableFuture<Void> APPLIED = CompletableFuture.completedFuture(null);
 
   public static String joinPath(final String... parts) {
     return String.join(VALUE_PATH_SEPARATOR, parts);
   }
 
-  private final Map<BundleKey<? extends Enum<?>, ? extends ContextBundle>, ContextBundle> bundles = new HashMap<>();
-  private final Map<BundleKey<? extends Enum<?>, ? extends ContextBundle>, List<ContextBundle>> providedBundles = new HashMap<>();
-  private final Deque<BundleKey<? extends Enum<?>, ? extends ContextBundle>> registerStack = new ArrayDeque<>();
+  // Shared by every child that hasn't registered anything of its own yet, see newChild. Never written to.
+  private static final BundleRegistry NO_BUNDLES = new BundleRegistry();
+  private static final ContextValue NO_VALUES = new ObjectContainerValue(null);
+
+  // The context that lookups missing in this one fall through to, null for a context created through a constructor.
+  @Nullable
+  private final AppContext parent;
+
+  // Bundles can be registered from several threads at once (see registerAll), so everything about them is kept in concurrent
+  // structures. The register stack tracks which bundle is currently applying on each thread, so that bundles registered from inside an
+  // apply are attributed to the right provider no matter how many applies are running in parallel.
+  // Holds either the ContextBundle itself or, for bundles registered lazily that haven't been asked for yet, its LazyBundle.
+  // In a child both start out as shared empty instances and are only replaced with its own on the first bundle registered into it.
+  private volatile BundleRegistry bundles;
+  private volatile Map<BundleKey<? extends Enum<?>, ? extends ContextBundle>, List<ContextBundle>> providedBundles;
+  // The applies that haven't completed yet (see AsyncContextBundle), or that failed. Replaced along with the bundles map in a child.
+  private volatile Map<BundleKey<? extends Enum<?>, ? extends ContextBundle>, CompletableFuture<Void>> pending;
+  private final ThreadLocal<Deque<BundleKey<? extends Enum<?>, ? extends ContextBundle>>> registerStack;
+  // Null unless profiling was started, which keeps the cost of registering without it to a single read.
+  @Nullable
+  private volatile StartupProfiler profiler;
+  // Likewise null unless metrics were enabled.
+  @Nullable
+  private volatile AccessMetrics metrics;
+
+  // Value registration is serialised on valueLock, since it has to walk and grow the tree. Lookups only ever touch the indexes, which
+  // are concurrent so they never need the lock.
+  // In a child the tree and indexes likewise start out as shared empty instances, replaced under the lock on the first value registered
+  // into it. registeredPaths is replaced last, so a lookup that finds a path in it also sees the rest.
+  private final Object valueLock = new Object();
+  private volatile ContextValue root;
+  private volatile Set<String> registeredPaths;
+  // Values are indexed by their normalised path, per qualifier.
+  private volatile Map<Enum<?>, Map<String, ContextValue>> values;
+  // Path segments and leaf strings of every registered value, so that repeated keys and values are only kept once. Guarded by valueLock,
+  // null in a child that hasn't registered a value yet.
+  private InternTable strings;
+  private final ChangeDispatcher changes;
+  // Set by the first close, guarded by valueLock.
+  private boolean closed;
+
+  public AppContext() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  // Value change listeners are called on changeExecutor unless they were subscribed with an executor of their own.
+  public AppContext(@NotNull final Executor changeExecutor) {
+    Objects.requireNonNull(changeExecutor, "'changeExecutor' parameter must not be null.");
+    this.parent = null;
+    this.bundles = new BundleRegistry();
+    this.providedBundles = new ConcurrentHashMap<>();
+    this.pending = new ConcurrentHashMap<>();
+    this.registerStack = ThreadLocal.withInitial(ArrayDeque::new);
+    this.root = new ObjectContainerValue(null);
+    this.registeredPaths = ConcurrentHashMap.newKeySet();
+    this.values = new ConcurrentHashMap<>();
+    this.strings = new InternTable();
+    this.changes = new ChangeDispatcher(changeExecutor);
+  }
+
+  private AppContext(@NotNull final AppContext parent) {
+    this.parent = parent;
+    this.bundles = NO_BUNDLES;
+    this.providedBundles = Map.of();
+    this.pending = Map.of();
+    // Neither hold anything that is specific to a context: the stack only holds keys, and subscriptions are on the values themselves.
+    this.registerStack = parent.registerStack;
+    this.changes = parent.changes;
+    this.root = NO_VALUES;
+    this.registeredPaths = Set.of();
+    this.values = Map.of();
+  }
+
+  // Creates a context scoped to this one, e.g. per request or per tenant. Bundles and values registered into the child shadow the ones
+  // with the same key or path in this context (and its parents), everything else is looked up here. Nothing is copied: a child starts
+  // out sharing empty instances of everything, so creating one only allocates the child itself and its lock until something is
+  // registered into it. A child has its own profiling and metrics, and its own tree: paths are resolved in the nearest context that has
+  // them registered, and writeJson of the whole context, writeSnapshot and listing leaves only see what was registered into the child.
+  @NotNull
+  public AppContext newChild() {
+    return new AppContext(this);
+  }
+
+  // The bundles map of this context itself, replacing the shared empty one of a child first.
+  private BundleRegistry ownBundles() {
+    var registry = bundles;
+    if (registry == NO_BUNDLES) {
+      synchronized (valueLock) {
+        registry = bundles;
+        if (registry == NO_BUNDLES) {
+          providedBundles = new ConcurrentHashMap<>();
+          pending = new ConcurrentHashMap<>();
+          registry = new BundleRegistry();
+          bundles = registry;
+        }
+      }
+    }
+    return registry;
+  }
+
+  // Replaces the shared empty tree and indexes of a child with its own. Only ever called while holding the value lock.
+  private void ownValues() {
+    if (strings != null) {
+      return;
+    }
+    strings = new InternTable();
+    root = new ObjectContainerValue(null);
+    values = new ConcurrentHashMap<>();
+    registeredPaths = ConcurrentHashMap.newKeySet();
+  }
 
-  private final ContextValue root = new ObjectContainerValue(null);
-  private final Set<String> registeredPaths = new HashSet<>();
-  private final Map<ValueKey<? extends Enum<?>>, ContextValue> values = new HashMap<>();
+  // The context that the path is resolved in: this one when it has the path registered, or the nearest parent that does. Contexts that
+  // don't have it anywhere resolve it in the topmost one, so that it fails there like it would in any other context.
+  private AppContext resolving(final String path) {
+    var ctx = this;
+    while (ctx.parent != null && !ctx.registeredPaths.contains(path) && ctx.denseElementAt(path) == null) {
+      ctx = ctx.parent;
+    }
+    return ctx;
+  }
 
   // Values are one of 4 things:
   // - Container, which is one of:
@@ -76,119 +222,1001 @@ public class AppContext {
   }
 
   public ContextValue registerValue(@NotNull final String path, @NotNull final Object value, @NotNull final Enum<?> qualifier) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    return registerValue(ValuePath.of(path), value, qualifier);
+  }
+
+  public ContextValue registerValue(@NotNull final ValuePath path, @NotNull final Object value) {
+    return registerValue(path, value, NoQualifier.INSTANCE);
+  }
+
+  public ContextValue registerValue(@NotNull final ValuePath path, @NotNull final Object value, @NotNull final Enum<?> qualifier) {
     Objects.requireNonNull(path, "'path' parameter must not be null.");
     Objects.requireNonNull(value, "'value' parameter must not be null.");
+    Objects.requireNonNull(qualifier, "'qualifier' parameter must not be null.");
 
-    if (path.isBlank()) {
-      throw new IllegalArgumentException("'path' parameter must contain non-whitespace characters.");
+    synchronized (valueLock) {
+      ownValues();
+      return registerLeaf(path, value, qualifier);
     }
-    if (registeredPaths.contains(path)) {
+  }
+
+  // Returns a batch that registers all of its values at once when its register method is called, see ValueBatch.
+  @NotNull
+  public ValueBatch batch() {
+    return new ValueBatch(this);
+  }
+
+  public void registerValues(@NotNull final Map<String, ?> values) {
+    registerValues(values, NoQualifier.INSTANCE);
+  }
+
+  // The same as registering every entry with registerValue, in one pass over the tree. Maps don't have an order that groups their paths
+  // by prefix, so the paths are sorted first.
+  public void registerValues(@NotNull final Map<String, ?> values, @NotNull final Enum<?> qualifier) {
+    Objects.requireNonNull(values, "'values' parameter must not be null.");
+    final var batch = new ValueBatch(this);
+    for (final Map.Entry<String, ?> entry : values.entrySet()) {
+      batch.add(entry.getKey(), entry.getValue(), qualifier);
+    }
+    batch.sortByPath();
+    batch.register();
+  }
+
+  // Registers the entries in one pass over the tree. Every entry only walks down from the deepest container it shares with the entry before
+  // it, so when entries are grouped by prefix every container is visited once rather than once per leaf below it. Keeps the batch's
+  // registeredCount up to date as it goes.
+  void registerBatch(@NotNull final ValueBatch batch, @NotNull final ValueBatch.Entry[] entries, final int size) {
+    synchronized (valueLock) {
+      ownValues();
+      // Everything that can be checked per entry is checked before anything is registered.
+      var depth = 1;
+      for (int i = 0; i < size; i++) {
+        checkLeaf(entries[i].path, entries[i].value);
+        depth = Math.max(depth, entries[i].path.size());
+      }
+      // nodes[i] is the container holding segment i of the previous entry's path.
+      final var nodes = new ContextValue[depth];
+      nodes[0] = root;
+      ValuePath previous = null;
+      for (int i = 0; i < size; i++) {
+        final var entry = entries[i];
+        final var path = entry.path;
+        final var last = path.size() - 1;
+        for (int j = previous == null ? 0 : sharedContainers(previous, path); j < last; j++) {
+          nodes[j + 1] = containerAt(nodes[j], path, j, entry.qualifier);
+        }
+        addLeaf(nodes[last], path, entry.value, entry.qualifier);
+        batch.registeredCount = i + 1;
+        previous = path;
+      }
+    }
+  }
+
+  // The number of containers two paths go through together, not counting the root.
+  private static int sharedContainers(final ValuePath previous, final ValuePath path) {
+    final var max = Math.min(previous.size(), path.size()) - 1;
+    var shared = 0;
+    while (shared < max && ValueBatch.compareSegment(previous, path, shared) == 0) {
+      shared++;
+    }
+    return shared;
+  }
+
+  private ContextValue registerLeaf(final ValuePath path, final Object value, final Enum<?> qualifier) {
+    checkLeaf(path, value);
+    var parent = root;
+    final var last = path.size() - 1;
+    for (int i = 0; i < last; i++) {
+      parent = containerAt(parent, path, i, qualifier);
+    }
+    return addLeaf(parent, path, value, qualifier);
+  }
+
+  private void checkLeaf(final ValuePath path, final Object value) {
+    if (registeredPaths.contains(path.toString())) {
       throw new IllegalArgumentException("Path " + path + " has already been registered with a value. This is a programmer error.");
     }
     // Only supports registering the leaf node values. The path is what defines how the internal structure is traversed.
     if (!(value instanceof String || value instanceof Number)) {
       throw new IllegalArgumentException("Value must be a String or Number. Was: " + value.getClass());
     }
-    final var parts = PATH_SPLITTER.split(path.toLowerCase());
-    for (int i = 0; i < parts.length; i++) {
-      if (parts[i].isBlank()) {
-        throw new IllegalArgumentException("No parts of the path can consist of only whitespace. (part " + i + " violated this rule)");
+  }
+
+  // The container for segment i of the path, created when there is none yet.
+  private ContextValue containerAt(final ContextValue parent, final ValuePath path, final int i, final Enum<?> qualifier) {
+    final var child = childAt(parent, path, i);
+    return child != null ? child : addContainer(parent, path, i, qualifier);
+  }
+
+  // Adds the leaf at the end of the path to parent, which holds the last segment of the path.
+  private ContextValue addLeaf(final ContextValue parent, final ValuePath path, final Object requestedValue, final Enum<?> qualifier) {
+    final var last = path.size() - 1;
+    if (childAt(parent, path, last) != null) {
+      throw new IllegalArgumentException("Path " + path + " has already been registered with a value. This is a programmer error.");
+    }
+    final var value = strings.internValue(requestedValue);
+    if (parent.isArray() && ((ArrayContainerValue) parent).appendDense(path.index(last), value, qualifier)) {
+      return parent.child(path.index(last));
+    }
+    // Everything that is kept holds on to interned parts of the path only (the containers through their keys, the holder through the path
+    // itself), so the caller's copies can be collected. Dense elements don't keep their path at all.
+    final var holder = new ValueHolder(parent, path.intern(strings), value, changes);
+    attach(parent, path, last, holder);
+    index(path.toString(), qualifier, holder);
+    return holder;
+  }
+
+  // Looks up segment i of the path in parent, checking that the path agrees with what kind of container the parent is.
+  private static ContextValue childAt(final ContextValue parent, final ValuePath path, final int i) {
+    if (path.isIndex(i)) {
+      // index into array received.
+      if (!parent.isArray()) {
+        throw new IllegalArgumentException("Got array index in path " + path + " (part " + i + "), but value was not an array.");
+      }
+      return parent.child(path.index(i));
+    }
+    // string key into object received.
+    if (!parent.isObject()) {
+      throw new IllegalArgumentException("Got string key in path " + path + " (part " + i + "), but value was not an object.");
+    }
+    return parent.child(path.segment(i));
+  }
+
+  // Creates the container for segment i of the path. Whether it is an array or an object is decided by the segment that follows it.
+  private ContextValue addContainer(final ContextValue parent, final ValuePath path, final int i, final Enum<?> qualifier) {
+    final ContextValue ret;
+    if (path.isIndex(i + 1)) {
+      ret = new ArrayContainerValue(parent, path.subPath(i + 1).intern(strings), qualifier);
+    } else {
+      ret = new ObjectContainerValue(parent);
+    }
+    attach(parent, path, i, ret);
+    index(path.prefix(i + 1), qualifier, ret);
+    return ret;
+  }
+
+  private void attach(final ContextValue parent, final ValuePath path, final int i, final ContextValue child) {
+    if (path.isIndex(i)) {
+      final var array = (ArrayContainerValue) parent;
+      // Dense arrays only hold their own numbers, anything else has to go in next to holders.
+      inflate(array);
+      array.addChild(path.index(i), child);
+    } else {
+      ((ObjectContainerValue) parent).addChild(strings.intern(path.segment(i)), child);
+    }
+  }
+
+  // Turns a dense array into a regular one, with a holder for every element that is indexed like any other value. Only ever called while
+  // holding the value lock.
+  private void inflate(final ArrayContainerValue array) {
+    final var dense = array.dense;
+    if (dense == null) {
+      return;
+    }
+    for (int i = 0; i < dense.size; i++) {
+      final var path = array.path.child(i).intern(strings);
+      final var holder = new ValueHolder(array, path, dense.value(i), changes);
+      array.children.add(holder);
+      index(path.toString(), array.qualifier, holder);
+    }
+    // Readers keep going through the dense elements up until this write, which publishes the holders along with it.
+    array.dense = null;
+    array.views = null;
+  }
+
+  // The element of a dense array at the path, null when there is none. Elements of dense arrays aren't indexed on their own, they are
+  // found through their array instead.
+  @Nullable
+  private DenseElement denseElementAt(final String path) {
+    return denseElementAt(path, NoQualifier.INSTANCE);
+  }
+
+  // The same, looking in the arrays registered with the qualifier first, which is where lookups expect to find it.
+  @Nullable
+  private DenseElement denseElementAt(final String path, final Enum<?> qualifier) {
+    final var dot = path.lastIndexOf(VALUE_PATH_SEPARATOR);
+    if (dot < 0) {
+      return null;
+    }
+    final var idx = elementIndex(path, dot + 1);
+    return idx < 0 ? null : denseElementAt(path.substring(0, dot), idx, qualifier);
+  }
+
+  // For a parsed path everything needed to find the element is at hand without cutting up or parsing the path, so looking up the same
+  // ValuePath over and over doesn't allocate.
+  @Nullable
+  private DenseElement denseElementAt(final ValuePath path, final Enum<?> qualifier) {
+    final var last = path.size() - 1;
+    return last == 0 || !path.isIndex(last) ? null : denseElementAt(path.containerPath(), path.index(last), qualifier);
+  }
+
+  @Nullable
+  private DenseElement denseElementAt(final String arrayPath, final int idx, final Enum<?> qualifier) {
+    final var preferred = values.get(qualifier);
+    if (preferred != null) {
+      final var element = denseChild(preferred.get(arrayPath), idx);
+      if (element != null) {
+        return element;
+      }
+    }
+    for (final Map<String, ContextValue> qualified : values.values()) {
+      final var element = qualified == preferred ? null : denseChild(qualified.get(arrayPath), idx);
+      if (element != null) {
+        return element;
       }
     }
+    return null;
+  }
 
-    var parent = root;
-    final var key = new ValueKey<>(path, qualifier);
-    for (int i = 0; i < parts.length; i++) {
-      final var part = parts[i];
+  @Nullable
+  private static DenseElement denseChild(@Nullable final ContextValue array, final int idx) {
+    return array instanceof ArrayContainerValue ? ((ArrayContainerValue) array).denseChild(idx) : null;
+  }
 
-      var isNumeric = false;
-      var numericIdx = -1;
-      try {
-        numericIdx = Integer.parseInt(part);
-        isNumeric = true;
-      } catch (final NumberFormatException ignored) {
-        // isNumeric already false, nothing to do
+
+  // The element of an array that was dense with frozenElements when a FrozenAppContext was taken, which the rest of the path from
+  // indexStart on points at. The frozen context keeps finding its elements through the array whether or not the array has been inflated
+  // since.
+  @Nullable
+  static ContextValue frozenDenseElement(
+      @NotNull final ContextValue array,
+      @NotNull final Object frozenElements,
+      @NotNull final String path,
+      final int indexStart
+  ) {
+    final var elements = (DenseElements) frozenElements;
+    final var idx = elementIndex(path, indexStart);
+    return idx < 0 || idx >= elements.size ? null : ((ArrayContainerValue) array).frozenChild(idx, elements);
+  }
+
+  // The elements of the value if it is an array that is dense right now, for a FrozenAppContext to hold on to. Only ever called while
+  // holding the value lock.
+  @Nullable
+  private static Object denseElementsOf(@NotNull final ContextValue value) {
+    return value instanceof ArrayContainerValue ? ((ArrayContainerValue) value).dense : null;
+  }
+
+  // The index the rest of the path from indexStart on consists of, -1 when it isn't one.
+  private static int elementIndex(@NotNull final String path, final int indexStart) {
+    if (indexStart >= path.length()) {
+      return -1;
+    }
+    var idx = 0;
+    for (int i = indexStart; i < path.length(); i++) {
+      final var c = path.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
       }
-      if (isNumeric && parent == root) {
-        throw new IllegalArgumentException("Cannot use a numeric array index at the root level.");
+      final var digit = c - '0';
+      if (idx > (Integer.MAX_VALUE - digit) / 10) {
+        return -1;
       }
+      idx = idx * 10 + digit;
+    }
+    return idx;
+  }
 
-      if (i + 1 == parts.length) {
-        // reached leaf
-        final var holder = new ValueHolder(parent, value);
-        if (parent.isArray()) {
-          ((ArrayContainerValue) parent).addChildWithStringIndex(part, holder);
-        } else {
-          ((ObjectContainerValue) parent).addChild(part, holder);
+  // Lookups don't take the value lock and trust registeredPaths, so the value is published before its path is marked as registered: a
+  // lookup that sees the path always finds the value too.
+  private void index(final String path, final Enum<?> qualifier, final ContextValue value) {
+    values.computeIfAbsent(qualifier, q -> new ConcurrentHashMap<>()).put(path, value);
+    registeredPaths.add(path);
+  }
+
+  public ContextValue removeValue(@NotNull final String path) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    return removeValue(ValuePath.of(path));
+  }
+
+  // Removes the leaf value at the path, whatever qualifier it was registered with, and returns it. Containers that are left without
+  // any values are removed with it, so the path (or any of its parents) can be registered again afterwards, even with another shape.
+  public ContextValue removeValue(@NotNull final ValuePath path) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+
+    synchronized (valueLock) {
+      if (!registeredPaths.contains(path.toString())) {
+        final var element = denseElementAt(path.toString());
+        if (element == null) {
+          throw new IllegalArgumentException("Path " + path + " has not yet been registered.");
         }
-        values.put(key, holder);
-        registeredPaths.add(path);
-        return holder;
+        // Only a value of its own can be removed.
+        inflate(element.array);
+      }
+      final var nodes = new ContextValue[path.size()];
+      var parent = root;
+      for (int i = 0; i < nodes.length; i++) {
+        nodes[i] = childAt(parent, path, i);
+        parent = nodes[i];
+      }
+      final var removed = nodes[nodes.length - 1];
+      if (!removed.isLeaf()) {
+        throw new IllegalArgumentException("Path " + path + " is a container, only leaf values can be removed. This is a programmer error.");
       }
 
-      ContextValue child = null;
-      if (isNumeric) {
-        // index into array received.
-        if (!parent.isArray()) {
-          // TODO: Print out path and type. Basically include useful error information for developer since this can be user facing.
-          throw new IllegalArgumentException("Got array index in path, but value was not an array.");
+      for (int i = nodes.length - 1; i >= 0; i--) {
+        final var container = i == 0 ? root : nodes[i - 1];
+        unindex(path.prefix(i + 1));
+        final var empty = path.isIndex(i)
+            ? ((ArrayContainerValue) container).removeChild(path.index(i))
+            : ((ObjectContainerValue) container).removeChild(path.segment(i));
+        if (!empty || container == root) {
+          break;
         }
-        child = parent.child(numericIdx);
-      } else {
-        // string key into object received.
-        if (!parent.isObject()) {
-          // TODO: Print out path and type. Basically include useful error information for developer since this can be user facing.
-          throw new IllegalArgumentException("Got string key in path, but value was not an object.");
+      }
+      return removed;
+    }
+  }
+
+  private void unindex(final String path) {
+    registeredPaths.remove(path);
+    for (final Map<String, ContextValue> qualified : values.values()) {
+      qualified.remove(path);
+    }
+  }
+
+  public ContextValue getValue(@NotNull final String path) {
+    return getValue(path, NoQualifier.INSTANCE);
+  }
+
+  public ContextValue getValue(@NotNull final String path, @NotNull final Enum<?> qualifier) {
+    // Paths are stored normalised. Lower-casing an already normalised path hands back the same String, so lookups with normalised
+    // paths don't allocate.
+    return lookupValue(path.toLowerCase(Locale.ROOT), null, qualifier);
+  }
+
+  public ContextValue getValue(@NotNull final ValuePath path) {
+    return getValue(path, NoQualifier.INSTANCE);
+  }
+
+  public ContextValue getValue(@NotNull final ValuePath path, @NotNull final Enum<?> qualifier) {
+    return lookupValue(path.toString(), path, qualifier);
+  }
+
+  // parsed is the path as a ValuePath when the caller has one, which lets elements of dense arrays be found without allocating.
+  private ContextValue lookupValue(final String path, @Nullable final ValuePath parsed, final Enum<?> qualifier) {
+    final var counters = metrics;
+    final ContextValue value;
+    if (registeredPaths.contains(path)) {
+      final var qualified = values.get(qualifier);
+      value = qualified == null ? null : qualified.get(path);
+    } else {
+      final var element = parsed != null ? denseElementAt(parsed, qualifier) : denseElementAt(path, qualifier);
+      if (element == null) {
+        if (parent != null) {
+          return parent.lookupValue(path, parsed, qualifier);
+        }
+        if (counters != null) {
+          counters.unregisteredValue();
         }
-        child = parent.child(part);
+        throw new IllegalArgumentException("Path " + path + " has not yet been registered.");
       }
+      // Elements count as registered with the qualifier of their array.
+      value = element.array.qualifier == qualifier ? element : null;
+    }
+    // A child only shadows its parent for the qualifiers it registered the path with.
+    if (value == null && parent != null) {
+      return parent.lookupValue(path, parsed, qualifier);
+    }
+    if (counters != null) {
+      counters.value(path, qualifier, value != null);
+    }
+    return value;
+  }
 
-      if (child == null) {
-        parent = addChildPath(parts, i, parent, qualifier);
+  // Whether this context itself holds a leaf at the path registered with the qualifier. Unlike getValue, paths that aren't registered are
+  // simply not leaves rather than a programmer error.
+  boolean isLeaf(@NotNull final ValuePath path, @NotNull final Enum<?> qualifier) {
+    final var key = path.toString();
+    if (registeredPaths.contains(key)) {
+      final var qualified = values.get(qualifier);
+      final var value = qualified == null ? null : qualified.get(key);
+      return value != null && value.isLeaf();
+    }
+    final var element = denseElementAt(key);
+    return element != null && element.array.qualifier == qualifier;
+  }
+
+  // Calls the listener with batches of changes to the value at the path, or to any value below it when the path is a container. Changes
+  // are delivered asynchronously on the context's change executor, see ValueSubscription. Subscriptions are on the value itself, so
+  // they see updates regardless of the qualifier the value was registered with.
+  @NotNull
+  public ValueSubscription subscribe(@NotNull final String path, @NotNull final ValueListener listener) {
+    return subscribe(path, listener, changes.defaultExecutor());
+  }
+
+  @NotNull
+  public ValueSubscription subscribe(@NotNull final String path, @NotNull final ValueListener listener, @NotNull final Executor executor) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    return subscribe(ValuePath.of(path), listener, executor);
+  }
+
+  @NotNull
+  public ValueSubscription subscribe(@NotNull final ValuePath path, @NotNull final ValueListener listener) {
+    return subscribe(path, listener, changes.defaultExecutor());
+  }
+
+  @NotNull
+  public ValueSubscription subscribe(@NotNull final ValuePath path, @NotNull final ValueListener listener, @NotNull final Executor executor) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    Objects.requireNonNull(listener, "'listener' parameter must not be null.");
+    Objects.requireNonNull(executor, "'executor' parameter must not be null.");
+    final var resolving = resolving(path.toString());
+    if (resolving != this) {
+      return resolving.subscribe(path, listener, executor);
+    }
+
+    // The tree itself is only safe to walk under the lock, the indexes can't be used since they are per qualifier.
+    synchronized (valueLock) {
+      if (!registeredPaths.contains(path.toString())) {
+        final var element = denseElementAt(path.toString());
+        if (element == null) {
+          throw new IllegalArgumentException("Path " + path + " has not yet been registered.");
+        }
+        // Subscriptions are on the value itself, which an element of a dense array only gets once the array is inflated.
+        inflate(element.array);
+      }
+      var value = root;
+      for (int i = 0; i < path.size(); i++) {
+        value = childAt(value, path, i);
+      }
+      return changes.add(value, listener, executor);
+    }
+  }
+
+  public Map<String, ContextValue> findValues(@NotNull final String pattern) {
+    return findMatches(pattern, null);
+  }
+
+  // Finds every value whose path matches the pattern, keyed by its normalised path. A pattern is a path in which any segment can be "*" to
+  // match every key of an object or every element of an array, e.g. "servers.*.port". Matches can be leaves as well as objects or arrays.
+  // The tree is walked along the pattern, so literal segments are looked up directly and only wildcards go through every child: the cost
+  // grows with what matches, not with how much is registered. Only finds values registered with the qualifier, elements of dense arrays
+  // count as registered with the qualifier of their array.
+  public Map<String, ContextValue> findValues(@NotNull final String pattern, @NotNull final Enum<?> qualifier) {
+    Objects.requireNonNull(qualifier, "'qualifier' parameter must not be null.");
+    return findMatches(pattern, qualifier);
+  }
+
+  private LinkedHashMap<String, ContextValue> findMatches(final String pattern, @Nullable final Enum<?> qualifier) {
+    Objects.requireNonNull(pattern, "'pattern' parameter must not be null.");
+    final var compiled = ValuePath.of(pattern);
+    // Matches of a child replace the ones of its parent at the same path.
+    final var matches = parent == null ? new LinkedHashMap<String, ContextValue>() : parent.findMatches(pattern, qualifier);
+    final var path = new StringBuilder(compiled.toString().length());
+    synchronized (valueLock) {
+      collectMatches(root, compiled, 0, path, qualifier == null ? null : values.getOrDefault(qualifier, Map.of()), qualifier, matches);
+    }
+    return matches;
+  }
+
+  // Walks down from segment i of the pattern, path being the normalised path of value. Only ever called while holding the value lock.
+  private static void collectMatches(
+      final ContextValue value,
+      final ValuePath pattern,
+      final int i,
+      final StringBuilder path,
+      @Nullable final Map<String, ContextValue> qualified,
+      @Nullable final Enum<?> qualifier,
+      final Map<String, ContextValue> matches
+  ) {
+    if (i == pattern.size()) {
+      final var matched = path.toString();
+      if (qualified == null
+          || (value instanceof DenseElement ? ((DenseElement) value).array.qualifier == qualifier : qualified.get(matched) == value)) {
+        matches.put(matched, value);
+      }
+      return;
+    }
+    final var length = path.length();
+    if (i > 0) {
+      path.append(VALUE_PATH_SEPARATOR);
+    }
+    final var start = path.length();
+    final var segment = pattern.segment(i);
+    if (value instanceof ObjectContainerValue) {
+      final var children = ((ObjectContainerValue) value).children;
+      if (WILDCARD.equals(segment)) {
+        for (final Map.Entry<String, ContextValue> child : children.entrySet()) {
+          path.append(child.getKey());
+          collectMatches(child.getValue(), pattern, i + 1, path, qualified, qualifier, matches);
+          path.setLength(start);
+        }
+      } else if (!pattern.isIndex(i)) {
+        final var child = children.get(segment);
+        if (child != null) {
+          path.append(segment);
+          collectMatches(child, pattern, i + 1, path, qualified, qualifier, matches);
+        }
+      }
+    } else if (value instanceof ArrayContainerValue) {
+      final var array = (ArrayContainerValue) value;
+      if (WILDCARD.equals(segment)) {
+        final var dense = array.dense;
+        final var size = dense != null ? dense.size : array.children.size();
+        for (int idx = 0; idx < size; idx++) {
+          final var child = array.child(idx);
+          if (child != null) {
+            path.append(idx);
+            collectMatches(child, pattern, i + 1, path, qualified, qualifier, matches);
+            path.setLength(start);
+          }
+        }
+      } else if (pattern.isIndex(i)) {
+        final var child = array.child(pattern.index(i));
+        if (child != null) {
+          path.append(pattern.index(i));
+          collectMatches(child, pattern, i + 1, path, qualified, qualifier, matches);
+        }
+      }
+    }
+    path.setLength(length);
+  }
+
+  @NotNull
+  public <T> T bind(@NotNull final String path, @NotNull final Class<T> type) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    return bind(ValuePath.of(path), type);
+  }
+
+  // Creates a record or POJO from the object at the path, see ValueBinder for how its components or fields are matched to values. The
+  // object is bound from the values as they are at the time, later updates don't change it. Values registered under any qualifier are
+  // bound, the tree doesn't tell them apart.
+  @NotNull
+  public <T> T bind(@NotNull final ValuePath path, @NotNull final Class<T> type) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    Objects.requireNonNull(type, "'type' parameter must not be null.");
+    final var resolving = resolving(path.toString());
+    if (resolving != this) {
+      return resolving.bind(path, type);
+    }
+    final var binder = ValueBinder.of(type);
+    synchronized (valueLock) {
+      return type.cast(binder.bind(findValue(path), path.toString()));
+    }
+  }
+
+  @NotNull
+  public <T> ValueBinding<T> bindLive(@NotNull final String path, @NotNull final Class<T> type) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    return bindLive(ValuePath.of(path), type);
+  }
+
+  // The same as bind, but the object is bound again whenever a value below the path is updated. Close the binding to stop that.
+  @NotNull
+  public <T> ValueBinding<T> bindLive(@NotNull final ValuePath path, @NotNull final Class<T> type) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    Objects.requireNonNull(type, "'type' parameter must not be null.");
+    return new ValueBinding<>(this, path, type);
+  }
+
+  // Every leaf with its current value, in tree order, whatever its qualifier. Used to flatten scratch contexts (see LayeredValues).
+  Map<ValuePath, Object> leaves() {
+    final var leaves = new LinkedHashMap<ValuePath, Object>();
+    synchronized (valueLock) {
+      collectLeaves(root, leaves);
+    }
+    return leaves;
+  }
+
+  private static void collectLeaves(final ContextValue container, final Map<ValuePath, Object> leaves) {
+    final Collection<ContextValue> children;
+    if (container instanceof ArrayContainerValue) {
+      final var array = (ArrayContainerValue) container;
+      final var dense = array.dense;
+      if (dense != null) {
+        for (int i = 0; i < dense.size; i++) {
+          leaves.put(array.path.child(i), dense.value(i));
+        }
+        return;
+      }
+      children = array.children;
+    } else {
+      children = ((ObjectContainerValue) container).children.values();
+    }
+    for (final ContextValue child : children) {
+      if (child instanceof ValueHolder) {
+        final var holder = (ValueHolder) child;
+        leaves.put(holder.path(), holder.leaf().value());
+      } else if (child != null) {
+        collectLeaves(child, leaves);
+      }
+    }
+  }
+
+  public List<String> listChildren(@NotNull final String path) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    return listChildren(ValuePath.of(path));
+  }
+
+  // The keys of the object at the path, or the indices of the elements of the array at the path (skipping gaps), as a copy. Objects list
+  // their keys in no particular order.
+  public List<String> listChildren(@NotNull final ValuePath path) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    final var resolving = resolving(path.toString());
+    if (resolving != this) {
+      return resolving.listChildren(path);
+    }
+    synchronized (valueLock) {
+      final var value = findValue(path);
+      if (value instanceof ObjectContainerValue) {
+        return new ArrayList<>(((ObjectContainerValue) value).children.keySet());
+      }
+      if (!(value instanceof ArrayContainerValue)) {
+        throw new IllegalArgumentException("Path " + path + " is a leaf, it doesn't have any children. This is a programmer error.");
+      }
+      final var array = (ArrayContainerValue) value;
+      final var dense = array.dense;
+      final var size = dense != null ? dense.size : array.children.size();
+      final var indices = new ArrayList<String>(size);
+      for (int idx = 0; idx < size; idx++) {
+        if (dense != null || array.children.get(idx) != null) {
+          indices.add(Integer.toString(idx));
+        }
+      }
+      return indices;
+    }
+  }
+
+  public void writeJson(@NotNull final Writer out) {
+    writeJsonAt(null, out);
+  }
+
+  public void writeJson(@NotNull final String path, @NotNull final Writer out) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    writeJson(ValuePath.of(path), out);
+  }
+
+  // Writes the value at the path as JSON: an object or array with everything below it, or a single string or number. Values registered
+  // under any qualifier are written, the tree doesn't tell them apart. The writer is flushed but not closed.
+  public void writeJson(@NotNull final ValuePath path, @NotNull final Writer out) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    writeJsonAt(path, out);
+  }
+
+  public void writeJson(@NotNull final WritableByteChannel out) {
+    Objects.requireNonNull(out, "'out' parameter must not be null.");
+    final var writer = Channels.newWriter(out, StandardCharsets.UTF_8);
+    writeJson(writer);
+    flush(writer);
+  }
+
+  public void writeJson(@NotNull final String path, @NotNull final WritableByteChannel out) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    writeJson(ValuePath.of(path), out);
+  }
+
+  // The same as writing to a Writer, encoded as UTF-8. The channel is not closed.
+  public void writeJson(@NotNull final ValuePath path, @NotNull final WritableByteChannel out) {
+    Objects.requireNonNull(out, "'out' parameter must not be null.");
+    final var writer = Channels.newWriter(out, StandardCharsets.UTF_8);
+    writeJson(path, writer);
+    flush(writer);
+  }
+
+  private static void flush(final Writer writer) {
+    try {
+      writer.flush();
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to write JSON.", e);
+    }
+  }
+
+  // Nothing is written while holding the value lock, so a slow writer doesn't hold up registering values, subscribing or anything else
+  // that takes the lock. Instead every container is listed under the lock as the writer reaches it, WRITE_CHUNK_SIZE children at a time,
+  // and that chunk is written after letting go of the lock again. This keeps what is held on to while writing down to the containers on
+  // the way to the value being written (and the keys of the objects among them) rather than a copy of the whole subtree.
+  //
+  // The price is that the JSON is not a snapshot of a single moment: each chunk is as the context was when it got listed. Values
+  // registered into a container after its keys (or for an array, the chunk they fall into) were listed are not written, ones removed before
+  // they were reached are skipped, and a container removed while it is being written is written as it was. Every leaf is written as it is
+  // at the moment it is reached, updates carry on while writing like they always do.
+  private void writeJsonAt(@Nullable final ValuePath path, final Writer out) {
+    Objects.requireNonNull(out, "'out' parameter must not be null.");
+    final var resolving = path == null ? this : resolving(path.toString());
+    if (resolving != this) {
+      resolving.writeJsonAt(path, out);
+      return;
+    }
+    final ContextValue value;
+    synchronized (valueLock) {
+      value = path == null ? root : findValue(path);
+    }
+    final var json = new JsonWriter(out);
+    // Doubles that aren't finite are written as NaN and Infinity, which the lenient reader takes back.
+    json.setLenient(true);
+    try {
+      writeValue(json, value);
+      json.flush();
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to write JSON.", e);
+    }
+  }
+
+  private void writeValue(final JsonWriter json, final ContextValue value) throws IOException {
+    if (value instanceof ObjectContainerValue) {
+      writeObject(json, (ObjectContainerValue) value);
+    } else if (value instanceof ArrayContainerValue) {
+      writeArray(json, (ArrayContainerValue) value);
+    } else if (value instanceof ValueHolder) {
+      final var leaf = ((ValueHolder) value).leaf();
+      if (leaf instanceof ValueHolder.LongLeaf) {
+        json.value(leaf.asLong());
+      } else if (leaf instanceof ValueHolder.DoubleLeaf) {
+        json.value(leaf.asDouble());
       } else {
-        parent = child;
+        final var leafValue = leaf.value();
+        if (leafValue instanceof String) {
+          json.value((String) leafValue);
+        } else {
+          json.value((Number) leafValue);
+        }
+      }
+    } else {
+      // Only the subtree root can be a dense element, everything below a container is written from the container itself.
+      json.value(value.asNumber());
+    }
+  }
+
+  private void writeObject(final JsonWriter json, final ObjectContainerValue object) throws IOException {
+    final String[] keys;
+    synchronized (valueLock) {
+      keys = object.children.keySet().toArray(new String[0]);
+    }
+    final var chunk = new ContextValue[Math.min(keys.length, WRITE_CHUNK_SIZE)];
+    json.beginObject();
+    for (int from = 0; from < keys.length; from += chunk.length) {
+      final var to = Math.min(from + chunk.length, keys.length);
+      synchronized (valueLock) {
+        for (int i = from; i < to; i++) {
+          chunk[i - from] = object.children.get(keys[i]);
+        }
+      }
+      for (int i = from; i < to; i++) {
+        final var child = chunk[i - from];
+        chunk[i - from] = null;
+        // Removed since the keys were listed.
+        if (child != null) {
+          json.name(keys[i]);
+          writeValue(json, child);
+        }
+      }
+    }
+    json.endObject();
+  }
+
+  private void writeArray(final JsonWriter json, final ArrayContainerValue array) throws IOException {
+    ContextValue[] chunk = null;
+    json.beginArray();
+    for (int from = 0; ; ) {
+      final DenseElements dense;
+      final int to;
+      synchronized (valueLock) {
+        dense = array.dense;
+        to = dense != null ? dense.size : Math.min(from + WRITE_CHUNK_SIZE, array.children.size());
+        if (dense == null) {
+          if (chunk == null || chunk.length < to - from) {
+            chunk = new ContextValue[Math.max(0, to - from)];
+          }
+          for (int i = from; i < to; i++) {
+            chunk[i - from] = array.children.get(i);
+          }
+        }
+      }
+      if (dense != null) {
+        // Never changes, so the rest of the elements can be written straight from it.
+        for (int i = from; i < to; i++) {
+          if (dense.longs != null) {
+            json.value(dense.longs[i]);
+          } else {
+            json.value(dense.doubles[i]);
+          }
+        }
+        break;
+      }
+      if (from >= to) {
+        break;
+      }
+      for (int i = from; i < to; i++) {
+        final var child = chunk[i - from];
+        chunk[i - from] = null;
+        if (child == null) {
+          // A gap that hasn't been filled in.
+          json.nullValue();
+        } else {
+          writeValue(json, child);
+        }
       }
+      from = to;
     }
+    json.endArray();
+  }
 
-    throw new IllegalStateException("Reached end of registerValue without either thrown another exception or returning the value. This is a library error.");
+  // The value at the path, found by walking the tree. Only ever called while holding the value lock.
+  private ContextValue findValue(final ValuePath path) {
+    if (!registeredPaths.contains(path.toString()) && denseElementAt(path.toString()) == null) {
+      throw new IllegalArgumentException("Path " + path + " has not yet been registered.");
+    }
+    var value = root;
+    for (int i = 0; i < path.size(); i++) {
+      value = childAt(value, path, i);
+    }
+    return value;
   }
 
-  private ContextValue addChildPath(final String[] parts, final int i, final ContextValue parent, final Enum<?> qualifier) {
-    final var nextPart = parts[i + 1];
-    var nextIsNumeric = false;
-    var nextIdx = -1;
+  // Writes every value registered so far into a compact binary file that loadSnapshot can bring back much faster than the JSON it may
+  // have come from. See ValueSnapshot for the format. Only values are written, bundles are not part of a snapshot.
+  public void writeSnapshot(@NotNull final Path file) {
+    Objects.requireNonNull(file, "'file' parameter must not be null.");
+    final var entries = new ArrayList<ValueSnapshot.Entry>();
+    synchronized (valueLock) {
+      // No value knows the qualifier it was registered with, but the indexes do.
+      final var qualifiers = new IdentityHashMap<ContextValue, Enum<?>>();
+      for (final var qualified : values.entrySet()) {
+        for (final ContextValue value : qualified.getValue().values()) {
+          qualifiers.put(value, qualified.getKey());
+        }
+      }
+      collectSnapshot(root, -1, qualifiers, entries);
+    }
     try {
-      nextIdx = Integer.parseInt(nextPart);
-      nextIsNumeric = true;
-    } catch (final NumberFormatException ignore) {
-      // Numeric flag already false, nothing to do.
+      ValueSnapshot.write(file, entries);
+    } catch (final IOException e) {
+      throw new IllegalArgumentException("Failed to write a snapshot to " + file + ".", e);
     }
+  }
 
-    final ContextValue ret;
-    if (nextIsNumeric) {
-      ret = new ArrayContainerValue(parent);
+  // Adds the children of the container in pre-order, so every container's entry comes before the entries of what it holds.
+  private static void collectSnapshot(
+      final ContextValue container,
+      final int containerIdx,
+      final Map<ContextValue, Enum<?>> qualifiers,
+      final List<ValueSnapshot.Entry> entries
+  ) {
+    if (container.isArray()) {
+      final var array = (ArrayContainerValue) container;
+      final var dense = array.dense;
+      if (dense != null) {
+        final var kind = dense.longs != null ? ValueSnapshot.LONG : ValueSnapshot.DOUBLE;
+        for (int i = 0; i < dense.size; i++) {
+          entries.add(new ValueSnapshot.Entry(containerIdx, Integer.toString(i), array.qualifier, kind, dense.value(i)));
+        }
+        return;
+      }
+      final var children = array.children;
+      for (int i = 0; i < children.size(); i++) {
+        if (children.get(i) != null) {
+          collectSnapshot(children.get(i), Integer.toString(i), containerIdx, qualifiers, entries);
+        }
+      }
     } else {
-      ret = new ObjectContainerValue(parent);
+      for (final var child : ((ObjectContainerValue) container).children.entrySet()) {
+        collectSnapshot(child.getValue(), child.getKey(), containerIdx, qualifiers, entries);
+      }
     }
-    registeredPaths.add(parts[i]);
-    values.put(new ValueKey<>(parts[i], qualifier), ret);
-    if (parent.isArray()) {
-      ((ArrayContainerValue) parent).addChild(nextIdx, ret);
+  }
+
+  private static void collectSnapshot(
+      final ContextValue value,
+      final String segment,
+      final int containerIdx,
+      final Map<ContextValue, Enum<?>> qualifiers,
+      final List<ValueSnapshot.Entry> entries
+  ) {
+    final var qualifier = qualifiers.get(value);
+    if (value.isLeaf()) {
+      final var holder = (ValueHolder) value;
+      final var leafValue = holder.leaf().value();
+      final var kind = ValueSnapshot.kindOf(holder.path().toString(), leafValue);
+      entries.add(new ValueSnapshot.Entry(containerIdx, segment, qualifier, kind, leafValue));
     } else {
-      ((ObjectContainerValue) parent).addChild(nextPart, ret);
+      final var kind = value.isArray() ? ValueSnapshot.ARRAY : ValueSnapshot.OBJECT;
+      entries.add(new ValueSnapshot.Entry(containerIdx, segment, qualifier, kind, null));
+      collectSnapshot(value, entries.size() - 1, qualifiers, entries);
     }
-    return ret;
   }
 
-  public ContextValue getValue(@NotNull final String path) {
-    return getValue(path, NoQualifier.INSTANCE);
+  // Registers every value of a snapshot written by writeSnapshot, with the qualifiers they were registered with. The file is mapped
+  // rather than read: only the structure is decoded up front, each leaf's value is decoded the first time it is read. Paths that are
+  // already registered with a value cause an IllegalArgumentException, just like registerValue.
+  public void loadSnapshot(@NotNull final Path file) {
+    Objects.requireNonNull(file, "'file' parameter must not be null.");
+    final var contextLoader = Thread.currentThread().getContextClassLoader();
+    final var classLoader = contextLoader != null ? contextLoader : AppContext.class.getClassLoader();
+    synchronized (valueLock) {
+      ownValues();
+      try {
+        ValueSnapshot.read(file, classLoader, new ValueSnapshot.Loader() {
+          @Override
+          public ContextValue root() {
+            return root;
+          }
+
+          @Override
+          public String intern(@NotNull final String segment) {
+            return strings.intern(segment);
+          }
+
+          @Override
+          public ContextValue container(
+              @NotNull final ContextValue parent,
+              @NotNull final ValuePath path,
+              @NotNull final Enum<?> qualifier,
+              final boolean array
+          ) {
+            final var last = path.size() - 1;
+            final var existing = childAt(parent, path, last);
+            if (existing == null) {
+              final var container = array ? new ArrayContainerValue(parent, path, qualifier) : new ObjectContainerValue(parent);
+              attach(parent, path, last, container);
+              index(path.toString(), qualifier, container);
+              return container;
+            }
+            if (existing.isLeaf() || existing.isArray() != array) {
+              throw new IllegalArgumentException("Path " + path + " has already been registered with a different kind of value. This is a programmer error.");
+            }
+            return existing;
+          }
+
+          @Override
+          public void leaf(
+              @NotNull final ContextValue parent,
+              @NotNull final ValuePath path,
+              @NotNull final Enum<?> qualifier,
+              @NotNull final ValueHolder.Leaf leaf
+          ) {
+            final var last = path.size() - 1;
+            if (childAt(parent, path, last) != null) {
+              throw new IllegalArgumentException("Path " + path + " has already been registered with a value. This is a programmer error.");
+            }
+            final var holder = new ValueHolder(parent, path, leaf, changes);
+            attach(parent, path, last, holder);
+            index(path.toString(), qualifier, holder);
+          }
+        });
+      } catch (final IOException e) {
+        throw new IllegalArgumentException("Failed to load the snapshot " + file + ".", e);
+      }
+    }
   }
 
-  public ContextValue getValue(@NotNull final String path, @NotNull final Enum<?> qualifier) {
-    if (!registeredPaths.contains(path)) {
-      throw new IllegalArgumentException("Path " + path + " has not yet been registered.");
+  // Takes an immutable snapshot of everything registered so far that can be safely shared with any number of threads. See
+  // FrozenAppContext for what is and isn't shared with this context afterwards. The snapshot of a child holds everything it can look up,
+  // including what it shadows of its parents.
+  @NotNull
+  public FrozenAppContext freeze() {
+    var bundleCount = 0;
+    var valueCount = 0;
+    for (var ctx = this; ctx != null; ctx = ctx.parent) {
+      bundleCount += ctx.bundles.size();
+      for (final Map<String, ContextValue> qualified : ctx.values.values()) {
+        valueCount += qualified.size();
+      }
+    }
+    final var builder = FrozenAppContext.builder(bundleCount, valueCount);
+    // Only needed to leave out what a child shadows, the frozen tables can't hold the same key twice.
+    final var frozenBundles = parent == null ? null : new HashSet<BundleKey<?, ?>>();
+    final var frozenValues = parent == null ? null : new HashMap<Enum<?>, Set<String>>();
+    for (var ctx = this; ctx != null; ctx = ctx.parent) {
+      for (final BundleKey<?, ?> key : ctx.bundles.keys()) {
+        if (frozenBundles == null || frozenBundles.add(key)) {
+          builder.bundle(key.clazz, key.qualifier, ctx.bundles.get(key.clazz, key.qualifier), ctx.providedBundles.get(key));
+        }
+      }
+      // Dense arrays are captured along with the elements they have right now, which stay reachable through the frozen context even once
+      // the array is inflated.
+      synchronized (ctx.valueLock) {
+        for (final var qualified : ctx.values.entrySet()) {
+          final var paths = frozenValues == null ? null : frozenValues.computeIfAbsent(qualified.getKey(), q -> new HashSet<>());
+          for (final var entry : qualified.getValue().entrySet()) {
+            if (paths == null || paths.add(entry.getKey())) {
+              builder.value(entry.getKey(), qualified.getKey(), entry.getValue(), denseElementsOf(entry.getValue()));
+            }
+          }
+        }
+      }
     }
-    return values.get(new ValueKey<>(path, qualifier));
+    return builder.build();
   }
 
   public <T extends ContextBundle> void registerBundle(final T bundle) {
@@ -201,33 +1229,362 @@ public class AppContext {
     registerBundle(bundle, qualifier);
   }
 
+  // Applies the bundle before returning, unless it is an AsyncContextBundle or requires one that is still applying. Then it returns as
+  // soon as the bundle is registered and is applied later, so a failure to apply it is not thrown from here but reported by ready().
   public <T extends ContextBundle> void registerBundle(final T bundle, final Enum<?> qualifier) {
+    registerBundle(bundle, qualifier, profiler == null ? 0 : System.nanoTime());
+  }
+
+  // waitingSince is when the registration started as far as profiling is concerned, in System.nanoTime(). Returns the future that
+  // completes once the bundle has been applied, which is already the case unless it is an AsyncContextBundle or requires one that is
+  // still applying.
+  private CompletableFuture<Void> registerBundle(final ContextBundle bundle, final Enum<?> qualifier, final long waitingSince) {
     final Class<? extends ContextBundle> clazz = bundle.getClass();
     final var key = new BundleKey<>(qualifier, clazz);
-    if (bundles.containsKey(key)) {
-      throw new IllegalArgumentException("Bundle for " + clazz + " has already been registered with: " + bundles.get(key));
+    final var registered = bundles.get(clazz, qualifier);
+    if (registered != null) {
+      throw new IllegalArgumentException("Bundle for " + clazz + " has already been registered with: " + registered);
+    }
+
+    final var provided = resolveRequired(bundle);
+    final var waitingFor = pendingRequired(bundle);
+    // A bundle that is applied later has its future installed before the bundle is published, so that a bundle requiring it that is
+    // registered in between (from another thread, or from inside applyAsync) waits for it rather than being applied against it right away.
+    final var applied = waitingFor == null && !(bundle instanceof AsyncContextBundle) ? null : new CompletableFuture<Void>();
+    final var own = ownBundles();
+    if (applied != null && pending.putIfAbsent(key, applied) != null) {
+      throw new IllegalArgumentException("Bundle for " + clazz + " has already been registered with: " + bundles.get(clazz, qualifier));
+    }
+    final var existing = own.putIfAbsent(key, bundle);
+    if (existing != null) {
+      if (applied != null) {
+        pending.remove(key, applied);
+      }
+      throw new IllegalArgumentException("Bundle for " + clazz + " has already been registered with: " + existing);
+    }
+    final var stack = registerStack.get();
+    if (!stack.isEmpty()) {
+      addProvided(stack.peek(), bundle);
+    }
+    if (applied == null) {
+      applyBundle(key, bundle, provided, waitingSince);
+      return APPLIED;
+    }
+    if (stack.isEmpty()) {
+      registerStack.remove();
+    }
+
+    // Failures are kept, so that ready() reports them.
+    applied.thenRun(() -> pending.remove(key, applied));
+    final CompletableFuture<Void> stage;
+    try {
+      if (waitingFor == null) {
+        stage = applyBundleAsync(key, (AsyncContextBundle) bundle, provided, waitingSince);
+      } else {
+        // Applied as soon as the last of its required bundles is, on a pool thread rather than whichever thread completed that bundle.
+        stage = CompletableFuture.allOf(waitingFor).thenComposeAsync(ignored -> {
+          if (bundle instanceof AsyncContextBundle) {
+            return applyBundleAsync(key, (AsyncContextBundle) bundle, provided, waitingSince);
+          }
+          applyBundle(key, bundle, provided, waitingSince);
+          return APPLIED;
+        }, ForkJoinPool.commonPool());
+      }
+    } catch (final RuntimeException | Error e) {
+      applied.completeExceptionally(e);
+      throw e;
+    }
+    stage.whenComplete((ignored, e) -> {
+      if (e == null) {
+        applied.complete(null);
+      } else {
+        applied.completeExceptionally(e);
+      }
+    });
+    return applied;
+  }
+
+  // The futures of the bundles the bundle requires that are still being applied, null when there are none.
+  @Nullable
+  private CompletableFuture<?>[] pendingRequired(final ContextBundle bundle) {
+    List<CompletableFuture<?>> waitingFor = null;
+    for (final QualifiedBundle<? extends ContextBundle> required : bundle.requiredBundles()) {
+      final var key = new BundleKey<>(required.getQualifier(), required.getClazz());
+      // The nearest context that has the bundle is the one it was applied in.
+      for (var ctx = this; ctx != null; ctx = ctx.parent) {
+        if (ctx.bundles.get(key.clazz, key.qualifier) == null) {
+          continue;
+        }
+        final var applied = ctx.pending.get(key);
+        if (applied != null && (!applied.isDone() || applied.isCompletedExceptionally())) {
+          if (waitingFor == null) {
+            waitingFor = new ArrayList<>();
+          }
+          waitingFor.add(applied);
+        }
+        break;
+      }
+    }
+    return waitingFor == null ? null : waitingFor.toArray(new CompletableFuture<?>[0]);
+  }
+
+  private void addProvided(final BundleKey<? extends Enum<?>, ? extends ContextBundle> provider, final ContextBundle bundle) {
+    providedBundles.computeIfAbsent(provider, c -> new CopyOnWriteArrayList<>()).add(bundle);
+  }
+
+  private void applyBundle(
+      final BundleKey<? extends Enum<?>, ? extends ContextBundle> key,
+      final ContextBundle bundle,
+      final ContextBundle[] provided,
+      final long waitingSince
+  ) {
+    final var stack = registerStack.get();
+    final var parent = stack.peek();
+    stack.push(key);
+    final var recorder = profiler;
+    final var event = new BundleApplyEvent();
+    event.begin();
+    final var applyStart = recorder == null ? 0 : System.nanoTime();
+    var failed = true;
+    try {
+      bundle.apply(this, provided);
+      failed = false;
+    } finally {
+      recordApply(key, parent, bundle, recorder, event, applyStart - waitingSince, applyStart, failed);
+      stack.pop();
+      if (stack.isEmpty()) {
+        registerStack.remove();
+      }
+    }
+  }
+
+  // Starts applying the bundle on this thread, which only takes as long as applyAsync does. It counts as applying for profiling until its
+  // stage completes, but only provides the bundles registered while applyAsync itself runs: which bundle is applying is tracked per
+  // thread, and the stage's continuations run on whatever thread completes it, so bundles registered from them have no provider.
+  private CompletableFuture<Void> applyBundleAsync(
+      final BundleKey<? extends Enum<?>, ? extends ContextBundle> key,
+      final AsyncContextBundle bundle,
+      final ContextBundle[] provided,
+      final long waitingSince
+  ) {
+    final var stack = registerStack.get();
+    final var parent = stack.peek();
+    stack.push(key);
+    final var recorder = profiler;
+    final var event = new BundleApplyEvent();
+    event.begin();
+    final var applyStart = recorder == null ? 0 : System.nanoTime();
+    final CompletableFuture<Void> applied;
+    try {
+      applied = Objects.requireNonNull(bundle.applyAsync(this, provided), "applyAsync of " + key + " returned null. This is a programmer error.")
+          .toCompletableFuture();
+    } catch (final RuntimeException | Error e) {
+      recordApply(key, parent, bundle, recorder, event, applyStart - waitingSince, applyStart, true);
+      throw e;
+    } finally {
+      stack.pop();
+      if (stack.isEmpty()) {
+        registerStack.remove();
+      }
+    }
+    return applied.whenComplete((ignored, e) -> recordApply(key, parent, bundle, recorder, event, applyStart - waitingSince, applyStart, e != null));
+  }
+
+  private static void recordApply(
+      final BundleKey<? extends Enum<?>, ? extends ContextBundle> key,
+      @Nullable final BundleKey<? extends Enum<?>, ? extends ContextBundle> parent,
+      final ContextBundle bundle,
+      @Nullable final StartupProfiler recorder,
+      final BundleApplyEvent event,
+      final long waited,
+      final long applyStart,
+      final boolean failed
+  ) {
+    if (recorder != null) {
+      recorder.record(key, parent, bundle.requiredBundles(), waited, System.nanoTime() - applyStart, failed);
+    }
+    if (event.shouldCommit()) {
+      event.bundle = key.toString();
+      event.parent = parent == null ? null : parent.toString();
+      event.failed = failed;
+      event.commit();
+    }
+  }
+
+  // Completes once every bundle registered into this context (or any of its parents) has been applied, including AsyncContextBundles
+  // whose stages are still running and the bundles waiting on them, and any bundles they register in turn. Completes exceptionally if
+  // any of them failed to apply.
+  @NotNull
+  public CompletableFuture<Void> ready() {
+    final var waitingFor = new ArrayList<CompletableFuture<Void>>();
+    for (var ctx = this; ctx != null; ctx = ctx.parent) {
+      for (final CompletableFuture<Void> applied : ctx.pending.values()) {
+        if (!applied.isDone() || applied.isCompletedExceptionally()) {
+          waitingFor.add(applied);
+        }
+      }
     }
+    if (waitingFor.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    // Bundles applied in the meantime may have registered more.
+    return CompletableFuture.allOf(waitingFor.toArray(new CompletableFuture<?>[0])).thenCompose(ignored -> ready());
+  }
 
+  private ContextBundle[] resolveRequired(final ContextBundle bundle) {
     final var requiredBundles = bundle.requiredBundles();
     for (final QualifiedBundle<? extends ContextBundle> required : requiredBundles) {
       if (!isBundleRegistered(required)) {
-        throw new IllegalStateException(clazz + " requires bundle " + required + " that has not yet been registered. This is a programmer error.");
+        throw new IllegalStateException(bundle.getClass() + " requires bundle " + required + " that has not yet been registered. This is a programmer error.");
       }
     }
     final var provided = new ContextBundle[requiredBundles.size()];
     for (int i = 0; i < requiredBundles.size(); i++) {
       provided[i] = getBundle(requiredBundles.get(i));
     }
+    return provided;
+  }
 
-    bundles.put(key, bundle);
-    if (!registerStack.isEmpty()) {
-      final var p = providedBundles.computeIfAbsent(registerStack.peek(), c -> new ArrayList<>());
-      p.add(bundle);
+  public <T extends ContextBundle> void registerLazyBundle(@NotNull final Class<T> clazz, @NotNull final Supplier<? extends T> supplier) {
+    registerLazyBundle(clazz, NoQualifier.INSTANCE, supplier);
+  }
+
+  public <T extends ContextBundle> void registerLazyBundle(@NotNull final QualifiedBundle<T> qualifiedBundle, @NotNull final Supplier<? extends T> supplier) {
+    registerLazyBundle(qualifiedBundle.getClazz(), qualifiedBundle.getQualifier(), supplier);
+  }
+
+  // Registers a bundle that is only created, has its required bundles resolved and gets applied the first time it is retrieved through
+  // getBundle/useBundle (or is required by another bundle being registered). Until then it counts as registered for isBundleRegistered
+  // and as a requirement of other bundles, but costs nothing beyond the supplier. Initialisation happens exactly once, no matter how many
+  // threads ask for the bundle at the same time; they all wait for it to finish. If it fails, every later retrieval fails as well.
+  public <T extends ContextBundle> void registerLazyBundle(
+      @NotNull final Class<T> clazz,
+      @NotNull final Enum<?> qualifier,
+      @NotNull final Supplier<? extends T> supplier
+  ) {
+    Objects.requireNonNull(clazz, "'clazz' parameter must not be null.");
+    Objects.requireNonNull(qualifier, "'qualifier' parameter must not be null.");
+    Objects.requireNonNull(supplier, "'supplier' parameter must not be null.");
+    final var key = new BundleKey<>(qualifier, clazz);
+    final var stack = registerStack.get();
+    final var provider = stack.peek();
+    if (stack.isEmpty()) {
+      registerStack.remove();
+    }
+    final var existing = ownBundles().putIfAbsent(key, new LazyBundle(key, clazz, supplier, provider));
+    if (existing != null) {
+      throw new IllegalArgumentException("Bundle for " + clazz + " has already been registered with: " + existing);
+    }
+  }
+
+  public void registerAll(@NotNull final Collection<? extends QualifiedBundle<? extends ContextBundle>> qualifiedBundles) {
+    registerAll(qualifiedBundles, ForkJoinPool.commonPool());
+  }
+
+  // Registers a batch of bundles, running the apply of every bundle as soon as all of the bundles it requires have been applied. Bundles
+  // that don't depend on each other are applied concurrently on the executor, so the time this takes is bounded by the slowest chain of
+  // requirements rather than the sum of all applies. Requirements have to either be part of the batch or already be registered. The
+  // whole graph is validated (including for cycles) before any bundle is applied. Blocks until every bundle has been applied (for an
+  // AsyncContextBundle, until its stage has completed); if any apply fails, the bundles that depend on it are skipped and the first
+  // failure is rethrown once everything else has finished.
+  public void registerAll(@NotNull final Collection<? extends QualifiedBundle<? extends ContextBundle>> qualifiedBundles, @NotNull final Executor executor) {
+    Objects.requireNonNull(qualifiedBundles, "'qualifiedBundles' parameter must not be null.");
+    Objects.requireNonNull(executor, "'executor' parameter must not be null.");
+
+    final var graph = BundleGraph.build(qualifiedBundles, this::isBundleRegistered);
+    // Every bundle in the batch counts as waiting from here on, until its requirements have been applied and the executor got to it.
+    final var batchStart = System.nanoTime();
+    final var applied = new HashMap<BundleGraph.Node, CompletableFuture<Void>>();
+    for (final BundleGraph.Node node : graph.order()) {
+      final var dependencies = new CompletableFuture<?>[node.dependencies.size()];
+      for (int i = 0; i < dependencies.length; i++) {
+        dependencies[i] = applied.get(node.dependencies.get(i));
+      }
+      final var ready = dependencies.length == 0 ? APPLIED : CompletableFuture.allOf(dependencies);
+      // Composed with the bundle's own apply, so that dependents of an AsyncContextBundle wait for its stage rather than just its call.
+      applied.put(node, ready.thenComposeAsync(ignored -> registerBundle(node.bundle, node.qualifier, batchStart), executor));
+    }
+
+    try {
+      CompletableFuture.allOf(applied.values().toArray(new CompletableFuture<?>[0])).join();
+    } catch (final CompletionException e) {
+      throw firstFailure(applied.values(), "Failed to register bundles.");
+    }
+  }
+
+  // Dependents of a failed bundle complete with the same exception as it did, so failures are de-duplicated before being reported.
+  // Checked exceptions are wrapped in an IllegalStateException with the given message, which says what was being done at the time.
+  static RuntimeException firstFailure(final Collection<CompletableFuture<Void>> futures, final String message) {
+    final var failures = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+    Throwable first = null;
+    for (final CompletableFuture<Void> future : futures) {
+      try {
+        future.join();
+      } catch (final CompletionException e) {
+        final var cause = e.getCause() == null ? e : e.getCause();
+        if (failures.add(cause)) {
+          if (first == null) {
+            first = cause;
+          } else {
+            first.addSuppressed(cause);
+          }
+        }
+      }
     }
+    if (first instanceof RuntimeException) {
+      return (RuntimeException) first;
+    }
+    if (first instanceof Error) {
+      throw (Error) first;
+    }
+    return new IllegalStateException(message, first);
+  }
+
+  // Closes on a pool of up to CLOSE_THREADS daemon threads of its own, which is shut down once everything has closed or timed out. Closes
+  // that ran over their timeout keep their thread until they finish.
+  @Override
+  public void close() {
+    final var count = new AtomicInteger();
+    final var executor = Executors.newFixedThreadPool(CLOSE_THREADS, task -> {
+      final var thread = new Thread(task, "app-context-close-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      close(executor, CLOSE_TIMEOUT);
+    } finally {
+      executor.shutdown();
+    }
+  }
 
-    registerStack.push(key);
-    bundle.apply(this, provided);
-    registerStack.pop();
+  // Closes every bundle registered into this context, in the reverse of the order they depend on each other: a bundle is only closed
+  // once every bundle that requires it and every bundle it provided has been closed, see BundleShutdown. Bundles that don't have to wait
+  // on each other close concurrently on the executor. A close that takes longer than the timeout (counted from when it is handed to the
+  // executor) is reported as failed and no longer waited for, so the bundles waiting on it go ahead. Lazily registered bundles that were
+  // never initialised aren't closed, nor are the bundles of a parent context. Blocks until every close has finished or timed out; if any
+  // failed, the first failure is rethrown once everything else has been closed. Only the first call closes anything.
+  public void close(@NotNull final Executor executor, @NotNull final Duration timeout) {
+    Objects.requireNonNull(executor, "'executor' parameter must not be null.");
+    Objects.requireNonNull(timeout, "'timeout' parameter must not be null.");
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("'timeout' must be positive. This is a programmer error.");
+    }
+    synchronized (valueLock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    final var registry = bundles;
+    final var shutdown = new BundleShutdown(executor, timeout);
+    for (final BundleKey<?, ?> key : registry.keys()) {
+      final var entry = registry.get(key.clazz, key.qualifier);
+      final var bundle = entry instanceof LazyBundle ? ((LazyBundle) entry).bundle : (ContextBundle) entry;
+      if (bundle != null) {
+        shutdown.add(key, bundle);
+      }
+    }
+    shutdown.close(providedBundles);
   }
 
   public <T extends ContextBundle> T getBundle(final Class<T> clazz) {
@@ -239,11 +1596,26 @@ public class AppContext {
   }
 
   public <T extends ContextBundle> T getBundle(final Class<T> clazz, final Enum<?> qualifier) {
-    final var key = new BundleKey<>(qualifier, clazz);
-    if (!bundles.containsKey(key)) {
+    final var entry = bundles.get(clazz, qualifier);
+    if (entry == null && parent != null) {
+      return parent.getBundle(clazz, qualifier);
+    }
+    final var counters = metrics;
+    if (counters != null) {
+      counters.bundle(clazz, qualifier, entry != null);
+    }
+    if (entry == null) {
       throw new IllegalArgumentException("Bundle for " + clazz + " has not yet been registered. This is a programmer error.");
     }
-    return clazz.cast(bundles.get(key));
+    return clazz.cast(resolve(entry));
+  }
+
+  // Turns an entry of the bundles map into the bundle, initialising it first if it was registered lazily.
+  static ContextBundle resolve(final Object entry) {
+    if (entry instanceof ContextBundle) {
+      return (ContextBundle) entry;
+    }
+    return ((LazyBundle) entry).get();
   }
 
   public <T extends ContextBundle> void useBundle(final Class<T> clazz, final Consumer<T> f) {
@@ -255,11 +1627,7 @@ public class AppContext {
   }
 
   public <T extends ContextBundle> void useBundle(final Class<T> clazz, final Enum<?> qualifier, final Consumer<T> f) {
-    final var key = new BundleKey<>(qualifier, clazz);
-    if (!bundles.containsKey(key)) {
-      throw new IllegalArgumentException("Bundle for " + clazz + " has not yet been registered. This is a programmer error.");
-    }
-    f.accept(clazz.cast(bundles.get(key)));
+    f.accept(getBundle(clazz, qualifier));
   }
 
   public boolean isBundleRegistered(final Class<? extends ContextBundle> clazz) {
@@ -271,31 +1639,263 @@ public class AppContext {
   }
 
   public boolean isBundleRegistered(final Class<? extends ContextBundle> clazz, final Enum<?> qualifier) {
-    return bundles.containsKey(new BundleKey<>(qualifier, clazz));
+    return bundles.get(clazz, qualifier) != null || (parent != null && parent.isBundleRegistered(clazz, qualifier));
+  }
+
+  // Starts recording the timing of every bundle registration from here on, replacing any profiler that was recording before. See
+  // StartupProfiler for what is recorded and reported.
+  @NotNull
+  public StartupProfiler startProfiling() {
+    final var started = new StartupProfiler();
+    profiler = started;
+    return started;
+  }
+
+  // Stops recording. The profiler that was recording keeps what it recorded so far.
+  public void stopProfiling() {
+    profiler = null;
+  }
+
+  // Starts counting hits and misses of getValue per path and of getBundle per bundle, starting over from zero. Only one in every
+  // sampleEvery lookups is counted (1 counts all of them), which keeps the cost down on hot paths. Nothing is counted, and lookups cost
+  // a single extra read, unless metrics are enabled.
+  public void enableMetrics(final int sampleEvery) {
+    if (sampleEvery < 1) {
+      throw new IllegalArgumentException("'sampleEvery' must be at least 1. This is a programmer error.");
+    }
+    metrics = new AccessMetrics(sampleEvery);
+  }
+
+  public void disableMetrics() {
+    metrics = null;
+  }
+
+  // The counters so far, along with every registered value and bundle that hasn't been read since metrics were enabled.
+  @NotNull
+  public MetricsSnapshot metrics() {
+    final var counters = metrics;
+    if (counters == null) {
+      throw new IllegalStateException("Metrics have not been enabled. This is a programmer error.");
+    }
+    final var valueCounts = new TreeMap<String, MetricsSnapshot.Counts>();
+    for (final var qualified : counters.values().entrySet()) {
+      for (final var entry : qualified.getValue().entrySet()) {
+        final var counter = entry.getValue();
+        valueCounts.put(AccessMetrics.name(entry.getKey(), qualified.getKey()), new MetricsSnapshot.Counts(counter.hits(), counter.misses()));
+      }
+    }
+    final var bundleCounts = new TreeMap<String, MetricsSnapshot.Counts>();
+    for (final var byClass : counters.bundles().entrySet()) {
+      for (final var entry : byClass.getValue().entrySet()) {
+        final var counter = entry.getValue();
+        bundleCounts.put(AccessMetrics.name(byClass.getKey().getName(), entry.getKey()), new MetricsSnapshot.Counts(counter.hits(), counter.misses()));
+      }
+    }
+
+    final var unreadValues = new ArrayList<String>();
+    for (final var qualified : values.entrySet()) {
+      for (final String path : qualified.getValue().keySet()) {
+        final var name = AccessMetrics.name(path, qualified.getKey());
+        final var counts = valueCounts.get(name);
+        if (counts == null || counts.getHits() == 0) {
+          unreadValues.add(name);
+        }
+      }
+    }
+    final var unreadBundles = new ArrayList<String>();
+    for (final BundleKey<?, ?> key : bundles.keys()) {
+      final var counts = bundleCounts.get(key.toString());
+      if (counts == null || counts.getHits() == 0) {
+        unreadBundles.add(key.toString());
+      }
+    }
+    Collections.sort(unreadValues);
+
+    return new MetricsSnapshot(
+        counters.sampleEvery(),
+        Collections.unmodifiableMap(valueCounts),
+        counters.unregisteredValues(),
+        Collections.unmodifiableMap(bundleCounts),
+        Collections.unmodifiableList(unreadValues),
+        Collections.unmodifiableList(unreadBundles)
+    );
   }
 
   public List<ContextBundle> providedBy(final Class<? extends ContextBundle> clazz) {
     return providedBy(clazz, NoQualifier.INSTANCE);
   }
 
-  public List<ContextBundle> providedBy(final QualifiedBundle<? extends ContextBundle> qualifiedBundle) {
-    return providedBy(qualifiedBundle.getClazz(), qualifiedBundle.getQualifier());
-  }
+  public List<ContextBundle> providedBy(final QualifiedBundle<? extends ContextBundle> qualifiedBundle) {
+    return providedBy(qualifiedBundle.getClazz(), qualifiedBundle.getQualifier());
+  }
+
+  public List<ContextBundle> providedBy(final Class<? extends ContextBundle> clazz, final Enum<?> qualifier) {
+    final var key = new BundleKey<>(qualifier, clazz);
+    if (!providedBundles.containsKey(key)) {
+      if (parent != null) {
+        return parent.providedBy(clazz, qualifier);
+      }
+      throw new IllegalArgumentException("Bundle for " + clazz + " has not yet been registered, thus cannot provide any bundles. This is a programmer error.");
+    }
+    return providedBundles.get(key);
+  }
+
+  // Stands in for a lazily registered bundle until it is first retrieved. Once initialised, the entry in the bundles map is replaced with
+  // the bundle itself so later lookups skip this indirection, but anything that grabbed the LazyBundle before then (e.g. a frozen
+  // snapshot) keeps working through it.
+  private final class LazyBundle {
+
+    @NotNull
+    private final BundleKey<? extends Enum<?>, ? extends ContextBundle> key;
+    @NotNull
+    private final Class<? extends ContextBundle> clazz;
+    // The bundle that was applying when this one got registered, if any. It gets the bundle added to its provided bundles once the bundle
+    // actually exists.
+    @Nullable
+    private final BundleKey<? extends Enum<?>, ? extends ContextBundle> provider;
+    // Cleared once initialisation has been attempted, so the supplier (and anything it captures) can be collected.
+    @Nullable
+    private Supplier<? extends ContextBundle> supplier;
+    @Nullable
+    private volatile ContextBundle bundle;
+    @Nullable
+    private volatile Throwable failure;
+    // Only ever touched while holding the monitor, which is only ever held to look at or change this state, never while running the
+    // supplier or the bundle's apply. Set while the bundle is being initialised: the future the initialiser completes once it is done,
+    // which other threads wait on, and the thread itself, so that re-entrant lookups from it can be told apart from first lookups.
+    @Nullable
+    private CompletableFuture<ContextBundle> initialised;
+    @Nullable
+    private Thread initialiser;
+    // Set once the bundle has been created and is applying.
+    @Nullable
+    private ContextBundle applying;
+
+    private LazyBundle(
+        @NotNull final BundleKey<? extends Enum<?>, ? extends ContextBundle> key,
+        @NotNull final Class<? extends ContextBundle> clazz,
+        @NotNull final Supplier<? extends ContextBundle> supplier,
+        @Nullable final BundleKey<? extends Enum<?>, ? extends ContextBundle> provider
+    ) {
+      this.key = key;
+      this.clazz = clazz;
+      this.supplier = supplier;
+      this.provider = provider;
+    }
+
+    private ContextBundle get() {
+      final var ready = bundle;
+      if (ready != null) {
+        return ready;
+      }
+      final Supplier<? extends ContextBundle> creating;
+      final CompletableFuture<ContextBundle> waitingFor;
+      synchronized (this) {
+        if (bundle != null) {
+          return bundle;
+        }
+        if (failure != null) {
+          throw failed(failure);
+        }
+        if (applying != null) {
+          // The bundle is looking itself up (or is being looked up by a bundle it provides, or by anything its apply waits on) from inside
+          // its own apply, which is allowed for eagerly registered bundles too.
+          return applying;
+        }
+        if (initialiser == Thread.currentThread()) {
+          throw new IllegalStateException("Lazily registered bundle " + key + " requires itself to be initialised. This is a programmer error.");
+        }
+        if (initialised == null) {
+          initialised = new CompletableFuture<>();
+          initialiser = Thread.currentThread();
+          creating = Objects.requireNonNull(supplier, "Supplier was already used. This is a library error.");
+          waitingFor = null;
+        } else {
+          creating = null;
+          waitingFor = initialised;
+        }
+      }
+      return waitingFor != null ? await(waitingFor) : initialise(creating);
+    }
+
+    // Lazily registered bundles are created and applied on the thread that retrieves them first, which waits for required bundles still
+    // applying. Runs without holding the monitor, other threads retrieving the bundle meanwhile wait for the initialised future instead.
+    private ContextBundle initialise(final Supplier<? extends ContextBundle> creating) {
+      final var waitingSince = profiler == null ? 0 : System.nanoTime();
+      final ContextBundle created;
+      try {
+        created = creating.get();
+        if (!clazz.isInstance(created)) {
+          throw new IllegalStateException("Supplier for lazily registered bundle " + key + " returned " + created + ". This is a programmer error.");
+        }
+        final var provided = resolveRequired(created);
+        final var waitingFor = pendingRequired(created);
+        if (waitingFor != null) {
+          CompletableFuture.allOf(waitingFor).join();
+        }
+        synchronized (this) {
+          applying = created;
+        }
+        if (provider != null) {
+          addProvided(provider, created);
+        }
+        applyBundle(key, created, provided, waitingSince);
+      } catch (final Throwable e) {
+        // Errors are recorded too, so later lookups report the original failure rather than the bundle seemingly requiring itself.
+        done(null, e);
+        throw e;
+      }
+      bundles.replace(key, this, created);
+      done(created, null);
+      return created;
+    }
+
+    private ContextBundle await(final CompletableFuture<ContextBundle> initialised) {
+      try {
+        return initialised.get();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for lazily registered bundle " + key + " to initialise.", e);
+      } catch (final ExecutionException e) {
+        throw failed(e.getCause());
+      }
+    }
+
+    private IllegalStateException failed(final Throwable failure) {
+      return new IllegalStateException("Lazily registered bundle " + key + " failed to initialise.", failure);
+    }
 
-  public List<ContextBundle> providedBy(final Class<? extends ContextBundle> clazz, final Enum<?> qualifier) {
-    final var key = new BundleKey<>(qualifier, clazz);
-    if (!providedBundles.containsKey(key)) {
-      throw new IllegalArgumentException("Bundle for " + clazz + " has not yet been registered, thus cannot provide any bundles. This is a programmer error.");
+    private void done(@Nullable final ContextBundle created, @Nullable final Throwable e) {
+      final CompletableFuture<ContextBundle> completing;
+      synchronized (this) {
+        bundle = created;
+        failure = e;
+        completing = initialised;
+        initialised = null;
+        initialiser = null;
+        applying = null;
+        supplier = null;
+      }
+      if (e == null) {
+        completing.complete(created);
+      } else {
+        completing.completeExceptionally(e);
+      }
+    }
+
+    @Override
+    public String toString() {
+      final var ready = bundle;
+      return ready != null ? ready.toString() : "LazyBundle{" + key + "}";
     }
-    return providedBundles.get(key);
   }
 
-  private static class BundleKey<T extends Enum<T>, K extends ContextBundle> {
+  static final class BundleKey<T extends Enum<T>, K extends ContextBundle> {
 
     private final Enum<T> qualifier;
     private final Class<K> clazz;
 
-    private BundleKey(final Enum<T> qualifier, final Class<K> clazz) {
+    BundleKey(final Enum<T> qualifier, final Class<K> clazz) {
       this.qualifier = qualifier;
       this.clazz = clazz;
     }
@@ -315,65 +1915,130 @@ public class AppContext {
 
     @Override
     public int hashCode() {
-      return Objects.hash(qualifier, clazz);
+      return 31 * qualifier.hashCode() + clazz.hashCode();
     }
-  }
-
-  private static class ValueKey<K extends Enum<K>> {
-
-    @NotNull
-    private final String pathPart;
-    @NotNull
-    private final Enum<K> qualifier;
 
-    private ValueKey(@NotNull final String pathPart, @NotNull final Enum<K> qualifier) {
-      this.pathPart = pathPart;
-      this.qualifier = qualifier;
+    Class<K> clazz() {
+      return clazz;
     }
 
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
-      }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
-      }
-      ValueKey<?> valueKey = (ValueKey<?>) o;
-      return pathPart.equals(valueKey.pathPart) &&
-          qualifier.equals(valueKey.qualifier);
+    Enum<T> qualifier() {
+      return qualifier;
     }
 
     @Override
-    public int hashCode() {
-      return Objects.hash(pathPart, qualifier);
+    public String toString() {
+      return qualifier == NoQualifier.INSTANCE ? clazz.getName() : clazz.getName() + "[" + qualifier + "]";
     }
   }
 
-  private static class ArrayContainerValue implements ContextValue {
+  private final class ArrayContainerValue implements ContextValue {
 
     @NotNull
     private final ContextValue parent;
+    // Where the array is and which qualifier it was registered with, for when a dense array has to get holders for its elements.
+    @NotNull
+    private final ValuePath path;
+    @NotNull
+    private final Enum<?> qualifier;
     @NotNull
     private final List<ContextValue> children = new ArrayList<>();
+    // Set for as long as every element is integral (Long, Integer, Short or Byte), or every element is a Double or Float, registered in
+    // order and with the array's own qualifier.
+    // The elements then only live in here and children stays empty. Cleared for good once the array is inflated.
+    @Nullable
+    private volatile DenseElements dense;
+    // The views of the dense elements handed out so far, by index, so that looking up the same element again doesn't create another one.
+    // Filled in racily: two threads may each create a view of the same element, which are equal and work the same. Dropped on inflation.
+    @Nullable
+    private volatile DenseElement[] views;
 
-    private ArrayContainerValue(@NotNull final ContextValue parent) {
+    private ArrayContainerValue(@NotNull final ContextValue parent, @NotNull final ValuePath path, @NotNull final Enum<?> qualifier) {
       this.parent = parent;
+      this.path = path;
+      this.qualifier = qualifier;
     }
 
-    private void addChildWithStringIndex(final String idx, final ContextValue child) {
-      try {
-        addChild(Integer.parseInt(idx), child);
-      } catch (final NumberFormatException e) {
-        throw new IllegalStateException("Attempted to add a child with string representing a numeric index but was not an integer. This is a library error.", e);
+    // Returns whether the value was stored as a dense element. Only ever called while holding the value lock.
+    private boolean appendDense(final int idx, @NotNull final Object value, @NotNull final Enum<?> qualifier) {
+      final var current = dense;
+      final var size = current == null ? 0 : current.size;
+      if (qualifier != this.qualifier || idx != size || !children.isEmpty()) {
+        return false;
+      }
+      // Integral and floating point values are widened the same way ValueSnapshot.kindOf does, so an array of Integers (or Floats) is
+      // stored as densely as one of Longs (or Doubles). Its elements read back as Longs (or Doubles), as they would from a snapshot.
+      if (isLong(value) && (current == null || current.longs != null)) {
+        var longs = current == null ? new long[INITIAL_DENSE_CAPACITY] : current.longs;
+        if (size == longs.length) {
+          longs = Arrays.copyOf(longs, size * 2);
+        }
+        longs[size] = ((Number) value).longValue();
+        dense = new DenseElements(longs, null, size + 1);
+        return true;
+      }
+      if ((value instanceof Double || value instanceof Float) && (current == null || current.doubles != null)) {
+        var doubles = current == null ? new double[INITIAL_DENSE_CAPACITY] : current.doubles;
+        if (size == doubles.length) {
+          doubles = Arrays.copyOf(doubles, size * 2);
+        }
+        doubles[size] = ((Number) value).doubleValue();
+        dense = new DenseElements(null, doubles, size + 1);
+        return true;
+      }
+      return false;
+    }
+
+    private boolean isLong(@NotNull final Object value) {
+      return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    @Nullable
+    private DenseElement denseChild(final int idx) {
+      final var elements = dense;
+      return elements == null ? null : denseChild(elements, idx);
+    }
+
+    @Nullable
+    private DenseElement denseChild(@NotNull final DenseElements elements, final int idx) {
+      if (idx < 0 || idx >= elements.size) {
+        return null;
       }
+      var cached = views;
+      if (cached == null || idx >= cached.length) {
+        cached = cached == null ? new DenseElement[elements.size] : Arrays.copyOf(cached, Math.max(elements.size, cached.length * 2));
+        views = cached;
+      }
+      var view = cached[idx];
+      if (view == null) {
+        view = new DenseElement(this, idx, null);
+        cached[idx] = view;
+      }
+      return view;
+    }
+
+    @NotNull
+    private DenseElement frozenChild(final int idx, @NotNull final DenseElements frozen) {
+      return new DenseElement(this, idx, frozen);
     }
 
     private void addChild(final int idx, final ContextValue child) {
-      while (children.size() < idx - 1) {
+      // Indices don't have to be registered in order, gaps are padded with null until they get filled in.
+      while (children.size() <= idx) {
         children.add(null);
       }
-      children.add(child);
+      children.set(idx, child);
+    }
+
+    // Returns whether the array is empty afterwards. Trailing gaps are trimmed so that the array never looks longer than its last element.
+    private boolean removeChild(final int idx) {
+      if (idx < children.size()) {
+        children.set(idx, null);
+      }
+      while (!children.isEmpty() && children.get(children.size() - 1) == null) {
+        children.remove(children.size() - 1);
+      }
+      return children.isEmpty();
     }
 
     @Override
@@ -388,7 +2053,11 @@ public class AppContext {
 
     @Override
     public ContextValue child(final int key) {
-      return children.get(key);
+      final var elements = dense;
+      if (elements != null) {
+        return denseChild(elements, key);
+      }
+      return key < children.size() ? children.get(key) : null;
     }
 
     @Override
@@ -416,6 +2085,21 @@ public class AppContext {
       throw new UnsupportedOperationException("Cannot update an array with a new array. This is a library error.");
     }
 
+    @Override
+    public boolean compareAndUpdate(@NotNull final Object expectedValue, @NotNull final Object newValue) {
+      throw new UnsupportedOperationException("Cannot update an array container. This is a library error.");
+    }
+
+    @Override
+    public Object getAndUpdate(@NotNull final UnaryOperator<Object> updateFunction) {
+      throw new UnsupportedOperationException("Cannot update an array container. This is a library error.");
+    }
+
+    @Override
+    public long version() {
+      throw new UnsupportedOperationException("Containers are not versioned, only leaf values are. This is a library error.");
+    }
+
     @Override
     public String asString() {
       throw new UnsupportedOperationException("Cannot represent an object as a string.");
@@ -425,45 +2109,168 @@ public class AppContext {
     public Number asNumber() {
       throw new UnsupportedOperationException("Cannot represent an object as a number.");
     }
+
+    @Override
+    public long asLong() {
+      throw new UnsupportedOperationException("Cannot represent an object as a number.");
+    }
+
+    @Override
+    public double asDouble() {
+      throw new UnsupportedOperationException("Cannot represent an object as a number.");
+    }
+
+    @Override
+    public int asInt() {
+      throw new UnsupportedOperationException("Cannot represent an object as a number.");
+    }
+
+    @Override
+    public long[] asLongArray() {
+      final var elements = dense;
+      if (elements != null) {
+        if (elements.longs != null) {
+          return Arrays.copyOf(elements.longs, elements.size);
+        }
+        final var result = new long[elements.size];
+        for (int i = 0; i < result.length; i++) {
+          result[i] = ValueHolder.Leaf.toLong(elements.doubles[i], elements.doubles[i]);
+        }
+        return result;
+      }
+      // Not safe to read without the lock while bundles are still registering into the array, like the tree itself.
+      synchronized (valueLock) {
+        final var result = new long[children.size()];
+        for (int i = 0; i < result.length; i++) {
+          result[i] = element(i).asLong();
+        }
+        return result;
+      }
+    }
+
+    @Override
+    public double[] asDoubleArray() {
+      final var elements = dense;
+      if (elements != null) {
+        if (elements.doubles != null) {
+          return Arrays.copyOf(elements.doubles, elements.size);
+        }
+        final var result = new double[elements.size];
+        for (int i = 0; i < result.length; i++) {
+          result[i] = elements.longs[i];
+        }
+        return result;
+      }
+      synchronized (valueLock) {
+        final var result = new double[children.size()];
+        for (int i = 0; i < result.length; i++) {
+          result[i] = element(i).asDouble();
+        }
+        return result;
+      }
+    }
+
+    @NotNull
+    private ContextValue element(final int idx) {
+      final var child = children.get(idx);
+      if (child == null) {
+        throw new UnsupportedOperationException("Cannot represent an array with a gap at " + idx + " as an array of numbers.");
+      }
+      return child;
+    }
   }
 
-  private static class ObjectContainerValue implements ContextValue {
+  // The elements of a dense array. Appending shares the underlying array with the previous instance, which never reads past its own size,
+  // so only growing the array has to copy it.
+  private static final class DenseElements {
 
     @Nullable
-    private final ContextValue parent;
-    private final Map<String, ContextValue> children = new HashMap<>();
+    private final long[] longs;
+    @Nullable
+    private final double[] doubles;
+    private final int size;
 
-    private ObjectContainerValue(final ContextValue parent) {
-      this.parent = parent;
+    private DenseElements(@Nullable final long[] longs, @Nullable final double[] doubles, final int size) {
+      this.longs = longs;
+      this.doubles = doubles;
+      this.size = size;
     }
 
-    private void addChild(final String key, final ContextValue value) {
-      children.put(key, value);
+    @NotNull
+    private Object value(final int idx) {
+      return longs != null ? (Object) longs[idx] : (Object) doubles[idx];
+    }
+  }
+
+  // An element of a dense array, as handed out by its array. Reads go straight to the primitive array. Anything that needs the element to
+  // be a value of its own (updating it, or subscribing to it or removing it through the context) inflates the array first, after which the
+  // element hands everything to its holder. The array keeps the views it handed out, so looking up the same element again normally gets
+  // the same view, but views of the same element are only guaranteed to be equal.
+  private final class DenseElement implements ContextValue {
+
+    @NotNull
+    private final ArrayContainerValue array;
+    private final int index;
+    // The elements as of when a FrozenAppContext was taken, for views handed out by one.
+    @Nullable
+    private final DenseElements frozen;
+    @Nullable
+    private volatile ContextValue holder;
+
+    private DenseElement(@NotNull final ArrayContainerValue array, final int index, @Nullable final DenseElements frozen) {
+      this.array = array;
+      this.index = index;
+      this.frozen = frozen;
+    }
+
+    @Nullable
+    private DenseElements elements() {
+      return holder == null ? array.dense : null;
+    }
+
+    @NotNull
+    private ContextValue inflated() {
+      var resolved = holder;
+      if (resolved == null) {
+        synchronized (valueLock) {
+          inflate(array);
+          resolved = index < array.children.size() ? array.children.get(index) : null;
+        }
+        if (resolved == null) {
+          if (frozen == null) {
+            throw new IllegalStateException("Element " + index + " of " + array.path + " has been removed. This is a programmer error.");
+          }
+          // Removed since the frozen context was taken, which keeps the value it had like it keeps removed holders.
+          resolved = new ValueHolder(array, array.path.child(index), frozen.value(index), changes);
+        }
+        holder = resolved;
+      }
+      return resolved;
     }
 
     @Override
     public ContextValue parent() {
-      return parent;
+      return array;
     }
 
     @Override
     public ContextValue child(@NotNull final String key) {
-      return children.get(key);
+      throw new UnsupportedOperationException("Cannot get a child of a leaf value. This is a library error.");
     }
 
     @Override
     public ContextValue child(final int key) {
-      throw new UnsupportedOperationException("Cannot get an array index from an object container. This is a library error.");
+      throw new UnsupportedOperationException("Cannot get a child of a leaf value. This is a library error.");
     }
 
     @Override
     public boolean isContainer() {
-      return true;
+      return false;
     }
 
     @Override
     public boolean isObject() {
-      return true;
+      return false;
     }
 
     @Override
@@ -473,35 +2280,123 @@ public class AppContext {
 
     @Override
     public boolean isLeaf() {
-      return false;
+      return true;
     }
 
     @Override
-    public Object update(@NotNull Object newValue) {
-      throw new UnsupportedOperationException("Cannot update an array container. This is a library error.");
+    public Object update(@NotNull final Object newValue) {
+      return inflated().update(newValue);
+    }
+
+    @Override
+    public boolean compareAndUpdate(@NotNull final Object expectedValue, @NotNull final Object newValue) {
+      return inflated().compareAndUpdate(expectedValue, newValue);
+    }
+
+    @Override
+    public Object getAndUpdate(@NotNull final UnaryOperator<Object> updateFunction) {
+      return inflated().getAndUpdate(updateFunction);
+    }
+
+    @Override
+    public long version() {
+      // Dense elements have never been updated.
+      return elements() != null ? 0 : inflated().version();
     }
 
     @Override
     public String asString() {
-      throw new UnsupportedOperationException("Cannot represent an array as a string.");
+      final var elements = elements();
+      return elements != null ? elements.value(index).toString() : inflated().asString();
     }
 
     @Override
     public Number asNumber() {
-      throw new UnsupportedOperationException("Cannot represent an array as a number.");
+      final var elements = elements();
+      return elements != null ? (Number) elements.value(index) : inflated().asNumber();
+    }
+
+    @Override
+    public long asLong() {
+      final var elements = elements();
+      if (elements == null) {
+        return inflated().asLong();
+      }
+      return elements.longs != null ? elements.longs[index] : ValueHolder.Leaf.toLong(elements.doubles[index], elements.doubles[index]);
+    }
+
+    @Override
+    public double asDouble() {
+      final var elements = elements();
+      if (elements == null) {
+        return inflated().asDouble();
+      }
+      return elements.longs != null ? elements.longs[index] : elements.doubles[index];
+    }
+
+    @Override
+    public int asInt() {
+      final var value = asLong();
+      if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+        throw new UnsupportedOperationException("Cannot represent the value " + value + " as an int.");
+      }
+      return (int) value;
+    }
+
+    @Override
+    public long[] asLongArray() {
+      throw new UnsupportedOperationException("Cannot represent the value " + asNumber() + " as an array.");
+    }
+
+    @Override
+    public double[] asDoubleArray() {
+      throw new UnsupportedOperationException("Cannot represent the value " + asNumber() + " as an array.");
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof DenseElement)) {
+        return false;
+      }
+      final var that = (DenseElement) o;
+      return array == that.array && index == that.index;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(array) + index;
+    }
+
+    @Override
+    public String toString() {
+      return "DenseElement{" +
+          "path=" + array.path + VALUE_PATH_SEPARATOR + index +
+          ", value=" + asNumber() +
+          '}';
     }
   }
 
-  private static class ValueHolder implements ContextValue {
+  private static class ObjectContainerValue implements ContextValue {
 
-    @NotNull
-    private ContextValue parent;
-    @NotNull
-    private Object value;
+    @Nullable
+    private final ContextValue parent;
+    private final Map<String, ContextValue> children = new HashMap<>();
 
-    ValueHolder(@NotNull final ContextValue parent, @NotNull final Object value) {
+    private ObjectContainerValue(final ContextValue parent) {
       this.parent = parent;
-      this.value = value;
+    }
+
+    private void addChild(final String key, final ContextValue value) {
+      children.put(key, value);
+    }
+
+    // Returns whether the object is empty afterwards.
+    private boolean removeChild(final String key) {
+      children.remove(key);
+      return children.isEmpty();
     }
 
     @Override
@@ -511,22 +2406,22 @@ public class AppContext {
 
     @Override
     public ContextValue child(@NotNull final String key) {
-      throw new UnsupportedOperationException("Cannot get a child of a leaf value. This is a library error.");
+      return children.get(key);
     }
 
     @Override
     public ContextValue child(final int key) {
-      throw new UnsupportedOperationException("Cannot get a child of a leaf value. This is a library error.");
+      throw new UnsupportedOperationException("Cannot get an array index from an object container. This is a library error.");
     }
 
     @Override
     public boolean isContainer() {
-      return false;
+      return true;
     }
 
     @Override
     public boolean isObject() {
-      return false;
+      return true;
     }
 
     @Override
@@ -536,64 +2431,62 @@ public class AppContext {
 
     @Override
     public boolean isLeaf() {
-      return true;
+      return false;
     }
 
     @Override
-    public Object update(@NotNull final Object newValue) {
-      final var old = value;
-      value = newValue;
-      return old;
+    public Object update(@NotNull Object newValue) {
+      throw new UnsupportedOperationException("Cannot update an array container. This is a library error.");
+    }
+
+    @Override
+    public boolean compareAndUpdate(@NotNull final Object expectedValue, @NotNull final Object newValue) {
+      throw new UnsupportedOperationException("Cannot update an object container. This is a library error.");
+    }
+
+    @Override
+    public Object getAndUpdate(@NotNull final UnaryOperator<Object> updateFunction) {
+      throw new UnsupportedOperationException("Cannot update an object container. This is a library error.");
+    }
+
+    @Override
+    public long version() {
+      throw new UnsupportedOperationException("Containers are not versioned, only leaf values are. This is a library error.");
     }
 
     @Override
     public String asString() {
-      return value.toString();
+      throw new UnsupportedOperationException("Cannot represent an array as a string.");
     }
 
     @Override
     public Number asNumber() {
-      if (value instanceof Number) {
-        return (Number) value;
-      } else {
-        final String strValue = (String) value;
-        try {
-          return Long.parseLong(strValue);
-        } catch (final NumberFormatException ignored) {
-        }
-        try {
-          return Double.parseDouble(strValue);
-        } catch (final NumberFormatException ignored) {
-        }
-      }
+      throw new UnsupportedOperationException("Cannot represent an array as a number.");
+    }
+
+    @Override
+    public long asLong() {
+      throw new UnsupportedOperationException("Cannot represent an array as a number.");
+    }
 
-      throw new UnsupportedOperationException("Cannot represent the value " + value + " as a number.");
+    @Override
+    public double asDouble() {
+      throw new UnsupportedOperationException("Cannot represent an array as a number.");
     }
 
     @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
-      }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
-      }
-      ValueHolder that = (ValueHolder) o;
-      return parent.equals(that.parent) &&
-          value.equals(that.value);
+    public int asInt() {
+      throw new UnsupportedOperationException("Cannot represent an array as a number.");
     }
 
     @Override
-    public int hashCode() {
-      return Objects.hash(parent, value);
+    public long[] asLongArray() {
+      throw new UnsupportedOperationException("Cannot represent an object as an array.");
     }
 
     @Override
-    public String toString() {
-      return "ValueHolder{" +
-          "parent=" + parent +
-          ", value=" + value +
-          '}';
+    public double[] asDoubleArray() {
+      throw new UnsupportedOperationException("Cannot represent an object as an array.");
     }
   }
 }
@@ -0,0 +1,34 @@
+package com.ud.bundle;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import org.jetbrains.annotations.NotNull;
+
+// A bundle whose setup runs asynchronously, e.g. one that does a network handshake or warms a cache. registerBundle (and registerAll)
+// call applyAsync and move on without waiting for its stage; bundles that require this one are only applied once the stage completes.
+// Use AppContext.ready() to wait for every bundle to be applied. Anything applying the bundle synchronously (e.g. retrieving it when it
+// was registered lazily) waits for the stage instead.
+public interface AsyncContextBundle extends ContextBundle {
+
+  // Starts setting the bundle up and returns a stage that completes once it is. Runs on the registering thread, so anything slow belongs
+  // in the stage rather than in here. Only bundles registered from in here count as provided by this one (see AppContext.providedBy, and
+  // close waiting for them); ones registered from the stage's continuations count as registered on their own. A bundle that can only be
+  // set up once the stage is done can still be registered in here by requiring this one, which makes it wait for the stage.
+  @NotNull
+  CompletionStage<Void> applyAsync(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles);
+
+  @Override
+  default void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    try {
+      applyAsync(ctx, requiredBundles).toCompletableFuture().join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.ud.bundle;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Flight Recorder event for the apply of a bundle, whether it was registered eagerly, through registerAll or lazily. The event's duration
+// is the apply itself, including bundles applied from inside of it.
+@Name("com.ud.bundle.BundleApply")
+@Label("Bundle Apply")
+@Category("AppContext")
+@Description("A bundle being applied to an AppContext")
+final class BundleApplyEvent extends Event {
+
+  @Label("Bundle")
+  String bundle;
+
+  @Label("Applied From")
+  @Description("The bundle whose apply this bundle was applied from, if any")
+  String parent;
+
+  @Label("Failed")
+  boolean failed;
+}
@@ -0,0 +1,138 @@
+package com.ud.bundle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+
+// The dependency graph between a batch of bundles that are about to be registered together, built from ContextBundle.requiredBundles().
+// Only requirements on other bundles of the same batch become edges; requirements on bundles that are already registered are satisfied
+// up front and anything else is a programmer error.
+final class BundleGraph {
+
+  @NotNull
+  private final Map<AppContext.BundleKey<?, ?>, Node> nodes;
+  @NotNull
+  private final List<Node> order;
+
+  private BundleGraph(@NotNull final Map<AppContext.BundleKey<?, ?>, Node> nodes, @NotNull final List<Node> order) {
+    this.nodes = nodes;
+    this.order = order;
+  }
+
+  @NotNull
+  static BundleGraph build(
+      @NotNull final Collection<? extends QualifiedBundle<? extends ContextBundle>> qualifiedBundles,
+      @NotNull final Predicate<QualifiedBundle<? extends ContextBundle>> isRegistered
+  ) {
+    final var nodes = new LinkedHashMap<AppContext.BundleKey<?, ?>, Node>();
+    for (final QualifiedBundle<? extends ContextBundle> qualifiedBundle : qualifiedBundles) {
+      final ContextBundle bundle = Objects.requireNonNull(qualifiedBundle.getBundle(), "'bundle' in QualifiedBundle must not be null.");
+      final var qualifier = qualifiedBundle.getQualifier();
+      final var key = new AppContext.BundleKey<>(qualifier, bundle.getClass());
+      if (nodes.containsKey(key) || isRegistered.test(qualifiedBundle)) {
+        throw new IllegalArgumentException("Bundle for " + bundle.getClass() + " with qualifier " + qualifier + " has already been registered. This is a programmer error.");
+      }
+      nodes.put(key, new Node(key, bundle, qualifier));
+    }
+
+    for (final Node node : nodes.values()) {
+      for (final QualifiedBundle<? extends ContextBundle> required : node.bundle.requiredBundles()) {
+        final var dependency = nodes.get(new AppContext.BundleKey<>(required.getQualifier(), required.getClazz()));
+        if (dependency != null) {
+          node.dependencies.add(dependency);
+          dependency.dependents.add(node);
+        } else if (!isRegistered.test(required)) {
+          throw new IllegalStateException(node.bundle.getClass() + " requires bundle " + required + " that has not yet been registered. This is a programmer error.");
+        }
+      }
+    }
+
+    return new BundleGraph(nodes, topologicalOrder(nodes.values()));
+  }
+
+  // Kahn's algorithm. Anything left over once no more nodes become free is part of, or depends on, a cycle.
+  private static List<Node> topologicalOrder(final Collection<Node> nodes) {
+    final var pending = new HashMap<Node, Integer>();
+    final var free = new ArrayDeque<Node>();
+    for (final Node node : nodes) {
+      pending.put(node, node.dependencies.size());
+      if (node.dependencies.isEmpty()) {
+        free.add(node);
+      }
+    }
+
+    final var order = new ArrayList<Node>(nodes.size());
+    while (!free.isEmpty()) {
+      final var node = free.poll();
+      order.add(node);
+      for (final Node dependent : node.dependents) {
+        if (pending.merge(dependent, -1, Integer::sum) == 0) {
+          free.add(dependent);
+        }
+      }
+    }
+
+    if (order.size() != nodes.size()) {
+      throw new IllegalStateException("Required bundles form a cycle: " + describeCycle(pending) + ". This is a programmer error.");
+    }
+    return order;
+  }
+
+  // Walks dependencies from any node that never became free until a node repeats. Every such node still has an unresolved dependency,
+  // so the walk always runs into the cycle.
+  private static String describeCycle(final Map<Node, Integer> pending) {
+    var node = pending.entrySet().stream().filter(e -> e.getValue() > 0).findFirst().orElseThrow().getKey();
+    final var path = new ArrayList<Node>();
+    final var seen = new HashSet<Node>();
+    while (seen.add(node)) {
+      path.add(node);
+      node = node.dependencies.stream().filter(d -> pending.get(d) > 0).findFirst().orElseThrow();
+    }
+    final var cycle = new ArrayList<>(path.subList(path.indexOf(node), path.size()));
+    cycle.add(node);
+    return cycle.stream().map(Node::toString).collect(Collectors.joining(" -> "));
+  }
+
+  // Every node of the batch, ordered so that each node comes after all of its dependencies.
+  @NotNull
+  List<Node> order() {
+    return order;
+  }
+
+  int size() {
+    return nodes.size();
+  }
+
+  static final class Node {
+
+    @NotNull
+    final AppContext.BundleKey<?, ?> key;
+    @NotNull
+    final ContextBundle bundle;
+    @NotNull
+    final Enum<?> qualifier;
+    // Nodes of the same batch this node requires, in the order they are returned by requiredBundles().
+    final List<Node> dependencies = new ArrayList<>();
+    final List<Node> dependents = new ArrayList<>();
+
+    private Node(@NotNull final AppContext.BundleKey<?, ?> key, @NotNull final ContextBundle bundle, @NotNull final Enum<?> qualifier) {
+      this.key = key;
+      this.bundle = bundle;
+      this.qualifier = qualifier;
+    }
+
+    @Override
+    public String toString() {
+      return key.toString();
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package com.ud.bundle;
+
+import com.ud.bundle.QualifiedBundle.NoQualifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Where an AppContext keeps its bundle entries (the bundle itself, or the stand-in of a lazily registered one). Entries are found by
+// class through an open-addressed table of this registry's own, and then by qualifier through per-class slots: one field for the
+// unqualified entry and an array indexed by ordinal for the enum type that qualifies the class. A lookup therefore never allocates a key
+// and never hashes a qualifier. Nothing is stored anywhere but in the registry, so a short-lived context leaves nothing behind once it is
+// collected, and looking up a class that was never registered doesn't store anything either.
+//
+// Reads are lock-free: slots are published through the volatile writes of the table, and every slot through a volatile write of an array
+// or field that is never mutated afterwards. Writes are rare (registration) and happen under the registry's lock for adding a class, and
+// copy-on-write under the per-class lock otherwise.
+final class BundleRegistry {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  // Slots by class, probed linearly from the class's hash. Kept at most half full, and replaced by a table twice the size when it would
+  // be any fuller.
+  private volatile AtomicReferenceArray<Slots> slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+  // Only touched while holding the registry's lock.
+  private int classes;
+  // Every key with an entry, in registration order.
+  private final List<AppContext.BundleKey<?, ?>> keys = new CopyOnWriteArrayList<>();
+
+  @Nullable
+  Object get(@NotNull final Class<?> clazz, @NotNull final Enum<?> qualifier) {
+    final var found = find(slots, clazz);
+    return found == null ? null : found.get(qualifier);
+  }
+
+  // Stores the entry unless there already is one for the key, in which case that one is returned and nothing changes.
+  @Nullable
+  Object putIfAbsent(@NotNull final AppContext.BundleKey<?, ?> key, @NotNull final Object entry) {
+    final var existing = slotsFor(key.clazz()).putIfAbsent(key.qualifier(), entry);
+    if (existing == null) {
+      keys.add(key);
+    }
+    return existing;
+  }
+
+  void replace(@NotNull final AppContext.BundleKey<?, ?> key, @NotNull final Object expected, @NotNull final Object entry) {
+    final var found = find(slots, key.clazz());
+    if (found != null) {
+      found.replace(key.qualifier(), expected, entry);
+    }
+  }
+
+  @NotNull
+  List<AppContext.BundleKey<?, ?>> keys() {
+    return keys;
+  }
+
+  int size() {
+    return keys.size();
+  }
+
+  @Nullable
+  private static Slots find(final AtomicReferenceArray<Slots> table, final Class<?> clazz) {
+    final var mask = table.length() - 1;
+    for (int i = index(clazz, mask); ; i = (i + 1) & mask) {
+      final var candidate = table.get(i);
+      if (candidate == null || candidate.clazz == clazz) {
+        return candidate;
+      }
+    }
+  }
+
+  private static int index(final Class<?> clazz, final int mask) {
+    final var hash = System.identityHashCode(clazz);
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private synchronized Slots slotsFor(final Class<?> clazz) {
+    var table = slots;
+    final var existing = find(table, clazz);
+    if (existing != null) {
+      return existing;
+    }
+    if ((classes + 1) * 2 > table.length()) {
+      final var grown = new AtomicReferenceArray<Slots>(table.length() * 2);
+      for (int i = 0; i < table.length(); i++) {
+        final var moved = table.get(i);
+        if (moved != null) {
+          insert(grown, moved);
+        }
+      }
+      slots = grown;
+      table = grown;
+    }
+    final var created = new Slots(clazz);
+    insert(table, created);
+    classes++;
+    return created;
+  }
+
+  private static void insert(final AtomicReferenceArray<Slots> table, final Slots entry) {
+    final var mask = table.length() - 1;
+    var i = index(entry.clazz, mask);
+    while (table.get(i) != null) {
+      i = (i + 1) & mask;
+    }
+    table.set(i, entry);
+  }
+
+  private static final class Slots {
+
+    @NotNull
+    private final Class<?> clazz;
+    @Nullable
+    private volatile Object unqualified;
+    // Only written once, before the first write of byOrdinal, and only read after reading byOrdinal.
+    @Nullable
+    private Class<?> qualifierType;
+    @Nullable
+    private volatile Object[] byOrdinal;
+    // Classes are almost always qualified by a single enum type. Any further types go here.
+    @Nullable
+    private volatile Map<Enum<?>, Object> others;
+
+    private Slots(@NotNull final Class<?> clazz) {
+      this.clazz = clazz;
+    }
+
+    @Nullable
+    Object get(@NotNull final Enum<?> qualifier) {
+      if (qualifier == NoQualifier.INSTANCE) {
+        return unqualified;
+      }
+      final var table = byOrdinal;
+      if (table != null && qualifier.getDeclaringClass() == qualifierType) {
+        final var ordinal = qualifier.ordinal();
+        return ordinal < table.length ? table[ordinal] : null;
+      }
+      final var rest = others;
+      return rest == null ? null : rest.get(qualifier);
+    }
+
+    synchronized Object putIfAbsent(@NotNull final Enum<?> qualifier, @NotNull final Object entry) {
+      final var existing = get(qualifier);
+      if (existing == null) {
+        set(qualifier, entry);
+      }
+      return existing;
+    }
+
+    synchronized void replace(@NotNull final Enum<?> qualifier, @NotNull final Object expected, @NotNull final Object entry) {
+      if (get(qualifier) == expected) {
+        set(qualifier, entry);
+      }
+    }
+
+    private void set(final Enum<?> qualifier, final Object entry) {
+      if (qualifier == NoQualifier.INSTANCE) {
+        unqualified = entry;
+        return;
+      }
+      final var type = qualifier.getDeclaringClass();
+      if (qualifierType == null) {
+        qualifierType = type;
+      }
+      if (type == qualifierType) {
+        final var current = byOrdinal;
+        final var table = current == null
+            ? new Object[type.getEnumConstants().length]
+            : Arrays.copyOf(current, current.length);
+        table[qualifier.ordinal()] = entry;
+        byOrdinal = table;
+        return;
+      }
+      final var current = others;
+      final var map = current == null ? new HashMap<Enum<?>, Object>() : new HashMap<>(current);
+      map.put(qualifier, entry);
+      others = map;
+    }
+  }
+}
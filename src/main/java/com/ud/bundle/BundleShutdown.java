@@ -0,0 +1,147 @@
+package com.ud.bundle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.jetbrains.annotations.NotNull;
+
+// Closes the bundles of an AppContext in reverse dependency order, see AppContext.close. A bundle is only closed once every bundle that
+// requires it and every bundle it provided has finished closing (or failed to, or ran out of time), so nothing is torn down while a
+// bundle that was set up after it might still be using it. Bundles that don't wait on each other close concurrently on the executor.
+final class BundleShutdown {
+
+  @NotNull
+  private final Executor executor;
+  @NotNull
+  private final Duration timeout;
+  // Every bundle to close, in registration order.
+  private final Map<AppContext.BundleKey<?, ?>, Node> nodes = new LinkedHashMap<>();
+
+  BundleShutdown(@NotNull final Executor executor, @NotNull final Duration timeout) {
+    this.executor = executor;
+    this.timeout = timeout;
+  }
+
+  void add(@NotNull final AppContext.BundleKey<?, ?> key, @NotNull final ContextBundle bundle) {
+    nodes.put(key, new Node(key, bundle));
+  }
+
+  // Closes every bundle that was added, with provided being the bundles each bundle registered from inside its apply. Blocks until every
+  // close has finished or timed out; if any failed, the first failure is rethrown with the others suppressed.
+  void close(@NotNull final Map<AppContext.BundleKey<?, ?>, List<ContextBundle>> provided) {
+    final var byBundle = new IdentityHashMap<ContextBundle, Node>();
+    for (final Node node : nodes.values()) {
+      byBundle.put(node.bundle, node);
+    }
+    for (final Node node : nodes.values()) {
+      for (final QualifiedBundle<? extends ContextBundle> required : node.bundle.requiredBundles()) {
+        final var dependency = nodes.get(new AppContext.BundleKey<>(required.getQualifier(), required.getClazz()));
+        if (dependency != null) {
+          dependency.waitsFor.add(node);
+        }
+      }
+    }
+    for (final var entry : provided.entrySet()) {
+      final var provider = nodes.get(entry.getKey());
+      if (provider == null) {
+        continue;
+      }
+      for (final ContextBundle bundle : entry.getValue()) {
+        final var node = byBundle.get(bundle);
+        if (node != null && node != provider) {
+          provider.waitsFor.add(node);
+        }
+      }
+    }
+
+    final var visiting = new HashSet<Node>();
+    final var closed = new ArrayList<CompletableFuture<Void>>(nodes.size());
+    for (final Node node : nodes.values()) {
+      closed.add(closing(node, visiting));
+    }
+    try {
+      CompletableFuture.allOf(closed.toArray(new CompletableFuture<?>[0])).join();
+    } catch (final CompletionException e) {
+      throw AppContext.firstFailure(closed, "Failed to close bundles.");
+    }
+  }
+
+  // Starts closing the node once everything it waits for has closed, and returns the future that completes when its own close does.
+  // Nodes are visited depth first, so everything a node waits for has been started by the time the node itself is.
+  private CompletableFuture<Void> closing(final Node node, final Set<Node> visiting) {
+    if (node.closed != null) {
+      return node.closed;
+    }
+    final var waits = new ArrayList<CompletableFuture<?>>(node.waitsFor.size());
+    visiting.add(node);
+    for (final Node other : node.waitsFor) {
+      // Bundles can only end up waiting on each other when a lazily registered bundle provided one that required it back, in which case
+      // there is no right order and they are closed without waiting.
+      if (!visiting.contains(other)) {
+        // Failing to close doesn't keep the bundles that are waiting from closing.
+        waits.add(closing(other, visiting).exceptionally(e -> null));
+      }
+    }
+    visiting.remove(node);
+
+    final var closed = new CompletableFuture<Void>();
+    final var ready = waits.isEmpty() ? CompletableFuture.completedFuture(null) : CompletableFuture.allOf(waits.toArray(new CompletableFuture<?>[0]));
+    ready.thenRun(() -> {
+      try {
+        executor.execute(() -> {
+          // The timeout starts once the close does rather than when it is handed to the executor, so time spent queued behind other
+          // closes doesn't count: a close that timed out while still queued would otherwise go on to run after the bundles it requires
+          // have been closed. The timeout only stops the waiting, a close that runs over keeps going on the executor.
+          final var running = new CompletableFuture<Void>();
+          running.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).whenComplete((ignored, e) -> {
+            if (e == null) {
+              closed.complete(null);
+            } else if (e instanceof TimeoutException) {
+              closed.completeExceptionally(new IllegalStateException("Bundle " + node.key + " did not close within " + timeout + "."));
+            } else {
+              closed.completeExceptionally(e);
+            }
+          });
+          try {
+            node.bundle.close();
+            running.complete(null);
+          } catch (final Throwable e) {
+            running.completeExceptionally(e);
+          }
+        });
+      } catch (final RuntimeException e) {
+        // The executor refused to run the close.
+        closed.completeExceptionally(e);
+      }
+    });
+    node.closed = closed;
+    return closed;
+  }
+
+  private static final class Node {
+
+    @NotNull
+    private final AppContext.BundleKey<?, ?> key;
+    @NotNull
+    private final ContextBundle bundle;
+    // The bundles that have to be closed before this one: the ones that require it and the ones it provided.
+    private final Collection<Node> waitsFor = new ArrayList<>();
+    private CompletableFuture<Void> closed;
+
+    private Node(@NotNull final AppContext.BundleKey<?, ?> key, @NotNull final ContextBundle bundle) {
+      this.key = key;
+      this.bundle = bundle;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.ud.bundle;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.jetbrains.annotations.NotNull;
+
+// Routes leaf updates to the subscriptions of an AppContext. Subscriptions are kept per subscribed node, and an update walks the
+// parent() links from the leaf up to the root, so a subscription on a container sees every leaf below it.
+//
+// The map is copy-on-write: subscribing is rare, updates are not. An update without any subscriptions costs a single volatile read.
+final class ChangeDispatcher {
+
+  private static final ValueSubscription[] NONE = new ValueSubscription[0];
+
+  @NotNull
+  private final Executor defaultExecutor;
+  // Never mutated once published, replaced as a whole under this.
+  @NotNull
+  private volatile Map<ContextValue, ValueSubscription[]> subscriptions = Map.of();
+
+  ChangeDispatcher(@NotNull final Executor defaultExecutor) {
+    this.defaultExecutor = defaultExecutor;
+  }
+
+  @NotNull
+  Executor defaultExecutor() {
+    return defaultExecutor;
+  }
+
+  @NotNull
+  synchronized ValueSubscription add(@NotNull final ContextValue value, @NotNull final ValueListener listener, @NotNull final Executor executor) {
+    final var subscription = new ValueSubscription(this, value, listener, executor);
+    final var copy = new IdentityHashMap<>(subscriptions);
+    final var existing = copy.getOrDefault(value, NONE);
+    final var updated = Arrays.copyOf(existing, existing.length + 1);
+    updated[existing.length] = subscription;
+    copy.put(value, updated);
+    subscriptions = copy;
+    return subscription;
+  }
+
+  synchronized void remove(@NotNull final ValueSubscription subscription) {
+    final var existing = subscriptions.get(subscription.value());
+    if (existing == null) {
+      return;
+    }
+    final var copy = new IdentityHashMap<>(subscriptions);
+    final var updated = Arrays.stream(existing).filter(s -> s != subscription).toArray(ValueSubscription[]::new);
+    if (updated.length == 0) {
+      copy.remove(subscription.value());
+    } else {
+      copy.put(subscription.value(), updated);
+    }
+    subscriptions = copy;
+  }
+
+  void changed(@NotNull final ValueHolder holder, @NotNull final Object oldValue, @NotNull final Object newValue, final long version) {
+    // With Flight Recorder off isEnabled() is false and the JIT does away with the event altogether.
+    final var event = new ValueUpdateEvent();
+    if (event.isEnabled()) {
+      event.path = holder.path().toString();
+      event.version = version;
+      event.commit();
+    }
+    final var current = subscriptions;
+    if (current.isEmpty()) {
+      return;
+    }
+    ValueChange change = null;
+    for (ContextValue node = holder; node != null; node = node.parent()) {
+      final var subscribed = current.get(node);
+      if (subscribed == null) {
+        continue;
+      }
+      if (change == null) {
+        change = new ValueChange(holder.path(), holder, oldValue, newValue, version);
+      }
+      for (final ValueSubscription subscription : subscribed) {
+        subscription.offer(change);
+      }
+    }
+  }
+}
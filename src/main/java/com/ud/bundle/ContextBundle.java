@@ -12,4 +12,9 @@ public interface ContextBundle {
   default List<QualifiedBundle<? extends ContextBundle>> requiredBundles() {
     return Collections.emptyList();
   }
+
+  // Called by AppContext.close to tear the bundle down, once every bundle that requires it or was provided by it has been closed. Does
+  // nothing by default.
+  default void close() {
+  }
 }
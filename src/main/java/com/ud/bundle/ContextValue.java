@@ -1,5 +1,6 @@
 package com.ud.bundle;
 
+import java.util.function.UnaryOperator;
 import org.jetbrains.annotations.NotNull;
 
 public interface ContextValue {
@@ -12,7 +13,47 @@ public interface ContextValue {
   boolean isArray();
   boolean isLeaf();
 
+  // The methods with a default were added after the interface was first published. Every value of an AppContext implements them,
+  // implementations from outside the library that predate them throw UnsupportedOperationException instead of failing to link.
+
+  // Leaf updates are atomic and safely published to readers on every thread. Each successful update bumps version() by one.
   Object update(@NotNull final Object newValue);
+  // Only updates when the current value equals() expectedValue. Returns whether the update happened.
+  default boolean compareAndUpdate(@NotNull final Object expectedValue, @NotNull final Object newValue) {
+    throw unsupported("compareAndUpdate");
+  }
+  // Atomically replaces the value with the result of the function and returns the previous value. The function may be called more than
+  // once when other threads update the value at the same time, so it should be free of side effects.
+  default Object getAndUpdate(@NotNull final UnaryOperator<Object> updateFunction) {
+    throw unsupported("getAndUpdate");
+  }
+  default long version() {
+    throw unsupported("version");
+  }
   String asString();
   Number asNumber();
+  // Primitive views of a numeric leaf. They never box and never parse a value more than once. Values that cannot be represented exactly,
+  // such as 1.5 as a long or 2^40 as an int, are rejected rather than truncated.
+  default long asLong() {
+    throw unsupported("asLong");
+  }
+  default double asDouble() {
+    throw unsupported("asDouble");
+  }
+  default int asInt() {
+    throw unsupported("asInt");
+  }
+  // Every element of an array of numbers, as a copy that the caller is free to modify. Arrays registered as nothing but Longs or nothing
+  // but Doubles are stored as a primitive array to begin with, which is then copied as a whole rather than walked element by element.
+  // Elements that cannot be represented exactly are rejected like they are by asLong() and asDouble().
+  default long[] asLongArray() {
+    throw unsupported("asLongArray");
+  }
+  default double[] asDoubleArray() {
+    throw unsupported("asDoubleArray");
+  }
+
+  private UnsupportedOperationException unsupported(final String method) {
+    return new UnsupportedOperationException(getClass().getName() + " does not implement " + method + "().");
+  }
 }
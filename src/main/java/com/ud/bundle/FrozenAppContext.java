@@ -0,0 +1,244 @@
+package com.ud.bundle;
+
+import com.ud.bundle.QualifiedBundle.NoQualifier;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// An immutable, read-only snapshot of the bundles and values of an AppContext, created through AppContext.freeze(). Every field is
+// final and every table is fully built before the constructor returns, so a FrozenAppContext can be handed to any number of threads
+// without further synchronisation and reads never contend with each other.
+//
+// Lookups go through open-addressed tables with linear probing instead of HashMaps. Each entry is laid out inline in a single Object[]
+// (key parts followed by the value), so a lookup touches one array and never allocates a key object.
+//
+// Only the indexes are copied: the ContextValues themselves are shared with the AppContext the snapshot was taken from, so updates to
+// leaf values are visible through both. Bundles or values registered with the source after freezing are not part of the snapshot.
+public final class FrozenAppContext {
+
+  // [class, qualifier, bundle (or its stand-in if it was registered lazily), provided bundles]
+  private static final int BUNDLE_STRIDE = 4;
+  // [path, qualifier, value, elements of a dense array as of freezing (null for anything else)]
+  private static final int VALUE_STRIDE = 4;
+
+  @NotNull
+  private final Object[] bundleTable;
+  private final int bundleMask;
+  @NotNull
+  private final Object[] valueTable;
+  private final int valueMask;
+
+  private FrozenAppContext(@NotNull final Object[] bundleTable, @NotNull final Object[] valueTable) {
+    this.bundleTable = bundleTable;
+    this.bundleMask = bundleTable.length / BUNDLE_STRIDE - 1;
+    this.valueTable = valueTable;
+    this.valueMask = valueTable.length / VALUE_STRIDE - 1;
+  }
+
+  @NotNull
+  static Builder builder(final int bundleCount, final int valueCount) {
+    return new Builder(bundleCount, valueCount);
+  }
+
+  public <T extends ContextBundle> T getBundle(final Class<T> clazz) {
+    return getBundle(clazz, NoQualifier.INSTANCE);
+  }
+
+  public <T extends ContextBundle> T getBundle(final QualifiedBundle<T> qualifiedBundle) {
+    return getBundle(qualifiedBundle.getClazz(), qualifiedBundle.getQualifier());
+  }
+
+  public <T extends ContextBundle> T getBundle(final Class<T> clazz, final Enum<?> qualifier) {
+    final var slot = findBundle(clazz, qualifier);
+    if (slot < 0) {
+      throw new IllegalArgumentException("Bundle for " + clazz + " has not yet been registered. This is a programmer error.");
+    }
+    return clazz.cast(AppContext.resolve(bundleTable[slot + 2]));
+  }
+
+  public <T extends ContextBundle> void useBundle(final Class<T> clazz, final Consumer<T> f) {
+    useBundle(clazz, NoQualifier.INSTANCE, f);
+  }
+
+  public <T extends ContextBundle> void useBundle(final QualifiedBundle<T> qualifiedBundle, final Consumer<T> f) {
+    useBundle(qualifiedBundle.getClazz(), qualifiedBundle.getQualifier(), f);
+  }
+
+  public <T extends ContextBundle> void useBundle(final Class<T> clazz, final Enum<?> qualifier, final Consumer<T> f) {
+    f.accept(getBundle(clazz, qualifier));
+  }
+
+  public boolean isBundleRegistered(final Class<? extends ContextBundle> clazz) {
+    return isBundleRegistered(clazz, NoQualifier.INSTANCE);
+  }
+
+  public boolean isBundleRegistered(final QualifiedBundle<? extends ContextBundle> qualifiedBundle) {
+    return isBundleRegistered(qualifiedBundle.getClazz(), qualifiedBundle.getQualifier());
+  }
+
+  public boolean isBundleRegistered(final Class<? extends ContextBundle> clazz, final Enum<?> qualifier) {
+    return findBundle(clazz, qualifier) >= 0;
+  }
+
+  public List<ContextBundle> providedBy(final Class<? extends ContextBundle> clazz) {
+    return providedBy(clazz, NoQualifier.INSTANCE);
+  }
+
+  public List<ContextBundle> providedBy(final QualifiedBundle<? extends ContextBundle> qualifiedBundle) {
+    return providedBy(qualifiedBundle.getClazz(), qualifiedBundle.getQualifier());
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<ContextBundle> providedBy(final Class<? extends ContextBundle> clazz, final Enum<?> qualifier) {
+    final var slot = findBundle(clazz, qualifier);
+    if (slot < 0 || bundleTable[slot + 3] == null) {
+      throw new IllegalArgumentException("Bundle for " + clazz + " has not yet been registered, thus cannot provide any bundles. This is a programmer error.");
+    }
+    return (List<ContextBundle>) bundleTable[slot + 3];
+  }
+
+  public ContextValue getValue(@NotNull final String path) {
+    return getValue(path, NoQualifier.INSTANCE);
+  }
+
+  public ContextValue getValue(@NotNull final String path, @NotNull final Enum<?> qualifier) {
+    return lookupValue(path.toLowerCase(Locale.ROOT), qualifier);
+  }
+
+  public ContextValue getValue(@NotNull final ValuePath path) {
+    return getValue(path, NoQualifier.INSTANCE);
+  }
+
+  public ContextValue getValue(@NotNull final ValuePath path, @NotNull final Enum<?> qualifier) {
+    return lookupValue(path.toString(), qualifier);
+  }
+
+  private int findBundle(final Class<?> clazz, final Enum<?> qualifier) {
+    final var table = bundleTable;
+    var i = bundleHash(clazz, qualifier) & bundleMask;
+    while (true) {
+      final var slot = i * BUNDLE_STRIDE;
+      final var key = table[slot];
+      if (key == null) {
+        return -1;
+      }
+      if (key == clazz && table[slot + 1] == qualifier) {
+        return slot;
+      }
+      i = (i + 1) & bundleMask;
+    }
+  }
+
+  private ContextValue lookupValue(final String path, final Enum<?> qualifier) {
+    // The same path is only ever registered once, but the entry for it may be tagged with another qualifier. That still counts as
+    // registered, it just isn't visible under this qualifier.
+    final var table = valueTable;
+    var registered = false;
+    var i = spread(path.hashCode()) & valueMask;
+    while (true) {
+      final var slot = i * VALUE_STRIDE;
+      final var key = table[slot];
+      if (key == null) {
+        break;
+      }
+      if (path.equals(key)) {
+        if (table[slot + 1] == qualifier) {
+          return (ContextValue) table[slot + 2];
+        }
+        registered = true;
+      }
+      i = (i + 1) & valueMask;
+    }
+    if (registered) {
+      return null;
+    }
+    // Elements of dense arrays aren't in the table, they are found through their array, which counts for their qualifier too. The array
+    // is only dense as of freezing: it may have been inflated since, so only the elements it had back then are found, through the array.
+    final var dot = path.lastIndexOf(AppContext.VALUE_PATH_SEPARATOR);
+    if (dot >= 0) {
+      final var arrayPath = path.substring(0, dot);
+      i = spread(arrayPath.hashCode()) & valueMask;
+      while (true) {
+        final var slot = i * VALUE_STRIDE;
+        final var key = table[slot];
+        if (key == null) {
+          break;
+        }
+        if (arrayPath.equals(key) && table[slot + 3] != null) {
+          final var element = AppContext.frozenDenseElement((ContextValue) table[slot + 2], table[slot + 3], path, dot + 1);
+          if (element != null) {
+            return table[slot + 1] == qualifier ? element : null;
+          }
+        }
+        i = (i + 1) & valueMask;
+      }
+    }
+    throw new IllegalArgumentException("Path " + path + " has not yet been registered.");
+  }
+
+  private static int bundleHash(final Class<?> clazz, final Enum<?> qualifier) {
+    return spread(clazz.hashCode() * 31 + qualifier.hashCode());
+  }
+
+  private static int spread(final int h) {
+    return h ^ (h >>> 16);
+  }
+
+  // Sized for a load factor of at most 0.5, which keeps probe sequences short.
+  private static int capacityFor(final int count) {
+    var capacity = 2;
+    while (capacity < count * 2) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  static final class Builder {
+
+    private final Object[] bundleTable;
+    private final int bundleMask;
+    private final Object[] valueTable;
+    private final int valueMask;
+
+    private Builder(final int bundleCount, final int valueCount) {
+      final var bundleCapacity = capacityFor(bundleCount);
+      bundleTable = new Object[bundleCapacity * BUNDLE_STRIDE];
+      bundleMask = bundleCapacity - 1;
+      final var valueCapacity = capacityFor(valueCount);
+      valueTable = new Object[valueCapacity * VALUE_STRIDE];
+      valueMask = valueCapacity - 1;
+    }
+
+    Builder bundle(final Class<?> clazz, final Enum<?> qualifier, final Object bundle, final List<ContextBundle> provided) {
+      var i = bundleHash(clazz, qualifier) & bundleMask;
+      while (bundleTable[i * BUNDLE_STRIDE] != null) {
+        i = (i + 1) & bundleMask;
+      }
+      final var slot = i * BUNDLE_STRIDE;
+      bundleTable[slot] = clazz;
+      bundleTable[slot + 1] = qualifier;
+      bundleTable[slot + 2] = bundle;
+      bundleTable[slot + 3] = provided == null ? null : List.copyOf(provided);
+      return this;
+    }
+
+    Builder value(final String path, final Enum<?> qualifier, final ContextValue value, @Nullable final Object denseElements) {
+      var i = spread(path.hashCode()) & valueMask;
+      while (valueTable[i * VALUE_STRIDE] != null) {
+        i = (i + 1) & valueMask;
+      }
+      final var slot = i * VALUE_STRIDE;
+      valueTable[slot] = path;
+      valueTable[slot + 1] = qualifier;
+      valueTable[slot + 2] = value;
+      valueTable[slot + 3] = denseElements;
+      return this;
+    }
+
+    FrozenAppContext build() {
+      return new FrozenAppContext(bundleTable, valueTable);
+    }
+  }
+}
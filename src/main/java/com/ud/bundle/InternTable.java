@@ -0,0 +1,87 @@
+package com.ud.bundle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+// Hands out one shared instance per distinct string for everything registered into an AppContext: path segments and short leaf strings.
+// Large configs repeat the same keys (host, port, timeoutMs, ...) and the same values for every tenant or service, and without this each
+// repetition keeps its own copy for as long as the value is registered. The same goes for the shape of paths (see ValuePath.intern):
+// every services.<name>.port has the same kinds of segments, and most of them end at the same offsets.
+//
+// String.intern() would do the same, but it goes through the JVM-wide string table, which is slower, is shared with everything else in the
+// process and never lets go of anything. This table lives and dies with its context. Strings stay in it after the values that used them
+// are removed, which is fine for config that mostly changes in place.
+//
+// Only ever used while holding the context's value lock, so it needs no synchronisation of its own.
+final class InternTable {
+
+  // Leaf strings longer than this are rarely repeated, so they aren't worth an entry.
+  static final int MAX_VALUE_LENGTH = 64;
+
+  private final Map<String, String> strings = new HashMap<>();
+  // Power of two sized, kept at most half full.
+  private int[][] arrays = new int[16][];
+  private int arrayCount;
+
+  @NotNull
+  String intern(@NotNull final String value) {
+    final var existing = strings.putIfAbsent(value, value);
+    return existing == null ? value : existing;
+  }
+
+  // Interns the value when it is a string short enough to be worth it, returns it as is otherwise.
+  @NotNull
+  Object internValue(@NotNull final Object value) {
+    if (value instanceof String && ((String) value).length() <= MAX_VALUE_LENGTH) {
+      return intern((String) value);
+    }
+    return value;
+  }
+
+  // Arrays handed in must never be modified afterwards, nor can the ones handed out. Looked up in an open-addressing table of the arrays
+  // themselves, so that a lookup doesn't allocate a key.
+  @NotNull
+  int[] intern(@NotNull final int[] values) {
+    final var mask = arrays.length - 1;
+    var slot = hash(values) & mask;
+    for (var existing = arrays[slot]; existing != null; existing = arrays[slot]) {
+      if (Arrays.equals(existing, values)) {
+        return existing;
+      }
+      slot = (slot + 1) & mask;
+    }
+    arrays[slot] = values;
+    if (++arrayCount * 2 > arrays.length) {
+      resize();
+    }
+    return values;
+  }
+
+  private void resize() {
+    final var old = arrays;
+    arrays = new int[old.length * 2][];
+    final var mask = arrays.length - 1;
+    for (final int[] values : old) {
+      if (values != null) {
+        var slot = hash(values) & mask;
+        while (arrays[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        arrays[slot] = values;
+      }
+    }
+  }
+
+  // Arrays.hashCode of the arrays of consecutive array elements (or of paths that only differ in the length of their last segment) are
+  // consecutive as well, which linear probing turns into one long run. Mixing the bits spreads them over the whole table.
+  private static int hash(final int[] values) {
+    final var h = Arrays.hashCode(values) * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  int size() {
+    return strings.size() + arrayCount;
+  }
+}
@@ -0,0 +1,259 @@
+package com.ud.bundle;
+
+import com.ud.bundle.QualifiedBundle.NoQualifier;
+import com.ud.bundle.reader.ContextValueReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Merges several sources of values into an AppContext by priority, e.g. defaults, then a config file, then the environment, then runtime
+// overrides. Every layer holds its own leaves and the context only ever holds the effective one for each path: the value of the highest
+// layer that has the path. Lookups therefore go straight through the context's own index, there is no chain of layers to fall back through.
+//
+// Changing a layer only resolves the paths that changed in it: a path that a higher layer also has doesn't change at all, for the rest the
+// effective value is worked out again and applied to the context like JsonFileWatcher does it. Changed leaves are updated in place, so
+// existing ContextValue references and subscriptions keep working, new leaves are registered and leaves no layer has anymore are removed.
+//
+// Layers have to agree on the shape of the tree: a path that is a leaf in one layer can't be an object or array in another, registering
+// it fails like it would with registerValue. Every path the layers hold is owned by them, registering it separately fails as well.
+public final class LayeredValues {
+
+  @NotNull
+  private final AppContext ctx;
+  @NotNull
+  private final Enum<?> qualifier;
+  @NotNull
+  private final List<String> names;
+  // Leaves per layer, lowest priority first. Guarded by this.
+  @NotNull
+  private final List<Map<ValuePath, Object>> layers = new ArrayList<>();
+
+  private LayeredValues(@NotNull final AppContext ctx, @NotNull final Enum<?> qualifier, @NotNull final List<String> names) {
+    this.ctx = ctx;
+    this.qualifier = qualifier;
+    this.names = names;
+    for (int i = 0; i < names.size(); i++) {
+      layers.add(new HashMap<>());
+    }
+  }
+
+  // Layers are named from the lowest priority to the highest. All of them start out empty.
+  @NotNull
+  public static LayeredValues create(@NotNull final AppContext ctx, @NotNull final String... layers) {
+    return create(ctx, NoQualifier.INSTANCE, layers);
+  }
+
+  @NotNull
+  public static LayeredValues create(@NotNull final AppContext ctx, @NotNull final Enum<?> qualifier, @NotNull final String... layers) {
+    Objects.requireNonNull(ctx, "'ctx' parameter must not be null.");
+    Objects.requireNonNull(qualifier, "'qualifier' parameter must not be null.");
+    Objects.requireNonNull(layers, "'layers' parameter must not be null.");
+    if (layers.length == 0) {
+      throw new IllegalArgumentException("There has to be at least one layer. This is a programmer error.");
+    }
+    if (new HashSet<>(List.of(layers)).size() != layers.length) {
+      throw new IllegalArgumentException("Layer names must be unique. Were: " + List.of(layers) + ". This is a programmer error.");
+    }
+    return new LayeredValues(ctx, qualifier, List.of(layers));
+  }
+
+  // Replaces everything in the layer with what the reader reads. The reader reads into a scratch context of its own, so whatever it
+  // fails on leaves both the layer and the context untouched.
+  public synchronized void read(@NotNull final String layer, @NotNull final ContextValueReader reader) {
+    Objects.requireNonNull(reader, "'reader' parameter must not be null.");
+    final var idx = indexOf(layer);
+    final var scratch = new AppContext();
+    reader.readInto(scratch);
+    apply(idx, replacing(idx, scratch.leaves()));
+  }
+
+  // Replaces everything in the layer with the values, keyed by path.
+  public synchronized void replace(@NotNull final String layer, @NotNull final Map<String, ?> values) {
+    Objects.requireNonNull(values, "'values' parameter must not be null.");
+    final var idx = indexOf(layer);
+    final var next = new LinkedHashMap<ValuePath, Object>();
+    for (final Map.Entry<String, ?> entry : values.entrySet()) {
+      next.put(ValuePath.of(entry.getKey()), Objects.requireNonNull(entry.getValue(), "Values must not be null. This is a programmer error."));
+    }
+    apply(idx, replacing(idx, next));
+  }
+
+  public synchronized void set(@NotNull final String layer, @NotNull final String path, @NotNull final Object value) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    Objects.requireNonNull(value, "'value' parameter must not be null.");
+    final var changes = new HashMap<ValuePath, Object>();
+    changes.put(ValuePath.of(path), value);
+    apply(indexOf(layer), changes);
+  }
+
+  // Returns whether the layer had a value at the path.
+  public synchronized boolean remove(@NotNull final String layer, @NotNull final String path) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    final var idx = indexOf(layer);
+    final var valuePath = ValuePath.of(path);
+    if (!layers.get(idx).containsKey(valuePath)) {
+      return false;
+    }
+    final var changes = new HashMap<ValuePath, Object>();
+    changes.put(valuePath, null);
+    apply(idx, changes);
+    return true;
+  }
+
+  public synchronized void clear(@NotNull final String layer) {
+    final var idx = indexOf(layer);
+    apply(idx, replacing(idx, Map.of()));
+  }
+
+  // The layer the effective value at the path comes from, null when no layer has it.
+  @Nullable
+  public synchronized String layerOf(@NotNull final String path) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    final var valuePath = ValuePath.of(path);
+    for (int i = layers.size() - 1; i >= 0; i--) {
+      if (layers.get(i).containsKey(valuePath)) {
+        return names.get(i);
+      }
+    }
+    return null;
+  }
+
+  private int indexOf(final String layer) {
+    Objects.requireNonNull(layer, "'layer' parameter must not be null.");
+    final var idx = names.indexOf(layer);
+    if (idx < 0) {
+      throw new IllegalArgumentException("There is no layer called " + layer + ". Layers are " + names + ". This is a programmer error.");
+    }
+    return idx;
+  }
+
+  // The changes that turn layer idx into next: every leaf of next, and null for every path only the layer has now.
+  private Map<ValuePath, Object> replacing(final int idx, final Map<ValuePath, Object> next) {
+    final var changes = new LinkedHashMap<ValuePath, Object>(next);
+    for (final ValuePath path : layers.get(idx).keySet()) {
+      if (!next.containsKey(path)) {
+        changes.put(path, null);
+      }
+    }
+    return changes;
+  }
+
+  // Applies the changes to layer idx, a null value meaning that the layer no longer has the path, and brings the context in line. Only
+  // the changed paths are resolved again. The layer itself is only changed once the context has been: when the context can't be brought
+  // in line (e.g. a new path clashes with a value registered elsewhere), whatever was already changed in it is undone and the failure is
+  // thrown with the layer as it was.
+  private void apply(final int idx, final Map<ValuePath, Object> changes) {
+    final var layer = layers.get(idx);
+    final var removed = new LinkedHashMap<ValuePath, Object>();
+    final var updated = new LinkedHashMap<ValuePath, Object>();
+    final var added = new LinkedHashMap<ValuePath, Object>();
+    for (final Map.Entry<ValuePath, Object> change : changes.entrySet()) {
+      final var path = change.getKey();
+      if (shadowed(idx, path)) {
+        continue;
+      }
+      final var previous = layer.get(path);
+      final var before = previous != null ? previous : below(idx, path);
+      final var after = change.getValue() != null ? change.getValue() : below(idx, path);
+      if (before == null && after != null) {
+        added.put(path, after);
+      } else if (before != null && after == null) {
+        removed.put(path, before);
+      } else if (before != null && !before.equals(after)) {
+        updated.put(path, after);
+      }
+    }
+
+    // What has been done to the context so far, to undo it by.
+    final var undoRemoved = new LinkedHashMap<ValuePath, Object>();
+    final var undoUpdated = new LinkedHashMap<ValuePath, Object>();
+    try {
+      // Removals go first so that a path that changed shape is free again for the additions.
+      for (final Map.Entry<ValuePath, Object> entry : removed.entrySet()) {
+        ctx.removeValue(entry.getKey());
+        undoRemoved.put(entry.getKey(), entry.getValue());
+      }
+      for (final Map.Entry<ValuePath, Object> entry : updated.entrySet()) {
+        undoUpdated.put(entry.getKey(), ctx.getValue(entry.getKey(), qualifier).update(entry.getValue()));
+      }
+      final var batch = ctx.batch();
+      for (final Map.Entry<ValuePath, Object> entry : added.entrySet()) {
+        batch.add(entry.getKey(), entry.getValue(), qualifier);
+      }
+      batch.register();
+    } catch (final RuntimeException e) {
+      undo(added.keySet(), undoUpdated, undoRemoved, e);
+      throw e;
+    }
+
+    for (final Map.Entry<ValuePath, Object> change : changes.entrySet()) {
+      if (change.getValue() == null) {
+        layer.remove(change.getKey());
+      } else {
+        layer.put(change.getKey(), change.getValue());
+      }
+    }
+  }
+
+  // Takes the context back to what the layers hold: a batch registers everything before the path it failed on, so whichever of the added
+  // paths hold a leaf now are removed again, updated leaves get their previous values back and removed leaves are registered again. What
+  // fails while undoing is added to the original failure.
+  private void undo(
+      final Iterable<ValuePath> added,
+      final Map<ValuePath, Object> updated,
+      final Map<ValuePath, Object> removed,
+      final RuntimeException failure
+  ) {
+    for (final ValuePath path : added) {
+      try {
+        if (ctx.isLeaf(path, qualifier)) {
+          ctx.removeValue(path);
+        }
+      } catch (final RuntimeException e) {
+        failure.addSuppressed(e);
+      }
+    }
+    for (final Map.Entry<ValuePath, Object> entry : updated.entrySet()) {
+      try {
+        ctx.getValue(entry.getKey(), qualifier).update(entry.getValue());
+      } catch (final RuntimeException e) {
+        failure.addSuppressed(e);
+      }
+    }
+    for (final Map.Entry<ValuePath, Object> entry : removed.entrySet()) {
+      try {
+        ctx.registerValue(entry.getKey(), entry.getValue(), qualifier);
+      } catch (final RuntimeException e) {
+        failure.addSuppressed(e);
+      }
+    }
+  }
+
+  // Whether a layer above idx has the path, which makes whatever idx has there irrelevant.
+  private boolean shadowed(final int idx, final ValuePath path) {
+    for (int i = idx + 1; i < layers.size(); i++) {
+      if (layers.get(i).containsKey(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // The value the path falls back to from the layers below idx, null when none of them has it.
+  @Nullable
+  private Object below(final int idx, final ValuePath path) {
+    for (int i = idx - 1; i >= 0; i--) {
+      final var value = layers.get(i).get(path);
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,110 @@
+package com.ud.bundle;
+
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+// The lookup counters of an AppContext at one point in time, see AppContext.metrics. Values are named by their normalised path and
+// bundles by their class name, each followed by the qualifier in brackets when there is one. Counts are estimates scaled up by the
+// sampling rate, so with sampling a rarely read value may show up as unread.
+public final class MetricsSnapshot {
+
+  private final int sampleEvery;
+  @NotNull
+  private final Map<String, Counts> values;
+  private final long unregisteredValueMisses;
+  @NotNull
+  private final Map<String, Counts> bundles;
+  @NotNull
+  private final List<String> unreadValues;
+  @NotNull
+  private final List<String> unreadBundles;
+
+  MetricsSnapshot(
+      final int sampleEvery,
+      @NotNull final Map<String, Counts> values,
+      final long unregisteredValueMisses,
+      @NotNull final Map<String, Counts> bundles,
+      @NotNull final List<String> unreadValues,
+      @NotNull final List<String> unreadBundles
+  ) {
+    this.sampleEvery = sampleEvery;
+    this.values = values;
+    this.unregisteredValueMisses = unregisteredValueMisses;
+    this.bundles = bundles;
+    this.unreadValues = unreadValues;
+    this.unreadBundles = unreadBundles;
+  }
+
+  public int getSampleEvery() {
+    return sampleEvery;
+  }
+
+  // Every registered path that was looked up through getValue. Misses include lookups with a qualifier the path wasn't registered with.
+  @NotNull
+  public Map<String, Counts> getValues() {
+    return values;
+  }
+
+  // Lookups through getValue of paths that weren't registered at all, counted together rather than per path.
+  public long getUnregisteredValueMisses() {
+    return unregisteredValueMisses;
+  }
+
+  // Every bundle that was looked up through getBundle (and useBundle), including bundles that weren't registered.
+  @NotNull
+  public Map<String, Counts> getBundles() {
+    return bundles;
+  }
+
+  // Registered values without a single counted hit.
+  @NotNull
+  public List<String> getUnreadValues() {
+    return unreadValues;
+  }
+
+  // Registered bundles without a single counted hit. Being handed to another bundle as a required bundle counts as a hit.
+  @NotNull
+  public List<String> getUnreadBundles() {
+    return unreadBundles;
+  }
+
+  @Override
+  public String toString() {
+    return "MetricsSnapshot{" +
+        "sampleEvery=" + sampleEvery +
+        ", values=" + values +
+        ", unregisteredValueMisses=" + unregisteredValueMisses +
+        ", bundles=" + bundles +
+        ", unreadValues=" + unreadValues +
+        ", unreadBundles=" + unreadBundles +
+        '}';
+  }
+
+  public static final class Counts {
+
+    private final long hits;
+    private final long misses;
+
+    Counts(final long hits, final long misses) {
+      this.hits = hits;
+      this.misses = misses;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    @Override
+    public String toString() {
+      return "Counts{" +
+          "hits=" + hits +
+          ", misses=" + misses +
+          '}';
+    }
+  }
+}
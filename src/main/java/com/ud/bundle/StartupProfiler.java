@@ -0,0 +1,333 @@
+package com.ud.bundle;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Records how long every bundle registration takes while profiling is switched on through AppContext.startProfiling. For each bundle it
+// keeps the wall time of its apply, the time it spent waiting before the apply could start (resolving and lazily initialising its
+// required bundles, and for registerAll also waiting for them to be applied), the bundle it was applied inside of and the bundles it
+// required. That is enough to tell which bundles are slow by themselves and which chain of requirements bounds startup as a whole.
+//
+// Recording is safe from any number of threads. The reports are worked out from whatever has been recorded by the time they are asked
+// for, so they can be taken while bundles are still being registered.
+public final class StartupProfiler {
+
+  private static final int DEFAULT_SLOWEST = 10;
+
+  private final List<BundleTiming> timings = new CopyOnWriteArrayList<>();
+
+  StartupProfiler() {
+  }
+
+  void record(
+      @NotNull final AppContext.BundleKey<?, ?> key,
+      @Nullable final AppContext.BundleKey<?, ?> parent,
+      @NotNull final List<QualifiedBundle<? extends ContextBundle>> requiredBundles,
+      final long waitNanos,
+      final long applyNanos,
+      final boolean failed
+  ) {
+    final var requires = new ArrayList<String>(requiredBundles.size());
+    for (final QualifiedBundle<? extends ContextBundle> required : requiredBundles) {
+      requires.add(new AppContext.BundleKey<>(required.getQualifier(), required.getClazz()).toString());
+    }
+    timings.add(new BundleTiming(
+        key.toString(),
+        parent == null ? null : parent.toString(),
+        Collections.unmodifiableList(requires),
+        Thread.currentThread().getName(),
+        waitNanos,
+        applyNanos,
+        failed
+    ));
+  }
+
+  // Every recorded registration, in the order their applies finished.
+  @NotNull
+  public List<BundleTiming> timings() {
+    final var recorded = List.copyOf(timings);
+    final var selfNanos = selfNanos(recorded);
+    final var result = new ArrayList<BundleTiming>(recorded.size());
+    for (final BundleTiming timing : recorded) {
+      result.add(timing.withSelfNanos(selfNanos.get(timing.bundle)));
+    }
+    return result;
+  }
+
+  // The bundles that took the longest to apply, not counting the bundles they registered from inside their apply.
+  @NotNull
+  public List<BundleTiming> slowest(final int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("'limit' must not be negative. This is a programmer error.");
+    }
+    final var sorted = timings();
+    sorted.sort(Comparator.comparingLong(BundleTiming::getSelfNanos).reversed());
+    return sorted.subList(0, Math.min(limit, sorted.size()));
+  }
+
+  // The chain of requirements with the longest total apply time, starting at a bundle that required nothing (that was recorded) and ending
+  // at the bundle that depends on all of it. No matter how many threads registerAll uses, startup can't be faster than this.
+  @NotNull
+  public List<BundleTiming> criticalPath() {
+    final var byBundle = new HashMap<String, BundleTiming>();
+    for (final BundleTiming timing : timings()) {
+      byBundle.put(timing.bundle, timing);
+    }
+    // Longest path ending in each bundle, and the requirement it continues from. Requirements always finish applying first, so resolving
+    // them recursively terminates.
+    final var longest = new HashMap<String, Long>();
+    final var previous = new HashMap<String, String>();
+    String last = null;
+    for (final String bundle : byBundle.keySet()) {
+      final var length = longestPath(bundle, byBundle, longest, previous);
+      if (last == null || length > longest.get(last)) {
+        last = bundle;
+      }
+    }
+    final var path = new ArrayList<BundleTiming>();
+    for (var bundle = last; bundle != null; bundle = previous.get(bundle)) {
+      path.add(byBundle.get(bundle));
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  private static long longestPath(
+      final String bundle,
+      final Map<String, BundleTiming> byBundle,
+      final Map<String, Long> longest,
+      final Map<String, String> previous
+  ) {
+    final var known = longest.get(bundle);
+    if (known != null) {
+      return known;
+    }
+    final var timing = byBundle.get(bundle);
+    var before = 0L;
+    for (final String required : timing.requires) {
+      if (byBundle.containsKey(required)) {
+        final var length = longestPath(required, byBundle, longest, previous);
+        if (length > before) {
+          before = length;
+          previous.put(bundle, required);
+        }
+      }
+    }
+    final var length = before + timing.applyNanos;
+    longest.put(bundle, length);
+    return length;
+  }
+
+  // An apply's own time is its wall time minus that of the applies nested directly inside of it on the same thread.
+  private static Map<String, Long> selfNanos(final List<BundleTiming> recorded) {
+    final var result = new HashMap<String, Long>();
+    for (final BundleTiming timing : recorded) {
+      result.merge(timing.bundle, timing.applyNanos, Long::sum);
+    }
+    for (final BundleTiming timing : recorded) {
+      if (timing.parent != null && result.containsKey(timing.parent)) {
+        result.merge(timing.parent, -timing.applyNanos, Long::sum);
+      }
+    }
+    return result;
+  }
+
+  @NotNull
+  public String toText() {
+    final var all = timings();
+    final var path = criticalPath();
+    var pathNanos = 0L;
+    for (final BundleTiming timing : path) {
+      pathNanos += timing.applyNanos;
+    }
+    final var text = new StringBuilder();
+    text.append("Startup profile: ").append(all.size()).append(" bundles, critical path ").append(millis(pathNanos)).append('\n');
+    text.append("Critical path (apply):\n");
+    for (final BundleTiming timing : path) {
+      text.append("  ").append(millis(timing.applyNanos)).append("  ").append(timing.bundle).append('\n');
+    }
+    text.append("Slowest bundles (self / apply / waiting):\n");
+    for (final BundleTiming timing : slowest(DEFAULT_SLOWEST)) {
+      text.append("  ")
+          .append(millis(timing.selfNanos)).append(" / ")
+          .append(millis(timing.applyNanos)).append(" / ")
+          .append(millis(timing.waitNanos)).append("  ")
+          .append(timing.bundle);
+      if (timing.parent != null) {
+        text.append(" (inside ").append(timing.parent).append(')');
+      }
+      if (timing.failed) {
+        text.append(" FAILED");
+      }
+      text.append('\n');
+    }
+    return text.toString();
+  }
+
+  private static String millis(final long nanos) {
+    return String.format(Locale.ROOT, "%.3f ms", nanos / 1_000_000.0);
+  }
+
+  // The same as toText, for tooling. Durations are in nanoseconds and bundles are listed slowest first.
+  @NotNull
+  public String toJson() {
+    final var out = new StringWriter();
+    try (final var json = new JsonWriter(out)) {
+      final var path = criticalPath();
+      var pathNanos = 0L;
+      json.beginObject();
+      json.name("criticalPath").beginArray();
+      for (final BundleTiming timing : path) {
+        json.value(timing.bundle);
+        pathNanos += timing.applyNanos;
+      }
+      json.endArray();
+      json.name("criticalPathNanos").value(pathNanos);
+      json.name("bundles").beginArray();
+      for (final BundleTiming timing : slowest(Integer.MAX_VALUE)) {
+        json.beginObject();
+        json.name("bundle").value(timing.bundle);
+        json.name("parent").value(timing.parent);
+        json.name("requires").beginArray();
+        for (final String required : timing.requires) {
+          json.value(required);
+        }
+        json.endArray();
+        json.name("thread").value(timing.thread);
+        json.name("waitNanos").value(timing.waitNanos);
+        json.name("applyNanos").value(timing.applyNanos);
+        json.name("selfNanos").value(timing.selfNanos);
+        json.name("failed").value(timing.failed);
+        json.endObject();
+      }
+      json.endArray();
+      json.endObject();
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Writing to a StringWriter cannot fail. This is a library error.", e);
+    }
+    return out.toString();
+  }
+
+  @Override
+  public String toString() {
+    return toText();
+  }
+
+  // Bundles are named like BundleKey does it: the class name, followed by the qualifier in brackets when there is one.
+  public static final class BundleTiming {
+
+    @NotNull
+    private final String bundle;
+    @Nullable
+    private final String parent;
+    @NotNull
+    private final List<String> requires;
+    @NotNull
+    private final String thread;
+    private final long waitNanos;
+    private final long applyNanos;
+    private final long selfNanos;
+    private final boolean failed;
+
+    private BundleTiming(
+        @NotNull final String bundle,
+        @Nullable final String parent,
+        @NotNull final List<String> requires,
+        @NotNull final String thread,
+        final long waitNanos,
+        final long applyNanos,
+        final boolean failed
+    ) {
+      this(bundle, parent, requires, thread, waitNanos, applyNanos, applyNanos, failed);
+    }
+
+    private BundleTiming(
+        @NotNull final String bundle,
+        @Nullable final String parent,
+        @NotNull final List<String> requires,
+        @NotNull final String thread,
+        final long waitNanos,
+        final long applyNanos,
+        final long selfNanos,
+        final boolean failed
+    ) {
+      this.bundle = bundle;
+      this.parent = parent;
+      this.requires = requires;
+      this.thread = thread;
+      this.waitNanos = waitNanos;
+      this.applyNanos = applyNanos;
+      this.selfNanos = selfNanos;
+      this.failed = failed;
+    }
+
+    private BundleTiming withSelfNanos(final long selfNanos) {
+      return new BundleTiming(bundle, parent, requires, thread, waitNanos, applyNanos, selfNanos, failed);
+    }
+
+    @NotNull
+    public String getBundle() {
+      return bundle;
+    }
+
+    // The bundle whose apply this one was applied from, i.e. the one that registered it or, for a lazily registered bundle, the one that
+    // first needed it.
+    @Nullable
+    public String getParent() {
+      return parent;
+    }
+
+    @NotNull
+    public List<String> getRequires() {
+      return requires;
+    }
+
+    @NotNull
+    public String getThread() {
+      return thread;
+    }
+
+    // Time between the registration starting and the apply starting.
+    public long getWaitNanos() {
+      return waitNanos;
+    }
+
+    // Wall time of the apply, including everything applied from inside of it.
+    public long getApplyNanos() {
+      return applyNanos;
+    }
+
+    // Wall time of the apply, minus the applies nested inside of it.
+    public long getSelfNanos() {
+      return selfNanos;
+    }
+
+    public boolean isFailed() {
+      return failed;
+    }
+
+    @Override
+    public String toString() {
+      return "BundleTiming{" +
+          "bundle=" + bundle +
+          ", parent=" + parent +
+          ", waitNanos=" + waitNanos +
+          ", applyNanos=" + applyNanos +
+          ", selfNanos=" + selfNanos +
+          ", failed=" + failed +
+          '}';
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package com.ud.bundle;
+
+import com.ud.bundle.QualifiedBundle.NoQualifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+
+// Collects values to register into an AppContext all at once, see AppContext.batch. Registering a batch is the same as registering every
+// value with registerValue in the order they were added, except that the paths are only walked as far as they differ from the path added
+// before them: values added grouped by prefix (every value of an object or array next to each other, the way a JSON document lists them)
+// get every container looked up or created once rather than once per value below it, under a single acquisition of the value lock.
+//
+// Every value is checked for its type and for its path not being registered yet before anything is registered. Paths that clash with the
+// tree in other ways (a key below a leaf, a value registered twice within the batch, ...) fail when they are reached, like they would with
+// registerValue, and leave the values before them registered.
+//
+// A batch is not safe to fill from several threads at once and can only be registered once.
+public final class ValueBatch {
+
+  private static final int INITIAL_CAPACITY = 16;
+  private static final Comparator<Entry> BY_PATH = (left, right) -> compare(left.path, right.path);
+
+  @NotNull
+  private final AppContext ctx;
+  @NotNull
+  private Entry[] entries = new Entry[INITIAL_CAPACITY];
+  private int size;
+  private boolean registered;
+  // How many of the entries have been registered so far, in the order they are registered in. Only written by AppContext.registerBatch.
+  int registeredCount;
+
+  ValueBatch(@NotNull final AppContext ctx) {
+    this.ctx = ctx;
+  }
+
+  @NotNull
+  public ValueBatch add(@NotNull final String path, @NotNull final Object value) {
+    return add(path, value, NoQualifier.INSTANCE);
+  }
+
+  @NotNull
+  public ValueBatch add(@NotNull final String path, @NotNull final Object value, @NotNull final Enum<?> qualifier) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    return add(ValuePath.of(path), value, qualifier);
+  }
+
+  @NotNull
+  public ValueBatch add(@NotNull final ValuePath path, @NotNull final Object value) {
+    return add(path, value, NoQualifier.INSTANCE);
+  }
+
+  @NotNull
+  public ValueBatch add(@NotNull final ValuePath path, @NotNull final Object value, @NotNull final Enum<?> qualifier) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    Objects.requireNonNull(value, "'value' parameter must not be null.");
+    Objects.requireNonNull(qualifier, "'qualifier' parameter must not be null.");
+    checkNotRegistered();
+    if (size == entries.length) {
+      entries = Arrays.copyOf(entries, size * 2);
+    }
+    entries[size++] = new Entry(path, value, qualifier);
+    return this;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // How many values register registered: every value once it succeeded, and the values before the one it failed on when it didn't, which
+  // are the first ones in the order they were added. None when it failed before registering anything (e.g. because one of the paths
+  // already had a value), or when it hasn't been called yet.
+  public int registeredCount() {
+    return registeredCount;
+  }
+
+  public void register() {
+    checkNotRegistered();
+    registered = true;
+    ctx.registerBatch(this, entries, size);
+    // Nothing refers to the entries anymore, only to the paths and values they held.
+    entries = new Entry[0];
+  }
+
+  // Orders the entries so that paths sharing a prefix are next to each other, with array elements in the order of their indices.
+  void sortByPath() {
+    Arrays.sort(entries, 0, size, BY_PATH);
+  }
+
+  private void checkNotRegistered() {
+    if (registered) {
+      throw new IllegalStateException("The batch has already been registered. This is a programmer error.");
+    }
+  }
+
+  // Segment by segment, array indices before keys and by their value, so that a sorted array is registered in order.
+  private static int compare(final ValuePath left, final ValuePath right) {
+    final var shared = Math.min(left.size(), right.size());
+    for (int i = 0; i < shared; i++) {
+      final var result = compareSegment(left, right, i);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(left.size(), right.size());
+  }
+
+  static int compareSegment(final ValuePath left, final ValuePath right, final int i) {
+    if (left.isIndex(i)) {
+      return right.isIndex(i) ? Integer.compare(left.index(i), right.index(i)) : -1;
+    }
+    return right.isIndex(i) ? 1 : left.segment(i).compareTo(right.segment(i));
+  }
+
+  static final class Entry {
+
+    @NotNull
+    final ValuePath path;
+    @NotNull
+    final Object value;
+    @NotNull
+    final Enum<?> qualifier;
+
+    private Entry(@NotNull final ValuePath path, @NotNull final Object value, @NotNull final Enum<?> qualifier) {
+      this.path = path;
+      this.value = value;
+      this.qualifier = qualifier;
+    }
+  }
+}
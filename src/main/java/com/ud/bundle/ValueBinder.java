@@ -0,0 +1,285 @@
+package com.ud.bundle;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Turns an object in the value tree into an instance of a record or POJO, see AppContext.bind. Everything that needs reflection (finding
+// the components or fields, their types and the constructor) is done once per class when its binder is created, and binders are cached
+// per class. Binding itself only reads values and calls method handles.
+//
+// Records are bound through their canonical constructor, each component from the key with the component's name. POJOs need a constructor
+// without parameters and are bound field by field, every field that isn't static or transient from the key with the field's name. Keys
+// are matched the way paths are, so a component called timeoutMs is read from timeoutms. A record component that has no value is null,
+// or fails the bind when it is a primitive. A POJO field without a value keeps whatever its constructor set it to.
+//
+// Supported types are int, long and double (and their boxes), String, Number, BigInteger, BigDecimal, long[] and double[], List of any of
+// the object types (up to the first gap in the array), and other records or POJOs, which are bound from the object at their key.
+final class ValueBinder {
+
+  // Records are only available from Java 16 on, while this library targets 11, so they are looked up reflectively.
+  @Nullable
+  private static final Method IS_RECORD = classMethod("isRecord");
+  @Nullable
+  private static final Method GET_RECORD_COMPONENTS = classMethod("getRecordComponents");
+
+  private static final ClassValue<ValueBinder> BINDERS = new ClassValue<>() {
+    @Override
+    protected ValueBinder computeValue(final Class<?> type) {
+      return create(type);
+    }
+  };
+
+  @NotNull
+  private final Class<?> type;
+  @NotNull
+  private final String[] keys;
+  @NotNull
+  private final Converter[] converters;
+  // For records the canonical constructor taking an Object[] of every component, for POJOs the constructor without parameters.
+  @NotNull
+  private final MethodHandle constructor;
+  // One per key for POJOs, taking the instance and the value. Null for records.
+  @Nullable
+  private final MethodHandle[] setters;
+  // Whether a missing value fails the bind, i.e. for primitive record components.
+  @NotNull
+  private final boolean[] required;
+
+  private ValueBinder(
+      @NotNull final Class<?> type,
+      @NotNull final String[] keys,
+      @NotNull final Converter[] converters,
+      @NotNull final MethodHandle constructor,
+      @Nullable final MethodHandle[] setters,
+      @NotNull final boolean[] required
+  ) {
+    this.type = type;
+    this.keys = keys;
+    this.converters = converters;
+    this.constructor = constructor;
+    this.setters = setters;
+    this.required = required;
+  }
+
+  @NotNull
+  static ValueBinder of(@NotNull final Class<?> type) {
+    return BINDERS.get(type);
+  }
+
+  // Binds the object, whose normalised path is path (only used for error messages). Must be called while holding the value lock.
+  @NotNull
+  Object bind(@NotNull final ContextValue value, @NotNull final String path) {
+    if (!value.isObject()) {
+      throw new IllegalArgumentException("Cannot bind " + path + " to " + type.getName() + ", it is not an object. This is a programmer error.");
+    }
+    try {
+      if (setters == null) {
+        final var args = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+          args[i] = convert(value, i, path);
+        }
+        return (Object) constructor.invokeExact(args);
+      }
+      final var instance = (Object) constructor.invokeExact();
+      for (int i = 0; i < keys.length; i++) {
+        final var converted = convert(value, i, path);
+        if (converted != null) {
+          setters[i].invokeExact(instance, converted);
+        }
+      }
+      return instance;
+    } catch (final RuntimeException | Error e) {
+      throw e;
+    } catch (final Throwable e) {
+      throw new IllegalStateException("Failed to create a " + type.getName() + " for " + path + ".", e);
+    }
+  }
+
+  @Nullable
+  private Object convert(final ContextValue container, final int i, final String path) {
+    final var child = container.child(keys[i]);
+    if (child == null) {
+      if (required[i]) {
+        throw new IllegalArgumentException("Cannot bind " + path + " to " + type.getName() + ", there is no value at " + keys[i]
+            + ". This is a programmer error.");
+      }
+      return null;
+    }
+    try {
+      return converters[i].convert(child, path + AppContext.VALUE_PATH_SEPARATOR + keys[i]);
+    } catch (final UnsupportedOperationException e) {
+      throw new IllegalArgumentException("Cannot bind " + path + AppContext.VALUE_PATH_SEPARATOR + keys[i] + " for " + type.getName()
+          + ". This is a programmer error.", e);
+    }
+  }
+
+  private static ValueBinder create(final Class<?> type) {
+    try {
+      if (isRecord(type)) {
+        return createForRecord(type);
+      }
+      return createForPojo(type);
+    } catch (final ReflectiveOperationException e) {
+      throw new IllegalArgumentException("Cannot bind to " + type.getName() + ". This is a programmer error.", e);
+    }
+  }
+
+  private static ValueBinder createForRecord(final Class<?> type) throws ReflectiveOperationException {
+    final var components = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+    final var keys = new String[components.length];
+    final var converters = new Converter[components.length];
+    final var parameterTypes = new Class<?>[components.length];
+    final var required = new boolean[components.length];
+    for (int i = 0; i < components.length; i++) {
+      final var componentClass = components[i].getClass();
+      final var name = (String) componentClass.getMethod("getName").invoke(components[i]);
+      parameterTypes[i] = (Class<?>) componentClass.getMethod("getType").invoke(components[i]);
+      final var genericType = (Type) componentClass.getMethod("getGenericType").invoke(components[i]);
+      keys[i] = name.toLowerCase(Locale.ROOT);
+      converters[i] = converter(type, name, genericType);
+      required[i] = parameterTypes[i].isPrimitive();
+    }
+    final var canonical = type.getDeclaredConstructor(parameterTypes);
+    canonical.trySetAccessible();
+    final var constructor = MethodHandles.lookup().unreflectConstructor(canonical)
+        .asSpreader(Object[].class, components.length)
+        .asType(MethodType.methodType(Object.class, Object[].class));
+    return new ValueBinder(type, keys, converters, constructor, null, required);
+  }
+
+  private static ValueBinder createForPojo(final Class<?> type) throws ReflectiveOperationException {
+    if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isPrimitive() || type.isArray() || type.isEnum()) {
+      throw new IllegalArgumentException("Cannot bind to " + type.getName() + ", only records and classes with a constructor without "
+          + "parameters can be bound. This is a programmer error.");
+    }
+    final var lookup = MethodHandles.lookup();
+    final var noArgs = type.getDeclaredConstructor();
+    noArgs.trySetAccessible();
+    final var constructor = lookup.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+
+    final var fields = new ArrayList<Field>();
+    for (var current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+      for (final Field field : current.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !field.isSynthetic()) {
+          fields.add(field);
+        }
+      }
+    }
+    final var keys = new String[fields.size()];
+    final var converters = new Converter[fields.size()];
+    final var setters = new MethodHandle[fields.size()];
+    for (int i = 0; i < keys.length; i++) {
+      final var field = fields.get(i);
+      field.trySetAccessible();
+      keys[i] = field.getName().toLowerCase(Locale.ROOT);
+      converters[i] = converter(type, field.getName(), field.getGenericType());
+      setters[i] = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+    }
+    return new ValueBinder(type, keys, converters, constructor, setters, new boolean[keys.length]);
+  }
+
+  private static Converter converter(final Class<?> owner, final String name, final Type type) {
+    if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == List.class) {
+      final var element = ((ParameterizedType) type).getActualTypeArguments()[0];
+      if (element instanceof Class && !((Class<?>) element).isPrimitive()) {
+        return listConverter(converter(owner, name, element));
+      }
+    }
+    if (!(type instanceof Class)) {
+      throw new IllegalArgumentException("Cannot bind " + owner.getName() + "." + name + " of type " + type.getTypeName()
+          + ". This is a programmer error.");
+    }
+    final var clazz = (Class<?>) type;
+    if (clazz == int.class || clazz == Integer.class) {
+      return (value, path) -> value.asInt();
+    }
+    if (clazz == long.class || clazz == Long.class) {
+      return (value, path) -> value.asLong();
+    }
+    if (clazz == double.class || clazz == Double.class) {
+      return (value, path) -> value.asDouble();
+    }
+    if (clazz == String.class) {
+      return (value, path) -> value.asString();
+    }
+    if (clazz == Number.class) {
+      return (value, path) -> value.asNumber();
+    }
+    if (clazz == BigInteger.class) {
+      return (value, path) -> new BigInteger(value.asString());
+    }
+    if (clazz == BigDecimal.class) {
+      return (value, path) -> new BigDecimal(value.asString());
+    }
+    if (clazz == long[].class) {
+      return (value, path) -> value.asLongArray();
+    }
+    if (clazz == double[].class) {
+      return (value, path) -> value.asDoubleArray();
+    }
+    if (clazz.isPrimitive() || clazz.isArray() || clazz.getName().startsWith("java.")) {
+      throw new IllegalArgumentException("Cannot bind " + owner.getName() + "." + name + " of type " + clazz.getName()
+          + ". This is a programmer error.");
+    }
+    // Looked up when binding rather than now, so that types can refer to themselves.
+    return (value, path) -> of(clazz).bind(value, path);
+  }
+
+  private static Converter listConverter(final Converter element) {
+    return (value, path) -> {
+      if (!value.isArray()) {
+        throw new IllegalArgumentException("Cannot bind " + path + " to a List, it is not an array. This is a programmer error.");
+      }
+      final var list = new ArrayList<>();
+      for (int i = 0; ; i++) {
+        final var child = value.child(i);
+        if (child == null) {
+          break;
+        }
+        list.add(element.convert(child, path + AppContext.VALUE_PATH_SEPARATOR + i));
+      }
+      return Collections.unmodifiableList(list);
+    };
+  }
+
+  private static boolean isRecord(final Class<?> type) {
+    if (IS_RECORD == null) {
+      return false;
+    }
+    try {
+      return (Boolean) IS_RECORD.invoke(type);
+    } catch (final IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("Class.isRecord cannot fail. This is a library error.", e);
+    }
+  }
+
+  @Nullable
+  private static Method classMethod(final String name) {
+    try {
+      return Class.class.getMethod(name);
+    } catch (final NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  @FunctionalInterface
+  private interface Converter {
+
+    Object convert(@NotNull ContextValue value, @NotNull String path);
+  }
+}
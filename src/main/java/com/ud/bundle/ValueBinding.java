@@ -0,0 +1,57 @@
+package com.ud.bundle;
+
+import org.jetbrains.annotations.NotNull;
+
+// A bound object that is bound again whenever a value below its path is updated, returned by AppContext.bindLive. get() always returns a
+// complete instance, never one that is halfway through being bound, so hot paths can read it without looking up a single value. Values
+// registered or removed below the path are picked up with the next update. A rebind that fails (e.g. because a value was updated to
+// something its field can't hold) keeps the previous instance, and the failure goes wherever the subscription's executor sends it.
+public final class ValueBinding<T> implements AutoCloseable {
+
+  @NotNull
+  private final AppContext ctx;
+  @NotNull
+  private final ValuePath path;
+  @NotNull
+  private final Class<T> type;
+  @NotNull
+  private final ValueSubscription subscription;
+  private volatile T current;
+
+  ValueBinding(@NotNull final AppContext ctx, @NotNull final ValuePath path, @NotNull final Class<T> type) {
+    this.ctx = ctx;
+    this.path = path;
+    this.type = type;
+    // Subscribing first means no update can slip in between binding and subscribing.
+    this.subscription = ctx.subscribe(path, changes -> rebind());
+    try {
+      rebind();
+    } catch (final RuntimeException e) {
+      subscription.close();
+      throw e;
+    }
+  }
+
+  // Binds serially, so the last bind to finish is also the one that read the values last.
+  private synchronized void rebind() {
+    current = ctx.bind(path, type);
+  }
+
+  @NotNull
+  public T get() {
+    return current;
+  }
+
+  @Override
+  public void close() {
+    subscription.close();
+  }
+
+  @Override
+  public String toString() {
+    return "ValueBinding{" +
+        "path=" + path +
+        ", current=" + current +
+        '}';
+  }
+}
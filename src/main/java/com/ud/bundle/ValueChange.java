@@ -0,0 +1,91 @@
+package com.ud.bundle;
+
+import org.jetbrains.annotations.NotNull;
+
+// A change to a single leaf value as seen by a ValueListener. When a leaf was updated several times before the listener got to see it,
+// the updates are coalesced: oldValue is the value before the first of them, newValue and version are those of the last one. First and
+// last go by version rather than by the order the updates were handed over in, which can differ for updates made on different threads.
+public final class ValueChange {
+
+  @NotNull
+  private final ValuePath path;
+  @NotNull
+  private final ContextValue value;
+  @NotNull
+  private final Object oldValue;
+  @NotNull
+  private final Object newValue;
+  private final long version;
+  // The version of the first of the coalesced updates, i.e. the one oldValue was replaced by.
+  private final long firstVersion;
+
+  ValueChange(
+      @NotNull final ValuePath path,
+      @NotNull final ContextValue value,
+      @NotNull final Object oldValue,
+      @NotNull final Object newValue,
+      final long version
+  ) {
+    this(path, value, oldValue, newValue, version, version);
+  }
+
+  private ValueChange(
+      @NotNull final ValuePath path,
+      @NotNull final ContextValue value,
+      @NotNull final Object oldValue,
+      @NotNull final Object newValue,
+      final long version,
+      final long firstVersion
+  ) {
+    this.path = path;
+    this.value = value;
+    this.oldValue = oldValue;
+    this.newValue = newValue;
+    this.version = version;
+    this.firstVersion = firstVersion;
+  }
+
+  @NotNull
+  ValueChange coalesce(@NotNull final ValueChange other) {
+    final var first = other.firstVersion < firstVersion ? other : this;
+    final var last = other.version > version ? other : this;
+    if (first == this && last == this) {
+      return this;
+    }
+    return new ValueChange(path, value, first.oldValue, last.newValue, last.version, first.firstVersion);
+  }
+
+  @NotNull
+  public ValuePath getPath() {
+    return path;
+  }
+
+  @NotNull
+  public ContextValue getValue() {
+    return value;
+  }
+
+  @NotNull
+  public Object getOldValue() {
+    return oldValue;
+  }
+
+  @NotNull
+  public Object getNewValue() {
+    return newValue;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  @Override
+  public String toString() {
+    return "ValueChange{" +
+        "path=" + path +
+        ", oldValue=" + oldValue +
+        ", newValue=" + newValue +
+        ", version=" + version +
+        '}';
+  }
+}
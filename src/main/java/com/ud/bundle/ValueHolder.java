@@ -0,0 +1,473 @@
+package com.ud.bundle;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// A leaf of the value tree. The value itself lives in an immutable Leaf that is specialised for the type it was registered with, so that
+// numeric reads return the primitive that is already there rather than unboxing, re-parsing or allocating.
+//
+// Updates swap the Leaf as a whole through a compare-and-set on a volatile field, and every Leaf carries the version it was written
+// with. A reader therefore pays a single volatile read and always sees a value together with its own version, never a torn pair, while
+// writers on any number of threads never block each other.
+final class ValueHolder implements ContextValue {
+
+  private static final VarHandle LEAF;
+
+  static {
+    try {
+      LEAF = MethodHandles.lookup().findVarHandle(ValueHolder.class, "leaf", Leaf.class);
+    } catch (final ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  @NotNull
+  private final ContextValue parent;
+  @NotNull
+  private final ValuePath path;
+  // Told about every successful update, after it happened.
+  @NotNull
+  private final ChangeDispatcher changes;
+  @NotNull
+  private volatile Leaf leaf;
+
+  ValueHolder(@NotNull final ContextValue parent, @NotNull final ValuePath path, @NotNull final Object value, @NotNull final ChangeDispatcher changes) {
+    this.parent = parent;
+    this.path = path;
+    this.changes = changes;
+    this.leaf = Leaf.of(value, 0);
+  }
+
+  ValueHolder(@NotNull final ContextValue parent, @NotNull final ValuePath path, @NotNull final Leaf leaf, @NotNull final ChangeDispatcher changes) {
+    this.parent = parent;
+    this.path = path;
+    this.changes = changes;
+    this.leaf = leaf;
+  }
+
+  @NotNull
+  ValuePath path() {
+    return path;
+  }
+
+  @NotNull
+  Leaf leaf() {
+    return leaf;
+  }
+
+  @Override
+  public ContextValue parent() {
+    return parent;
+  }
+
+  @Override
+  public ContextValue child(@NotNull final String key) {
+    throw new UnsupportedOperationException("Cannot get a child of a leaf value. This is a library error.");
+  }
+
+  @Override
+  public ContextValue child(final int key) {
+    throw new UnsupportedOperationException("Cannot get a child of a leaf value. This is a library error.");
+  }
+
+  @Override
+  public boolean isContainer() {
+    return false;
+  }
+
+  @Override
+  public boolean isObject() {
+    return false;
+  }
+
+  @Override
+  public boolean isArray() {
+    return false;
+  }
+
+  @Override
+  public boolean isLeaf() {
+    return true;
+  }
+
+  @Override
+  public Object update(@NotNull final Object newValue) {
+    Objects.requireNonNull(newValue, "'newValue' parameter must not be null.");
+    while (true) {
+      final var current = leaf;
+      final var next = Leaf.of(newValue, current.version + 1);
+      if (LEAF.compareAndSet(this, current, next)) {
+        changes.changed(this, current.value(), newValue, next.version);
+        return current.value();
+      }
+    }
+  }
+
+  @Override
+  public boolean compareAndUpdate(@NotNull final Object expectedValue, @NotNull final Object newValue) {
+    Objects.requireNonNull(expectedValue, "'expectedValue' parameter must not be null.");
+    Objects.requireNonNull(newValue, "'newValue' parameter must not be null.");
+    while (true) {
+      final var current = leaf;
+      if (!expectedValue.equals(current.value())) {
+        return false;
+      }
+      // Only fails when another thread swapped the leaf in between, which may have been for an equal value, so check again.
+      final var next = Leaf.of(newValue, current.version + 1);
+      if (LEAF.compareAndSet(this, current, next)) {
+        changes.changed(this, current.value(), newValue, next.version);
+        return true;
+      }
+    }
+  }
+
+  @Override
+  public Object getAndUpdate(@NotNull final UnaryOperator<Object> updateFunction) {
+    Objects.requireNonNull(updateFunction, "'updateFunction' parameter must not be null.");
+    while (true) {
+      final var current = leaf;
+      final var newValue = Objects.requireNonNull(updateFunction.apply(current.value()), "'updateFunction' must not return null.");
+      final var next = Leaf.of(newValue, current.version + 1);
+      if (LEAF.compareAndSet(this, current, next)) {
+        changes.changed(this, current.value(), newValue, next.version);
+        return current.value();
+      }
+    }
+  }
+
+  @Override
+  public long version() {
+    return leaf.version;
+  }
+
+  @Override
+  public String asString() {
+    return leaf.asString();
+  }
+
+  @Override
+  public Number asNumber() {
+    return leaf.asNumber();
+  }
+
+  @Override
+  public long asLong() {
+    return leaf.asLong();
+  }
+
+  @Override
+  public double asDouble() {
+    return leaf.asDouble();
+  }
+
+  @Override
+  public int asInt() {
+    return leaf.asInt();
+  }
+
+  @Override
+  public long[] asLongArray() {
+    throw new UnsupportedOperationException("Cannot represent the value " + value() + " as an array.");
+  }
+
+  @Override
+  public double[] asDoubleArray() {
+    throw new UnsupportedOperationException("Cannot represent the value " + value() + " as an array.");
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ValueHolder that = (ValueHolder) o;
+    return parent.equals(that.parent) &&
+        value().equals(that.value());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(parent, value());
+  }
+
+  @Override
+  public String toString() {
+    return "ValueHolder{" +
+        "parent=" + parent +
+        ", value=" + value() +
+        '}';
+  }
+
+  private Object value() {
+    return leaf.value();
+  }
+
+  abstract static class Leaf {
+
+    // Starts at 0 when the value is registered and goes up by one with every update.
+    final long version;
+
+    Leaf(final long version) {
+      this.version = version;
+    }
+
+    // The value exactly as it was registered.
+    @NotNull
+    abstract Object value();
+
+    @NotNull
+    abstract String asString();
+
+    @NotNull
+    abstract Number asNumber();
+
+    abstract long asLong();
+
+    abstract double asDouble();
+
+    int asInt() {
+      final var value = asLong();
+      if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+        throw new UnsupportedOperationException("Cannot represent the value " + value() + " as an int.");
+      }
+      return (int) value;
+    }
+
+    @NotNull
+    static Leaf of(@NotNull final Object value, final long version) {
+      if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        return new LongLeaf(((Number) value).longValue(), (Number) value, version);
+      }
+      if (value instanceof Double) {
+        return new DoubleLeaf((Double) value, (Number) value, version);
+      }
+      if (value instanceof String) {
+        return new StringLeaf((String) value, version);
+      }
+      return new ObjectLeaf(value, version);
+    }
+
+    static long toLong(final double value, final Object original) {
+      final var asLong = (long) value;
+      // The cast saturates, so anything outside the long range or with a fractional part fails the round trip.
+      if (asLong != value || asLong == Long.MAX_VALUE) {
+        throw new UnsupportedOperationException("Cannot represent the value " + original + " as a long.");
+      }
+      return asLong;
+    }
+  }
+
+  static final class LongLeaf extends Leaf {
+
+    private final long value;
+    // The registered Number, handed out by asNumber() so that it never boxes.
+    @NotNull
+    private final Number boxed;
+
+    LongLeaf(final long value, @NotNull final Number boxed, final long version) {
+      super(version);
+      this.value = value;
+      this.boxed = boxed;
+    }
+
+    @Override
+    Object value() {
+      return boxed;
+    }
+
+    @Override
+    String asString() {
+      return boxed.toString();
+    }
+
+    @Override
+    Number asNumber() {
+      return boxed;
+    }
+
+    @Override
+    long asLong() {
+      return value;
+    }
+
+    @Override
+    double asDouble() {
+      return value;
+    }
+  }
+
+  static final class DoubleLeaf extends Leaf {
+
+    private final double value;
+    @NotNull
+    private final Number boxed;
+
+    DoubleLeaf(final double value, @NotNull final Number boxed, final long version) {
+      super(version);
+      this.value = value;
+      this.boxed = boxed;
+    }
+
+    @Override
+    Object value() {
+      return boxed;
+    }
+
+    @Override
+    String asString() {
+      return boxed.toString();
+    }
+
+    @Override
+    Number asNumber() {
+      return boxed;
+    }
+
+    @Override
+    long asLong() {
+      return toLong(value, boxed);
+    }
+
+    @Override
+    double asDouble() {
+      return value;
+    }
+  }
+
+  static final class StringLeaf extends Leaf {
+
+    @NotNull
+    private final String value;
+    // The numeric interpretation of the string, worked out on first use and kept so that it is never parsed again. Either a LongLeaf, a
+    // DoubleLeaf or this leaf itself when the string isn't numeric. Racing threads compute the same result, so a lost write is harmless.
+    @Nullable
+    private volatile Leaf parsed;
+
+    StringLeaf(@NotNull final String value, final long version) {
+      super(version);
+      this.value = value;
+    }
+
+    @Override
+    Object value() {
+      return value;
+    }
+
+    @Override
+    String asString() {
+      return value;
+    }
+
+    @Override
+    Number asNumber() {
+      return numeric().asNumber();
+    }
+
+    @Override
+    long asLong() {
+      return numeric().asLong();
+    }
+
+    @Override
+    double asDouble() {
+      return numeric().asDouble();
+    }
+
+    private Leaf numeric() {
+      var result = parsed;
+      if (result == null) {
+        result = parse(value);
+        parsed = result;
+      }
+      if (result == this) {
+        throw new UnsupportedOperationException("Cannot represent the value " + value + " as a number.");
+      }
+      return result;
+    }
+
+    // Integers are recognised up front so that the common case neither throws nor allocates more than the result. Anything else that could
+    // still be a floating point literal goes through Double.parseDouble() once.
+    private Leaf parse(final String value) {
+      final var length = value.length();
+      final var start = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+      var integral = start < length;
+      for (int i = start; i < length && integral; i++) {
+        final var c = value.charAt(i);
+        integral = c >= '0' && c <= '9';
+      }
+      if (integral) {
+        try {
+          final long asLong = Long.parseLong(value);
+          return new LongLeaf(asLong, asLong, version);
+        } catch (final NumberFormatException ignored) {
+          // Out of the long range, may still be represented as a double.
+        }
+      }
+      try {
+        final double asDouble = Double.parseDouble(value);
+        return new DoubleLeaf(asDouble, asDouble, version);
+      } catch (final NumberFormatException ignored) {
+        return this;
+      }
+    }
+  }
+
+  // Any other type, including other Numbers such as BigInteger that don't fit the specialised leaves.
+  static final class ObjectLeaf extends Leaf {
+
+    @NotNull
+    private final Object value;
+
+    ObjectLeaf(@NotNull final Object value, final long version) {
+      super(version);
+      this.value = value;
+    }
+
+    @Override
+    Object value() {
+      return value;
+    }
+
+    @Override
+    String asString() {
+      return value.toString();
+    }
+
+    @Override
+    Number asNumber() {
+      if (value instanceof Number) {
+        return (Number) value;
+      }
+      throw new UnsupportedOperationException("Cannot represent the value " + value + " as a number.");
+    }
+
+    @Override
+    long asLong() {
+      final var number = asNumber();
+      if (number instanceof BigInteger || number instanceof BigDecimal) {
+        try {
+          return number instanceof BigInteger
+              ? ((BigInteger) number).longValueExact()
+              : ((BigDecimal) number).longValueExact();
+        } catch (final ArithmeticException e) {
+          throw new UnsupportedOperationException("Cannot represent the value " + value + " as a long.", e);
+        }
+      }
+      return toLong(number.doubleValue(), value);
+    }
+
+    @Override
+    double asDouble() {
+      return asNumber().doubleValue();
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package com.ud.bundle;
+
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+// Receives the changes to the values under a subscribed path. See AppContext.subscribe(...).
+@FunctionalInterface
+public interface ValueListener {
+
+  // Called with every leaf that changed since the previous call, in the order each leaf first changed. Calls for the same subscription
+  // never overlap, but may happen on any thread of the subscription's executor.
+  void onChanges(@NotNull final List<ValueChange> changes);
+}
@@ -0,0 +1,227 @@
+package com.ud.bundle;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+
+// A dotted value path that has been parsed, normalised and classified once. Every segment is known up front to be either an object key
+// or an array index, so walking the value tree with a ValuePath never needs to split strings or try parsing numbers again. Meant to be
+// created once and kept around (e.g. in a static final field) by code that reads the same paths over and over.
+public final class ValuePath {
+
+  private static final char SEPARATOR = '.';
+  // Marks a segment as an object key in the indices array.
+  private static final int KEY = -1;
+
+  @NotNull
+  private final String path;
+  @NotNull
+  private final String[] segments;
+  // Array index for every segment that is one, KEY for every segment that is an object key.
+  @NotNull
+  private final int[] indices;
+  // Offset into path just past the end of every segment, used to cut out the path of any intermediate container.
+  @NotNull
+  private final int[] ends;
+  // prefix(size() - 1), cut out the first time it is asked for. Looking up an element of a dense array goes through its array's path, so
+  // caching it keeps repeated lookups of the same ValuePath from allocating. Racy but benign, like String's own hash.
+  private String containerPath;
+
+  @NotNull
+  public static ValuePath of(@NotNull final String path) {
+    Objects.requireNonNull(path, "'path' parameter must not be null.");
+    if (path.isBlank()) {
+      throw new IllegalArgumentException("'path' parameter must contain non-whitespace characters.");
+    }
+
+    final var normalised = path.toLowerCase(Locale.ROOT);
+    var count = 1;
+    for (int i = 0; i < normalised.length(); i++) {
+      if (normalised.charAt(i) == SEPARATOR) {
+        count++;
+      }
+    }
+
+    final var segments = new String[count];
+    final var indices = new int[count];
+    final var ends = new int[count];
+    var start = 0;
+    for (int i = 0; i < count; i++) {
+      var end = normalised.indexOf(SEPARATOR, start);
+      if (end < 0) {
+        end = normalised.length();
+      }
+      final var segment = normalised.substring(start, end);
+      if (segment.isBlank()) {
+        throw new IllegalArgumentException("No parts of the path can consist of only whitespace. (part " + i + " violated this rule)");
+      }
+      segments[i] = segment;
+      indices[i] = classify(segment);
+      ends[i] = end;
+      start = end + 1;
+    }
+    if (indices[0] != KEY) {
+      throw new IllegalArgumentException("Cannot use a numeric array index at the root level.");
+    }
+    return new ValuePath(normalised, segments, indices, ends);
+  }
+
+  private ValuePath(@NotNull final String path, @NotNull final String[] segments, @NotNull final int[] indices, @NotNull final int[] ends) {
+    this.path = path;
+    this.segments = segments;
+    this.indices = indices;
+    this.ends = ends;
+  }
+
+  // Returns the segment as an array index when it consists only of digits and fits into an int, KEY otherwise. Segments such as "-1" or
+  // "99999999999" are treated as object keys rather than as indices that could never exist.
+  private static int classify(final String segment) {
+    var idx = 0;
+    for (int i = 0; i < segment.length(); i++) {
+      final var c = segment.charAt(i);
+      if (c < '0' || c > '9') {
+        return KEY;
+      }
+      final var digit = c - '0';
+      if (idx > (Integer.MAX_VALUE - digit) / 10) {
+        return KEY;
+      }
+      idx = idx * 10 + digit;
+    }
+    return idx;
+  }
+
+  @NotNull
+  public ValuePath child(@NotNull final String key) {
+    Objects.requireNonNull(key, "'key' parameter must not be null.");
+    if (key.indexOf(SEPARATOR) >= 0) {
+      return of(path + SEPARATOR + key);
+    }
+    if (key.isBlank()) {
+      throw new IllegalArgumentException("No parts of the path can consist of only whitespace. (part " + segments.length + " violated this rule)");
+    }
+    final var normalised = key.toLowerCase(Locale.ROOT);
+    return append(normalised, classify(normalised));
+  }
+
+  @NotNull
+  public ValuePath child(final int index) {
+    if (index < 0) {
+      throw new IllegalArgumentException("Array index must not be negative. Was: " + index);
+    }
+    return append(Integer.toString(index), index);
+  }
+
+  private ValuePath append(final String segment, final int index) {
+    final var count = segments.length;
+    final var newSegments = Arrays.copyOf(segments, count + 1);
+    final var newIndices = Arrays.copyOf(indices, count + 1);
+    final var newEnds = Arrays.copyOf(ends, count + 1);
+    final var newPath = path + SEPARATOR + segment;
+    newSegments[count] = segment;
+    newIndices[count] = index;
+    newEnds[count] = newPath.length();
+    return new ValuePath(newPath, newSegments, newIndices, newEnds);
+  }
+
+  // Returns an equal path whose segments and classification arrays are the instances kept by the table, so that paths registered into the
+  // same context share them. Returns this path itself when it already is made up of those instances.
+  @NotNull
+  ValuePath intern(@NotNull final InternTable table) {
+    String[] internedSegments = null;
+    for (int i = 0; i < segments.length; i++) {
+      final var segment = table.intern(segments[i]);
+      if (segment != segments[i]) {
+        if (internedSegments == null) {
+          internedSegments = segments.clone();
+        }
+        internedSegments[i] = segment;
+      }
+    }
+    final var internedIndices = table.intern(indices);
+    final var internedEnds = table.intern(ends);
+    if (internedSegments == null && internedIndices == indices && internedEnds == ends) {
+      return this;
+    }
+    return new ValuePath(path, internedSegments == null ? segments : internedSegments, internedIndices, internedEnds);
+  }
+
+  public int size() {
+    return segments.length;
+  }
+
+  @NotNull
+  public String segment(final int i) {
+    return segments[i];
+  }
+
+  public boolean isIndex(final int i) {
+    return indices[i] != KEY;
+  }
+
+  public int index(final int i) {
+    final var idx = indices[i];
+    if (idx == KEY) {
+      throw new IllegalStateException("Segment " + i + " of " + path + " is an object key, not an array index.");
+    }
+    return idx;
+  }
+
+  // The path made up of the first segmentCount segments, i.e. the path of the container that holds segment segmentCount.
+  @NotNull
+  ValuePath subPath(final int segmentCount) {
+    if (segmentCount == segments.length) {
+      return this;
+    }
+    return new ValuePath(
+        prefix(segmentCount),
+        Arrays.copyOf(segments, segmentCount),
+        Arrays.copyOf(indices, segmentCount),
+        Arrays.copyOf(ends, segmentCount)
+    );
+  }
+
+  // The normalised path of the first segmentCount segments, i.e. the path of the container that holds segment segmentCount.
+  @NotNull
+  public String prefix(final int segmentCount) {
+    if (segmentCount == segments.length) {
+      return path;
+    }
+    return path.substring(0, ends[segmentCount - 1]);
+  }
+
+  // The normalised path of the container holding the last segment. Only meaningful for paths of more than one segment.
+  @NotNull
+  String containerPath() {
+    var cached = containerPath;
+    if (cached == null) {
+      cached = prefix(segments.length - 1);
+      containerPath = cached;
+    }
+    return cached;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ValuePath that = (ValuePath) o;
+    return path.equals(that.path);
+  }
+
+  @Override
+  public int hashCode() {
+    return path.hashCode();
+  }
+
+  // The normalised, dotted form of the path.
+  @Override
+  public String toString() {
+    return path;
+  }
+}
@@ -0,0 +1,326 @@
+package com.ud.bundle;
+
+import com.ud.bundle.QualifiedBundle.NoQualifier;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// The binary snapshot format behind AppContext.writeSnapshot/loadSnapshot. A snapshot is a flat list of every registered container and
+// value, in pre-order so that each container comes before the values inside it:
+//
+//   int    MAGIC, int FORMAT_VERSION
+//   int    qualifier count, then per qualifier: string enum class name, string constant name
+//   int    entry count, then per entry:
+//          byte kind, int qualifier (index into the table above, -1 when unqualified),
+//          int parent (index of the container's own entry, -1 for the root), string segment, payload
+//
+// Storing the last segment together with the parent instead of the full path means that loading never parses a path or walks the tree:
+// every entry's path and container are derived from its parent's, which has always been loaded already.
+//
+// Payloads are a long for LONG, a double for DOUBLE and a string for STRING, BIG_INTEGER and BIG_DECIMAL. Containers have none. Strings
+// are an int byte length followed by UTF-8. Everything is big-endian.
+//
+// Loading maps the file and only decodes what is needed to rebuild the tree and the indexes: the segments. Leaf payloads stay in the
+// mapped file until a leaf is read for the first time.
+final class ValueSnapshot {
+
+  private static final int MAGIC = 0x55444353;
+  private static final int FORMAT_VERSION = 1;
+  private static final int UNQUALIFIED = -1;
+  private static final int ROOT = -1;
+
+  static final byte OBJECT = 0;
+  static final byte ARRAY = 1;
+  static final byte LONG = 2;
+  static final byte DOUBLE = 3;
+  static final byte STRING = 4;
+  static final byte BIG_INTEGER = 5;
+  static final byte BIG_DECIMAL = 6;
+
+  private ValueSnapshot() {
+  }
+
+  static void write(@NotNull final Path file, @NotNull final List<Entry> entries) throws IOException {
+    final var qualifiers = new ArrayList<Enum<?>>();
+    final var qualifierIndex = new HashMap<Enum<?>, Integer>();
+    for (final Entry entry : entries) {
+      if (entry.qualifier != NoQualifier.INSTANCE && !qualifierIndex.containsKey(entry.qualifier)) {
+        qualifierIndex.put(entry.qualifier, qualifiers.size());
+        qualifiers.add(entry.qualifier);
+      }
+    }
+
+    try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(qualifiers.size());
+      for (final Enum<?> qualifier : qualifiers) {
+        writeString(out, qualifier.getDeclaringClass().getName());
+        writeString(out, qualifier.name());
+      }
+      out.writeInt(entries.size());
+      for (final Entry entry : entries) {
+        out.writeByte(entry.kind);
+        out.writeInt(entry.qualifier == NoQualifier.INSTANCE ? UNQUALIFIED : qualifierIndex.get(entry.qualifier));
+        out.writeInt(entry.parent);
+        writeString(out, entry.segment);
+        writePayload(out, entry);
+      }
+    }
+  }
+
+  private static void writePayload(final DataOutputStream out, final Entry entry) throws IOException {
+    switch (entry.kind) {
+      case LONG:
+        out.writeLong(((Number) entry.value).longValue());
+        break;
+      case DOUBLE:
+        out.writeDouble(((Number) entry.value).doubleValue());
+        break;
+      case STRING:
+      case BIG_INTEGER:
+      case BIG_DECIMAL:
+        writeString(out, entry.value.toString());
+        break;
+      default:
+        // Containers, nothing to write.
+        break;
+    }
+  }
+
+  private static void writeString(final DataOutputStream out, final String value) throws IOException {
+    final var bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  // The kind a leaf value is written as. Throws for values that were put in through ContextValue.update and have no representation.
+  static byte kindOf(@NotNull final String path, @NotNull final Object value) {
+    if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return LONG;
+    }
+    if (value instanceof Double || value instanceof Float) {
+      return DOUBLE;
+    }
+    if (value instanceof String) {
+      return STRING;
+    }
+    if (value instanceof BigInteger) {
+      return BIG_INTEGER;
+    }
+    if (value instanceof BigDecimal) {
+      return BIG_DECIMAL;
+    }
+    throw new IllegalStateException("Value at " + path + " of " + value.getClass() + " cannot be written to a snapshot. This is a programmer error.");
+  }
+
+  static void read(@NotNull final Path file, @NotNull final ClassLoader classLoader, @NotNull final Loader loader) throws IOException {
+    final ByteBuffer buffer;
+    try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Snapshot " + file + " is larger than 2GB, which is not supported.");
+      }
+      // The mapping stays valid after the channel is closed.
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+      throw new IllegalArgumentException(file + " is not a value snapshot.");
+    }
+    final var version = buffer.getInt();
+    if (version != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Snapshot " + file + " has format version " + version + ", only " + FORMAT_VERSION + " is supported.");
+    }
+
+    final var qualifiers = new Enum<?>[buffer.getInt()];
+    for (int i = 0; i < qualifiers.length; i++) {
+      qualifiers[i] = resolveQualifier(readString(buffer), readString(buffer), classLoader);
+    }
+
+    final var count = buffer.getInt();
+    // The path and the loaded container of every container entry, by entry index. Null for leaf entries.
+    final var paths = new ValuePath[count];
+    final var containers = new ContextValue[count];
+    for (int i = 0; i < count; i++) {
+      final var kind = buffer.get();
+      final var qualifierIdx = buffer.getInt();
+      final var qualifier = qualifierIdx == UNQUALIFIED ? NoQualifier.INSTANCE : qualifiers[qualifierIdx];
+      final var parentIdx = buffer.getInt();
+      final var segment = loader.intern(readString(buffer));
+      if (parentIdx >= i || (parentIdx != ROOT && containers[parentIdx] == null)) {
+        throw new IllegalArgumentException("Snapshot " + file + " is corrupt, entry " + i + " does not come after its container.");
+      }
+      final var parent = parentIdx == ROOT ? loader.root() : containers[parentIdx];
+      final var path = parentIdx == ROOT ? ValuePath.of(segment) : paths[parentIdx].child(segment);
+      switch (kind) {
+        case OBJECT:
+        case ARRAY:
+          paths[i] = path;
+          containers[i] = loader.container(parent, path, qualifier, kind == ARRAY);
+          break;
+        case LONG:
+        case DOUBLE:
+          loader.leaf(parent, path, qualifier, new MappedLeaf(buffer, buffer.position(), kind));
+          buffer.position(buffer.position() + Long.BYTES);
+          break;
+        case STRING:
+        case BIG_INTEGER:
+        case BIG_DECIMAL:
+          loader.leaf(parent, path, qualifier, new MappedLeaf(buffer, buffer.position(), kind));
+          buffer.position(buffer.position() + Integer.BYTES + buffer.getInt(buffer.position()));
+          break;
+        default:
+          throw new IllegalArgumentException("Snapshot " + file + " contains an unknown entry kind " + kind + " at " + path + ".");
+      }
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Enum<?> resolveQualifier(final String className, final String name, final ClassLoader classLoader) {
+    try {
+      final var type = Class.forName(className, true, classLoader);
+      if (!type.isEnum()) {
+        throw new IllegalArgumentException("Snapshot qualifier " + className + " is not an enum.");
+      }
+      return Enum.valueOf((Class) type, name);
+    } catch (final ClassNotFoundException e) {
+      throw new IllegalArgumentException("Snapshot qualifier " + className + "." + name + " cannot be loaded.", e);
+    }
+  }
+
+  private static String readString(final ByteBuffer buffer) {
+    final var bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static final class Entry {
+
+    // Index of the entry of the container this entry is in, -1 for the root.
+    final int parent;
+    @NotNull
+    final String segment;
+    @NotNull
+    final Enum<?> qualifier;
+    final byte kind;
+    // The leaf value, null for containers.
+    @Nullable
+    final Object value;
+
+    Entry(final int parent, @NotNull final String segment, @NotNull final Enum<?> qualifier, final byte kind, @Nullable final Object value) {
+      this.parent = parent;
+      this.segment = segment;
+      this.qualifier = qualifier;
+      this.kind = kind;
+      this.value = value;
+    }
+  }
+
+  // Receives the entries of a snapshot in file order, along with the container each of them goes into.
+  interface Loader {
+
+    @NotNull
+    ContextValue root();
+
+    // Every segment goes through here before it becomes part of a path, so the loader can share repeated segments.
+    @NotNull
+    String intern(@NotNull final String segment);
+
+    // Returns the container now at the path, which is either a new one or one that was already there.
+    @NotNull
+    ContextValue container(@NotNull final ContextValue parent, @NotNull final ValuePath path, @NotNull final Enum<?> qualifier, final boolean array);
+
+    void leaf(@NotNull final ContextValue parent, @NotNull final ValuePath path, @NotNull final Enum<?> qualifier, @NotNull final ValueHolder.Leaf leaf);
+  }
+
+  // A leaf whose value is still in the mapped snapshot. It is decoded on first access and kept from then on. Racing threads decode the
+  // same value, so a lost write is harmless. Updating the holder replaces this leaf altogether.
+  static final class MappedLeaf extends ValueHolder.Leaf {
+
+    @NotNull
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final byte kind;
+    @Nullable
+    private volatile ValueHolder.Leaf decoded;
+
+    MappedLeaf(@NotNull final ByteBuffer buffer, final int offset, final byte kind) {
+      super(0);
+      this.buffer = buffer;
+      this.offset = offset;
+      this.kind = kind;
+    }
+
+    private ValueHolder.Leaf decoded() {
+      var result = decoded;
+      if (result == null) {
+        result = ValueHolder.Leaf.of(decode(), version);
+        decoded = result;
+      }
+      return result;
+    }
+
+    // Never moves the position of the shared buffer, so any number of threads can decode from it at once.
+    private Object decode() {
+      switch (kind) {
+        case LONG:
+          return buffer.getLong(offset);
+        case DOUBLE:
+          return buffer.getDouble(offset);
+        default:
+          final var bytes = new byte[buffer.getInt(offset)];
+          final var view = buffer.duplicate();
+          view.position(offset + Integer.BYTES);
+          view.get(bytes);
+          final var value = new String(bytes, StandardCharsets.UTF_8);
+          if (kind == BIG_INTEGER) {
+            return new BigInteger(value);
+          }
+          return kind == BIG_DECIMAL ? new BigDecimal(value) : value;
+      }
+    }
+
+    @Override
+    Object value() {
+      return decoded().value();
+    }
+
+    @Override
+    String asString() {
+      return decoded().asString();
+    }
+
+    @Override
+    Number asNumber() {
+      return decoded().asNumber();
+    }
+
+    @Override
+    long asLong() {
+      return decoded().asLong();
+    }
+
+    @Override
+    double asDouble() {
+      return decoded().asDouble();
+    }
+
+    @Override
+    int asInt() {
+      return decoded().asInt();
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.ud.bundle;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.jetbrains.annotations.NotNull;
+
+// A listener subscribed to a value and everything below it, returned by AppContext.subscribe(...). Closing it stops any further calls
+// to the listener, including for changes that are still pending.
+//
+// Changes are not handed to the listener on the thread that made them. They are collected here, coalesced per leaf, and delivered in a
+// batch by a single drain task on the executor. As long as a drain is scheduled or running, further changes just join the next batch, so
+// a burst of updates turns into a handful of calls no matter how large it is, and the writer never waits on a listener.
+public final class ValueSubscription implements AutoCloseable {
+
+  @NotNull
+  private final ChangeDispatcher dispatcher;
+  @NotNull
+  private final ContextValue value;
+  @NotNull
+  private final ValueListener listener;
+  @NotNull
+  private final Executor executor;
+
+  // Guarded by this.
+  private List<ValueChange> pending = new ArrayList<>();
+  private final Map<ContextValue, Integer> pendingIndex = new IdentityHashMap<>();
+  private boolean scheduled;
+  private boolean closed;
+
+  ValueSubscription(
+      @NotNull final ChangeDispatcher dispatcher,
+      @NotNull final ContextValue value,
+      @NotNull final ValueListener listener,
+      @NotNull final Executor executor
+  ) {
+    this.dispatcher = dispatcher;
+    this.value = value;
+    this.listener = listener;
+    this.executor = executor;
+  }
+
+  @NotNull
+  ContextValue value() {
+    return value;
+  }
+
+  void offer(@NotNull final ValueChange change) {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      final var idx = pendingIndex.get(change.getValue());
+      if (idx != null) {
+        pending.set(idx, pending.get(idx).coalesce(change));
+      } else if (change.getVersion() < change.getValue().version()) {
+        // Leaves are updated before their changes are offered, so an update made on another thread in the meantime can be offered first.
+        // That later change has then either been delivered already or is about to be offered, and this one would only roll the
+        // listener's view of the leaf back.
+        return;
+      } else {
+        pendingIndex.put(change.getValue(), pending.size());
+        pending.add(change);
+      }
+      if (scheduled) {
+        return;
+      }
+      scheduled = true;
+    }
+    try {
+      executor.execute(this::drain);
+    } catch (final RuntimeException e) {
+      synchronized (this) {
+        scheduled = false;
+      }
+      throw e;
+    }
+  }
+
+  // Keeps delivering until nothing is pending anymore, so that there is only ever one drain per subscription and calls never overlap.
+  private void drain() {
+    while (true) {
+      final List<ValueChange> batch;
+      synchronized (this) {
+        if (closed || pending.isEmpty()) {
+          scheduled = false;
+          return;
+        }
+        batch = pending;
+        pending = new ArrayList<>();
+        pendingIndex.clear();
+      }
+      var completed = false;
+      try {
+        try {
+          listener.onChanges(batch);
+        } catch (final RuntimeException e) {
+          // A failing listener must not stop later batches from being delivered.
+          final var thread = Thread.currentThread();
+          thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+        completed = true;
+      } finally {
+        if (!completed) {
+          // An Error ends this drain. Changes offered from now on schedule a new one rather than waiting for this one forever.
+          synchronized (this) {
+            scheduled = false;
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      pending.clear();
+      pendingIndex.clear();
+    }
+    dispatcher.remove(this);
+  }
+}
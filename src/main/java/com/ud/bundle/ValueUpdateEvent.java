@@ -0,0 +1,24 @@
+package com.ud.bundle;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight Recorder event for a successful update of a leaf value, through any of update, compareAndUpdate and getAndUpdate. Updates can
+// be frequent, so it is an instant event without a stack trace.
+@Name("com.ud.bundle.ValueUpdate")
+@Label("Value Update")
+@Category("AppContext")
+@Description("A leaf value of an AppContext being updated")
+@StackTrace(false)
+final class ValueUpdateEvent extends Event {
+
+  @Label("Path")
+  String path;
+
+  @Label("Version")
+  long version;
+}
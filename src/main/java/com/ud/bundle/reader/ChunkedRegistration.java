@@ -0,0 +1,54 @@
+package com.ud.bundle.reader;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.ValueBatch;
+import com.ud.bundle.ValuePath;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+
+// Registers the leaves a reader streams out of a document in batches of a bounded size, so that reading keeps needing memory for one
+// batch at most on top of the values themselves rather than for every leaf of the document, while leaves that sit next to each other in
+// the document still get registered the fast way ValueBatch does it.
+//
+// Leaves are registered as the reader gets to them, the same as registering them one by one: when the document turns out to be broken
+// part way through, every leaf before the broken part is registered.
+final class ChunkedRegistration implements BiConsumer<ValuePath, Object> {
+
+  private static final int CHUNK_SIZE = 1024;
+
+  @NotNull
+  private final AppContext ctx;
+  @NotNull
+  private ValueBatch batch;
+
+  private ChunkedRegistration(@NotNull final AppContext ctx) {
+    this.ctx = ctx;
+    this.batch = ctx.batch();
+  }
+
+  // Hands the reader something to pass every leaf to, and registers them into the context as they come.
+  static void register(@NotNull final AppContext ctx, @NotNull final Consumer<BiConsumer<ValuePath, Object>> reader) {
+    final var registration = new ChunkedRegistration(ctx);
+    try {
+      reader.accept(registration);
+    } catch (final RuntimeException e) {
+      try {
+        registration.batch.register();
+      } catch (final RuntimeException registering) {
+        e.addSuppressed(registering);
+      }
+      throw e;
+    }
+    registration.batch.register();
+  }
+
+  @Override
+  public void accept(final ValuePath path, final Object value) {
+    batch.add(path, value);
+    if (batch.size() == CHUNK_SIZE) {
+      batch.register();
+      batch = ctx.batch();
+    }
+  }
+}
@@ -1,116 +1,276 @@
 package com.ud.bundle.reader;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.ud.bundle.AppContext;
+import com.ud.bundle.ValuePath;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.math.BigInteger;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.ArrayDeque;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import org.jetbrains.annotations.Nullable;
 
+// Streams the JSON document token by token and registers the leaves as they are read, a bounded batch at a time, so the only state kept
+// while reading is one frame per open container and the leaves that haven't been registered yet. Nothing about the document as a whole is
+// materialised.
 public class JsonContextValueReader implements ContextValueReader {
 
-  private final BufferedReader reader;
-  private Gson gson;
-  private JsonObject readerJson;
+  // Longest run of digits that is guaranteed to fit into a long.
+  private static final int SAFE_LONG_DIGITS = 18;
+
+  // Re-opens the underlying content for every read after the first. Null when the content came from a caller-provided Reader, which can
+  // only be consumed once.
+  private final Source source;
+  private Reader pending;
 
   public JsonContextValueReader(final String content) {
-    reader = new BufferedReader(new StringReader(content));
+    this(new StringReader(content), () -> new StringReader(content));
   }
 
   public JsonContextValueReader(final File jsonFile) {
-    try {
-      reader = new BufferedReader(new FileReader(jsonFile));
-    } catch (final FileNotFoundException e) {
-      throw new IllegalArgumentException("File was not found.", e);
-    }
+    this(openFile(jsonFile), () -> openFile(jsonFile));
   }
 
   public JsonContextValueReader(final Reader reader) {
-    if (reader instanceof BufferedReader) {
-      this.reader = (BufferedReader) reader;
-    } else {
-      this.reader = new BufferedReader(reader);
-    }
+    this(reader, null);
   }
 
   public JsonContextValueReader(final URL jsonFileUrl) {
-    try {
-      reader = new BufferedReader(new InputStreamReader(jsonFileUrl.openStream()));
-    } catch (final IOException e) {
-      throw new IllegalArgumentException("Failed to open a reader from the URL input stream.", e);
-    }
+    this(openUrl(jsonFileUrl), () -> openUrl(jsonFileUrl));
   }
 
   public JsonContextValueReader(final Path jsonFilePath) {
+    this(jsonFilePath.toFile());
+  }
+
+  private JsonContextValueReader(final Reader reader, final Source source) {
+    if (reader instanceof BufferedReader || reader instanceof StringReader) {
+      this.pending = reader;
+    } else {
+      this.pending = new BufferedReader(reader);
+    }
+    this.source = source;
+  }
+
+  private static Reader openFile(final File jsonFile) {
     try {
-      reader = new BufferedReader(new FileReader(jsonFilePath.toFile()));
+      return new BufferedReader(new InputStreamReader(new FileInputStream(jsonFile), StandardCharsets.UTF_8));
     } catch (final FileNotFoundException e) {
       throw new IllegalArgumentException("File was not found.", e);
     }
   }
 
+  private static Reader openUrl(final URL jsonFileUrl) {
+    try {
+      return new BufferedReader(new InputStreamReader(jsonFileUrl.openStream(), StandardCharsets.UTF_8));
+    } catch (final IOException e) {
+      throw new IllegalArgumentException("Failed to open a reader from the URL input stream.", e);
+    }
+  }
+
   @Override
   public void readInto(final AppContext ctx) {
+    readInto(ctx, null);
+  }
+
+  // Reads the document with every path prefixed by mountPoint, i.e. the root object of the document becomes the object at mountPoint.
+  // Leaves are registered as they are read, see ChunkedRegistration, so a document that fails to parse part way through leaves the
+  // leaves before the failure registered.
+  public void readInto(final AppContext ctx, @Nullable final ValuePath mountPoint) {
+    ChunkedRegistration.register(ctx, leaves -> readLeaves(leaves, mountPoint));
+  }
+
+  // Hands every leaf of the document to the consumer, in document order, without registering anything.
+  void readLeaves(final BiConsumer<ValuePath, Object> leaves, @Nullable final ValuePath mountPoint) {
+    final Reader reader = nextReader();
+    final var event = new JsonIngestEvent();
+    event.begin();
     try {
-      if (readerJson == null) {
-        gson = getGson();
-        final var sb = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-          sb.append(line);
-        }
-        final var tree = gson.fromJson(sb.toString(), JsonObject.class);
-        if (!tree.isJsonObject()) {
-          throw new IllegalStateException("Root level of JSON for an AppContext must be an object.");
-        }
-        readerJson = tree.getAsJsonObject();
+      if (!event.isEnabled()) {
+        read(newJsonReader(reader), leaves, mountPoint);
+        return;
+      }
+      // Characters and leaves are only counted while the event is recorded.
+      final var counting = new CountingReader(reader);
+      read(newJsonReader(counting), (path, value) -> {
+        event.leaves++;
+        leaves.accept(path, value);
+      }, mountPoint);
+      if (event.shouldCommit()) {
+        event.characters = counting.count;
+        event.mountPoint = mountPoint == null ? null : mountPoint.toString();
+        event.commit();
       }
     } catch (final IOException e) {
       throw new IllegalArgumentException("Failed to read the contents of JSON provider.", e);
+    } finally {
+      if (source != null) {
+        try {
+          reader.close();
+        } catch (final IOException ignored) {
+          // Everything has already been read, nothing useful to do with a failure to release the source.
+        }
+      }
     }
+  }
 
-    final var sb = new StringBuilder();
-    final var st = new ArrayDeque<>(readerJson.entrySet());
-    while (!st.isEmpty()) {
-      final var el = st.pop();
-
-      final var currentKey = el.getKey();
-      final var currentValue = el.getValue();
-      if (currentValue.isJsonPrimitive()) {
-        final var p = currentValue.getAsJsonPrimitive();
-        if (p.isString()) {
-          ctx.registerValue(currentKey, p.getAsString());
-        } else if (p.isNumber()) {
-          ctx.registerValue(currentKey, p.getAsNumber());
-        } else if (p.isBoolean()) {
-          throw new UnsupportedOperationException("TODO: Support booleans as values.");
-        }
-      } else if (currentValue.isJsonObject()) {
-        for (final Map.Entry<String, JsonElement> entry : currentValue.getAsJsonObject().entrySet()) {
-          final var key = entry.getKey();
-          sb.append(currentKey).append('.').append(key);
-          st.add(Map.entry(sb.toString(), entry.getValue()));
-          sb.setLength(0);
-        }
-      } else if (currentValue.isJsonArray()) {
-        final var arr = currentValue.getAsJsonArray();
-        for (int i = 0; i < arr.size(); i++) {
-          sb.append(currentKey).append('.').append(i);
-          st.add(Map.entry(sb.toString(), arr.get(i)));
-          sb.setLength(0);
+  private static JsonReader newJsonReader(final Reader reader) {
+    final var in = new JsonReader(reader);
+    // Matches what Gson.fromJson has always done for us.
+    in.setLenient(true);
+    return in;
+  }
+
+  private Reader nextReader() {
+    if (pending != null) {
+      final var reader = pending;
+      pending = null;
+      return reader;
+    }
+    if (source == null) {
+      throw new IllegalStateException("The Reader given to this JsonContextValueReader has already been consumed. This is a programmer error.");
+    }
+    try {
+      return source.open();
+    } catch (final IOException e) {
+      throw new IllegalArgumentException("Failed to re-open the JSON provider.", e);
+    }
+  }
+
+  private static void read(final JsonReader in, final BiConsumer<ValuePath, Object> leaves, final ValuePath mountPoint) throws IOException {
+    if (in.peek() != JsonToken.BEGIN_OBJECT) {
+      throw new IllegalStateException("Root level of JSON for an AppContext must be an object.");
+    }
+    in.beginObject();
+
+    // One frame per open container: the container's own path (null for an unmounted document root, which is the context root) and the
+    // next index for array frames, -1 for object frames. Every value's path is derived from its container's path, so segments are
+    // parsed once as they are read instead of being joined into a String and split apart again by the context.
+    var paths = new ValuePath[8];
+    var indices = new int[8];
+    var depth = 0;
+    paths[0] = mountPoint;
+    indices[0] = -1;
+
+    while (depth >= 0) {
+      if (!in.hasNext()) {
+        if (indices[depth] < 0) {
+          in.endObject();
+        } else {
+          in.endArray();
         }
+        paths[depth] = null;
+        depth--;
+        continue;
+      }
+
+      final var parent = paths[depth];
+      final ValuePath path;
+      if (indices[depth] < 0) {
+        final var name = in.nextName();
+        path = parent == null ? ValuePath.of(name) : parent.child(name);
+      } else {
+        path = parent.child(indices[depth]++);
+      }
+
+      final var token = in.peek();
+      switch (token) {
+        case BEGIN_OBJECT:
+        case BEGIN_ARRAY:
+          if (++depth == paths.length) {
+            paths = Arrays.copyOf(paths, depth * 2);
+            indices = Arrays.copyOf(indices, depth * 2);
+          }
+          paths[depth] = path;
+          if (token == JsonToken.BEGIN_OBJECT) {
+            in.beginObject();
+            indices[depth] = -1;
+          } else {
+            in.beginArray();
+            indices[depth] = 0;
+          }
+          break;
+        case STRING:
+          leaves.accept(path, in.nextString());
+          break;
+        case NUMBER:
+          leaves.accept(path, toNumber(in.nextString()));
+          break;
+        case BOOLEAN:
+          throw Utf8JsonContextValueReader.booleanValue(path);
+        case NULL:
+          in.nextNull();
+          break;
+        default:
+          throw new IllegalStateException("Unexpected token " + token + " at " + path + ". This is a library error.");
+      }
+    }
+  }
+
+  // Narrows every literal to the smallest exact representation: Longs and Doubles end up in the context's primitive leaves, so reading them
+  // back through asLong() or asDouble() never parses the literal again.
+  private static Number toNumber(final String literal) {
+    var integral = true;
+    for (int i = 0; i < literal.length(); i++) {
+      final var c = literal.charAt(i);
+      if (c == '.' || c == 'e' || c == 'E') {
+        integral = false;
+        break;
+      }
+    }
+    if (!integral) {
+      return Double.parseDouble(literal);
+    }
+    final var digits = literal.charAt(0) == '-' ? literal.length() - 1 : literal.length();
+    if (digits <= SAFE_LONG_DIGITS) {
+      return Long.parseLong(literal);
+    }
+    final var big = new BigInteger(literal);
+    return big.bitLength() < Long.SIZE ? (Number) big.longValue() : big;
+  }
+
+  @FunctionalInterface
+  private interface Source {
+
+    Reader open() throws IOException;
+  }
+
+  // Counts the characters read through it. JsonReader reads in large chunks, so this adds next to nothing per character.
+  private static final class CountingReader extends FilterReader {
+
+    private long count;
+
+    private CountingReader(final Reader in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      final var c = super.read();
+      if (c >= 0) {
+        count++;
+      }
+      return c;
+    }
+
+    @Override
+    public int read(final char[] buffer, final int offset, final int length) throws IOException {
+      final var read = super.read(buffer, offset, length);
+      if (read > 0) {
+        count += read;
       }
+      return read;
     }
   }
 }
@@ -0,0 +1,182 @@
+package com.ud.bundle.reader;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.ValuePath;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Keeps the values of a JSON file in sync with an AppContext while the file changes on disk. The watcher owns every path it reads from
+// the file: the first load registers them, and every reload diffs the file against what was loaded last and only touches what changed.
+// Changed leaves are updated in place through ContextValue.update, so existing ContextValue references and subscriptions keep working,
+// leaves that appeared are registered and leaves that disappeared are removed.
+//
+// A file that fails to parse (e.g. because it is caught halfway through being written) leaves the context untouched. A file that parses
+// but clashes with the rest of the context is applied up to the clash, and the next reload carries on from what was actually applied. On
+// the watcher thread such failures go to the thread's uncaught exception handler and the next change to the file is picked up as usual.
+public final class JsonFileWatcher implements AutoCloseable {
+
+  // Editors and deploy tools tend to write a file in several steps, which shows up as a burst of events. Reloading only once the file
+  // has been quiet for a moment avoids parsing it halfway through.
+  private static final long QUIET_PERIOD_MS = 50;
+
+  @NotNull
+  private final AppContext ctx;
+  @NotNull
+  private final Path file;
+  @Nullable
+  private final ValuePath mountPoint;
+  @NotNull
+  private final WatchService watchService;
+  @NotNull
+  private final Thread thread;
+
+  // Every leaf of the file the context holds, as of the last load. Guarded by this.
+  private Map<ValuePath, Object> current = new HashMap<>();
+
+  private JsonFileWatcher(@NotNull final AppContext ctx, @NotNull final Path file, @Nullable final ValuePath mountPoint) throws IOException {
+    this.ctx = ctx;
+    this.file = file.toAbsolutePath();
+    this.mountPoint = mountPoint;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    this.thread = new Thread(this::watch, "json-file-watcher-" + this.file.getFileName());
+    this.thread.setDaemon(true);
+  }
+
+  @NotNull
+  public static JsonFileWatcher watch(@NotNull final AppContext ctx, @NotNull final Path file) {
+    return watch(ctx, file, null);
+  }
+
+  // Loads the file into the context, with every path prefixed by mountPoint when given, and keeps it in sync from then on. Failing to
+  // load the file the first time is thrown from here, since there is nothing to keep in sync yet.
+  @NotNull
+  public static JsonFileWatcher watch(@NotNull final AppContext ctx, @NotNull final Path file, @Nullable final ValuePath mountPoint) {
+    Objects.requireNonNull(ctx, "'ctx' parameter must not be null.");
+    Objects.requireNonNull(file, "'file' parameter must not be null.");
+    final JsonFileWatcher watcher;
+    try {
+      watcher = new JsonFileWatcher(ctx, file, mountPoint);
+      watcher.file.getParent().register(
+          watcher.watchService,
+          StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY
+      );
+    } catch (final IOException e) {
+      throw new IllegalArgumentException("Failed to watch " + file + " for changes.", e);
+    }
+    try {
+      watcher.reload();
+    } catch (final RuntimeException e) {
+      watcher.close();
+      throw e;
+    }
+    watcher.thread.start();
+    return watcher;
+  }
+
+  // Re-reads the file and applies the difference to the context right away, on the calling thread.
+  public synchronized void reload() {
+    final var next = new LinkedHashMap<ValuePath, Object>();
+    new JsonContextValueReader(file).readLeaves(next::put, mountPoint);
+
+    // What the context holds of the file, kept up to date step by step. A file that can't be applied in full (e.g. because a path changed
+    // shape against a value registered elsewhere) leaves behind whatever was applied before the failure, and the next reload has to be
+    // diffed against that rather than against either version of the file.
+    final var applied = new HashMap<ValuePath, Object>(current);
+    try {
+      // Removals go first so that a path that changed shape (e.g. a leaf that became an object) is free again for the additions.
+      for (final ValuePath path : current.keySet()) {
+        if (!next.containsKey(path)) {
+          ctx.removeValue(path);
+          applied.remove(path);
+        }
+      }
+      final var added = ctx.batch();
+      final var addedLeaves = new LinkedHashMap<ValuePath, Object>();
+      for (final Map.Entry<ValuePath, Object> entry : next.entrySet()) {
+        final var previous = current.get(entry.getKey());
+        if (previous == null) {
+          added.add(entry.getKey(), entry.getValue());
+          addedLeaves.put(entry.getKey(), entry.getValue());
+        } else if (!previous.equals(entry.getValue())) {
+          ctx.getValue(entry.getKey()).update(entry.getValue());
+          applied.put(entry.getKey(), entry.getValue());
+        }
+      }
+      try {
+        added.register();
+      } finally {
+        // A batch that fails may have registered the leaves before the one it failed on, or nothing at all (e.g. when one of the paths
+        // is registered by someone else). Only the ones it reports as registered are the watcher's.
+        var remaining = added.registeredCount();
+        for (final Map.Entry<ValuePath, Object> entry : addedLeaves.entrySet()) {
+          if (remaining-- == 0) {
+            break;
+          }
+          applied.put(entry.getKey(), entry.getValue());
+        }
+      }
+    } finally {
+      current = applied;
+    }
+  }
+
+  private void watch() {
+    try {
+      while (true) {
+        final var changed = drainEvents(watchService.take());
+        if (!changed) {
+          continue;
+        }
+        // Wait for the burst to end before reading the file.
+        for (var key = watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS); key != null;
+            key = watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS)) {
+          drainEvents(key);
+        }
+        try {
+          reload();
+        } catch (final RuntimeException e) {
+          thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+      }
+    } catch (final ClosedWatchServiceException | InterruptedException ignored) {
+      // Closed, nothing left to do.
+    }
+  }
+
+  // Returns whether any of the events were for the watched file. Overflows might have been, so they count too.
+  private boolean drainEvents(final WatchKey key) {
+    var changed = false;
+    for (final WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+        changed = true;
+      }
+    }
+    key.reset();
+    return changed;
+  }
+
+  // Stops watching. Values that were loaded stay in the context as they are.
+  @Override
+  public void close() {
+    try {
+      watchService.close();
+    } catch (final IOException ignored) {
+      // Nothing will be watched anymore either way.
+    }
+    thread.interrupt();
+  }
+}
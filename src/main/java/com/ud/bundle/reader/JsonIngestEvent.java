@@ -0,0 +1,26 @@
+package com.ud.bundle.reader;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Flight Recorder event for reading a JSON document, whether it is registered into a context or diffed by a JsonFileWatcher. The event's
+// duration covers parsing and handing every leaf over.
+@Name("com.ud.bundle.JsonIngest")
+@Label("JSON Ingest")
+@Category("AppContext")
+@Description("A JSON document being read into an AppContext")
+final class JsonIngestEvent extends Event {
+
+  @Label("Characters")
+  @Description("Characters read from the document, or bytes when it was read as UTF-8 by Utf8JsonContextValueReader")
+  long characters;
+
+  @Label("Leaves")
+  long leaves;
+
+  @Label("Mount Point")
+  String mountPoint;
+}
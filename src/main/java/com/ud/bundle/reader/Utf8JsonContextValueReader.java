@@ -0,0 +1,464 @@
+package com.ud.bundle.reader;
+
+import com.ud.bundle.AppContext;
+import com.ud.bundle.ValuePath;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Reads a JSON document straight from its UTF-8 bytes, with a tokenizer of its own rather than Gson: bytes are never decoded into a char
+// stream first, numbers are parsed from the bytes without going through a String (unless they don't fit into a long), and keys that are
+// repeated throughout the document (every "host" and "port" of every server) are only turned into a String once per read. Files are
+// memory-mapped, so nothing is copied into a buffer of our own either. Gson isn't loaded at all.
+//
+// Like JsonContextValueReader, leaves are registered as they are read, a bounded batch at a time (see ChunkedRegistration), with one frame
+// per open container on a stack that is reused throughout. Each leaf's ValuePath is derived from its container's with ValuePath.child,
+// which does build the path String of every leaf: the context indexes values by that String, so registering needs it either way. Only
+// standard JSON is accepted, none of the lenient extensions the Gson based reader allows.
+public class Utf8JsonContextValueReader implements ContextValueReader {
+
+  private static final int SAFE_LONG_DIGITS = 18;
+  // Keys up to this many bytes are looked up in the key cache.
+  private static final int CACHED_KEY_LENGTH = 32;
+  private static final int KEY_CACHE_SIZE = 256;
+
+  @NotNull
+  private final Source source;
+
+  // The bytes between the buffer's position and its limit. Reads don't move the position, so the same buffer can be read any number of
+  // times as long as its contents don't change.
+  public Utf8JsonContextValueReader(@NotNull final ByteBuffer buffer) {
+    Objects.requireNonNull(buffer, "'buffer' parameter must not be null.");
+    this.source = buffer::slice;
+  }
+
+  // Maps the whole channel for every read. The channel is left open.
+  public Utf8JsonContextValueReader(@NotNull final FileChannel channel) {
+    Objects.requireNonNull(channel, "'channel' parameter must not be null.");
+    this.source = () -> channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+  }
+
+  public Utf8JsonContextValueReader(@NotNull final Path jsonFilePath) {
+    Objects.requireNonNull(jsonFilePath, "'jsonFilePath' parameter must not be null.");
+    this.source = () -> {
+      // The mapping stays valid after the channel is closed.
+      try (final var channel = FileChannel.open(jsonFilePath, StandardOpenOption.READ)) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    };
+  }
+
+  @Override
+  public void readInto(final AppContext ctx) {
+    readInto(ctx, null);
+  }
+
+  // Reads the document with every path prefixed by mountPoint, i.e. the root object of the document becomes the object at mountPoint.
+  // Leaves are registered as they are read, so a document that fails to parse part way through leaves the leaves before the failure
+  // registered.
+  public void readInto(final AppContext ctx, @Nullable final ValuePath mountPoint) {
+    ChunkedRegistration.register(ctx, leaves -> readLeaves(leaves, mountPoint));
+  }
+
+  // Hands every leaf of the document to the consumer, in document order, without registering anything.
+  void readLeaves(final BiConsumer<ValuePath, Object> leaves, @Nullable final ValuePath mountPoint) {
+    final ByteBuffer bytes;
+    try {
+      bytes = source.open();
+    } catch (final IOException e) {
+      throw new IllegalArgumentException("Failed to open the JSON provider.", e);
+    } catch (final UncheckedIOException e) {
+      throw new IllegalArgumentException("Failed to open the JSON provider.", e.getCause());
+    }
+    final var event = new JsonIngestEvent();
+    event.begin();
+    if (!event.isEnabled()) {
+      new Tokenizer(bytes).read(leaves, mountPoint);
+      return;
+    }
+    new Tokenizer(bytes).read((path, value) -> {
+      event.leaves++;
+      leaves.accept(path, value);
+    }, mountPoint);
+    if (event.shouldCommit()) {
+      event.characters = bytes.remaining();
+      event.mountPoint = mountPoint == null ? null : mountPoint.toString();
+      event.commit();
+    }
+  }
+
+  // An AppContext has no boolean values to register them as. JsonContextValueReader rejects them with this as well, so both readers fail
+  // the same way on the same document. Lives here rather than there so that this reader keeps not loading Gson.
+  static IllegalArgumentException booleanValue(final ValuePath path) {
+    return new IllegalArgumentException("Boolean at '" + path + "' is not supported, an AppContext only holds strings and numbers.");
+  }
+
+  @FunctionalInterface
+  private interface Source {
+
+    ByteBuffer open() throws IOException;
+  }
+
+  // Everything needed for a single read. Reads through absolute gets, so the buffer itself is never touched.
+  private static final class Tokenizer {
+
+    @NotNull
+    private final ByteBuffer in;
+    private final int end;
+    private int pos;
+    // Decoded characters of the string being read, reused for every string.
+    private char[] chars = new char[64];
+    // Keys by the hash of their bytes. A slot only ever holds one key, a colliding key replaces it.
+    private final String[] keys = new String[KEY_CACHE_SIZE];
+
+    private Tokenizer(@NotNull final ByteBuffer in) {
+      this.in = in;
+      this.pos = in.position();
+      this.end = in.limit();
+    }
+
+    private void read(final BiConsumer<ValuePath, Object> leaves, @Nullable final ValuePath mountPoint) {
+      skipByteOrderMark();
+      if (skipWhitespace() != '{') {
+        throw new IllegalStateException("Root level of JSON for an AppContext must be an object.");
+      }
+      pos++;
+
+      // The same frames as JsonContextValueReader: the path of every open container (null for an unmounted document root) and the next
+      // index for array frames, -1 for object frames.
+      var paths = new ValuePath[8];
+      var indices = new int[8];
+      var depth = 0;
+      paths[0] = mountPoint;
+      indices[0] = -1;
+      // Whether the container on top of the stack has had a value yet, i.e. whether the next one has to be preceded by a comma.
+      var first = true;
+
+      while (depth >= 0) {
+        final var isObject = indices[depth] < 0;
+        var c = skipWhitespace();
+        if (c == (isObject ? '}' : ']')) {
+          pos++;
+          paths[depth] = null;
+          depth--;
+          first = false;
+          continue;
+        }
+        if (!first) {
+          expect(',');
+          c = skipWhitespace();
+        }
+        first = false;
+
+        final var parent = paths[depth];
+        final ValuePath path;
+        if (isObject) {
+          if (c != '"') {
+            throw malformed("expected a key");
+          }
+          pos++;
+          final var key = readKey();
+          if (skipWhitespace() != ':') {
+            throw malformed("expected ':'");
+          }
+          pos++;
+          path = parent == null ? ValuePath.of(key) : parent.child(key);
+          c = skipWhitespace();
+        } else {
+          path = parent.child(indices[depth]++);
+        }
+
+        switch (c) {
+          case '{':
+          case '[':
+            pos++;
+            if (++depth == paths.length) {
+              paths = Arrays.copyOf(paths, depth * 2);
+              indices = Arrays.copyOf(indices, depth * 2);
+            }
+            paths[depth] = path;
+            indices[depth] = c == '{' ? -1 : 0;
+            first = true;
+            break;
+          case '"':
+            pos++;
+            leaves.accept(path, readString());
+            break;
+          case 't':
+          case 'f':
+            throw booleanValue(path);
+          case 'n':
+            literal("null");
+            break;
+          default:
+            if (c == '-' || (c >= '0' && c <= '9')) {
+              leaves.accept(path, readNumber());
+            } else {
+              throw malformed("expected a value");
+            }
+        }
+      }
+      if (skipWhitespace() != -1) {
+        throw malformed("expected the end of the document");
+      }
+    }
+
+    private void skipByteOrderMark() {
+      if (end - pos >= 3 && (in.get(pos) & 0xFF) == 0xEF && (in.get(pos + 1) & 0xFF) == 0xBB && (in.get(pos + 2) & 0xFF) == 0xBF) {
+        pos += 3;
+      }
+    }
+
+    // Returns the next byte that isn't whitespace without consuming it, -1 at the end of the document.
+    private int skipWhitespace() {
+      while (pos < end) {
+        final var b = in.get(pos);
+        if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+          return b;
+        }
+        pos++;
+      }
+      return -1;
+    }
+
+    private void expect(final char c) {
+      if (skipWhitespace() != c) {
+        throw malformed("expected '" + c + "'");
+      }
+      pos++;
+    }
+
+    private void literal(final String literal) {
+      for (int i = 0; i < literal.length(); i++) {
+        if (pos >= end || in.get(pos) != literal.charAt(i)) {
+          throw malformed("expected " + literal);
+        }
+        pos++;
+      }
+    }
+
+    // Keys without escapes or non-ASCII bytes are looked up in the cache by their bytes first, anything else is read like any string.
+    private String readKey() {
+      final var start = pos;
+      var hash = 0;
+      var i = start;
+      while (i < end) {
+        final var b = in.get(i);
+        if (b == '"') {
+          break;
+        }
+        if (b == '\\' || b < 0x20) {
+          return readString();
+        }
+        hash = 31 * hash + b;
+        i++;
+      }
+      final var length = i - start;
+      if (i == end || length > CACHED_KEY_LENGTH) {
+        return readString();
+      }
+      final var slot = (hash ^ (hash >>> 8)) & (KEY_CACHE_SIZE - 1);
+      final var cached = keys[slot];
+      if (cached != null && matches(cached, start, length)) {
+        pos = i + 1;
+        return cached;
+      }
+      final var key = readString();
+      keys[slot] = key;
+      return key;
+    }
+
+    private boolean matches(final String key, final int start, final int length) {
+      if (key.length() != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (key.charAt(i) != in.get(start + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // Reads the rest of a string whose opening quote has been consumed, decoding UTF-8 and escapes into the character buffer.
+    private String readString() {
+      var length = 0;
+      while (true) {
+        if (pos >= end) {
+          throw malformed("unterminated string");
+        }
+        final var b = in.get(pos++);
+        if (b == '"') {
+          return new String(chars, 0, length);
+        }
+        if (length + 2 > chars.length) {
+          chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        if (b >= 0x20) {
+          if (b == '\\') {
+            chars[length++] = readEscape();
+          } else {
+            chars[length++] = (char) b;
+          }
+        } else if (b >= 0) {
+          throw malformed("control character in string");
+        } else {
+          length = decode(b, length);
+        }
+      }
+    }
+
+    private char readEscape() {
+      if (pos >= end) {
+        throw malformed("unterminated string");
+      }
+      final var b = in.get(pos++);
+      switch (b) {
+        case '"':
+          return '"';
+        case '\\':
+          return '\\';
+        case '/':
+          return '/';
+        case 'b':
+          return '\b';
+        case 'f':
+          return '\f';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 't':
+          return '\t';
+        case 'u':
+          if (end - pos < 4) {
+            throw malformed("unterminated escape");
+          }
+          var c = 0;
+          for (int i = 0; i < 4; i++) {
+            final var digit = Character.digit(in.get(pos++), 16);
+            if (digit < 0) {
+              throw malformed("invalid unicode escape");
+            }
+            c = c << 4 | digit;
+          }
+          // Surrogate pairs come as two escapes, each of which is one char.
+          return (char) c;
+        default:
+          throw malformed("invalid escape");
+      }
+    }
+
+    // Decodes a multi-byte sequence starting with lead into the character buffer at length, returning the new length.
+    private int decode(final byte lead, final int length) {
+      final int continuations;
+      int codePoint;
+      if ((lead & 0xE0) == 0xC0) {
+        continuations = 1;
+        codePoint = lead & 0x1F;
+      } else if ((lead & 0xF0) == 0xE0) {
+        continuations = 2;
+        codePoint = lead & 0x0F;
+      } else if ((lead & 0xF8) == 0xF0) {
+        continuations = 3;
+        codePoint = lead & 0x07;
+      } else {
+        throw malformed("invalid UTF-8");
+      }
+      if (end - pos < continuations) {
+        throw malformed("invalid UTF-8");
+      }
+      for (int i = 0; i < continuations; i++) {
+        final var b = in.get(pos++);
+        if ((b & 0xC0) != 0x80) {
+          throw malformed("invalid UTF-8");
+        }
+        codePoint = codePoint << 6 | (b & 0x3F);
+      }
+      // Overlong encodings, surrogates and anything past the last code point aren't valid UTF-8.
+      final var min = continuations == 1 ? 0x80 : continuations == 2 ? 0x800 : 0x10000;
+      if (codePoint < min || codePoint > Character.MAX_CODE_POINT || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+        throw malformed("invalid UTF-8");
+      }
+      return length + Character.toChars(codePoint, chars, length);
+    }
+
+    // Narrows every literal to the smallest exact representation, the same way JsonContextValueReader does. Integers that fit are
+    // accumulated straight from the bytes.
+    private Number readNumber() {
+      final var start = pos;
+      final var negative = in.get(pos) == '-';
+      if (negative) {
+        pos++;
+      }
+      final var digitsStart = pos;
+      var value = 0L;
+      while (pos < end && isDigit(in.get(pos))) {
+        value = value * 10 + (in.get(pos) - '0');
+        pos++;
+      }
+      final var digits = pos - digitsStart;
+      if (digits == 0 || (digits > 1 && in.get(digitsStart) == '0')) {
+        throw malformed("invalid number");
+      }
+      var integral = true;
+      if (pos < end && in.get(pos) == '.') {
+        integral = false;
+        pos++;
+        requireDigits();
+      }
+      if (pos < end && (in.get(pos) == 'e' || in.get(pos) == 'E')) {
+        integral = false;
+        pos++;
+        if (pos < end && (in.get(pos) == '+' || in.get(pos) == '-')) {
+          pos++;
+        }
+        requireDigits();
+      }
+      if (integral && digits <= SAFE_LONG_DIGITS) {
+        return negative ? -value : value;
+      }
+      final var literal = ascii(start, pos);
+      if (!integral) {
+        return Double.parseDouble(literal);
+      }
+      final var big = new BigInteger(literal);
+      return big.bitLength() < Long.SIZE ? (Number) big.longValue() : big;
+    }
+
+    private void requireDigits() {
+      final var start = pos;
+      while (pos < end && isDigit(in.get(pos))) {
+        pos++;
+      }
+      if (pos == start) {
+        throw malformed("invalid number");
+      }
+    }
+
+    private static boolean isDigit(final byte b) {
+      return b >= '0' && b <= '9';
+    }
+
+    private String ascii(final int from, final int to) {
+      final var ascii = new char[to - from];
+      for (int i = from; i < to; i++) {
+        ascii[i - from] = (char) in.get(i);
+      }
+      return new String(ascii);
+    }
+
+    private IllegalArgumentException malformed(final String problem) {
+      return new IllegalArgumentException("Malformed JSON at byte " + (pos - in.position()) + ": " + problem + ".");
+    }
+  }
+}
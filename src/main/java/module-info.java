@@ -1,6 +1,8 @@
 module com.ud.bundle {
   exports com.ud.bundle;
+  exports com.ud.bundle.reader;
 
   requires org.jetbrains.annotations;
   requires gson;
+  requires jdk.jfr;
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+public class AccessMetricsTest {
+
+  @Test
+  void metricsHaveToBeEnabled() {
+    final var ctx = new AppContext();
+    assertThrows(IllegalStateException.class, ctx::metrics);
+    assertThrows(IllegalArgumentException.class, () -> ctx.enableMetrics(0));
+    ctx.enableMetrics(1);
+    ctx.disableMetrics();
+    assertThrows(IllegalStateException.class, ctx::metrics);
+  }
+
+  @Test
+  void countsValueHitsAndMisses() {
+    final var ctx = new AppContext();
+    ctx.registerValue("server.host", "localhost");
+    ctx.registerValue("server.port", 8080);
+    ctx.registerValue("server.tls", "on", Env.PROD);
+    ctx.enableMetrics(1);
+
+    ctx.getValue("server.host");
+    ctx.getValue("Server.Host");
+    ctx.getValue(ValuePath.of("server.tls"), Env.PROD);
+    ctx.getValue("server.port", Env.TEST);
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("server.timeout"));
+
+    final var metrics = ctx.metrics();
+    assertEquals(2, metrics.getValues().get("server.host").getHits());
+    assertEquals(1, metrics.getValues().get("server.tls[PROD]").getHits());
+    assertEquals(1, metrics.getValues().get("server.port[TEST]").getMisses());
+    assertNull(metrics.getValues().get("server.timeout"));
+    assertEquals(1, metrics.getUnregisteredValueMisses());
+    assertEquals(List.of("server", "server.port"), metrics.getUnreadValues());
+  }
+
+  @Test
+  void countsBundleHitsAndMisses() {
+    final var ctx = new AppContext();
+    ctx.registerBundle(new Read());
+    ctx.registerBundle(new Unread());
+    ctx.registerBundle(new Read(), Env.PROD);
+    ctx.enableMetrics(1);
+
+    ctx.getBundle(Read.class);
+    ctx.useBundle(Read.class, Env.PROD, b -> { });
+    assertThrows(IllegalArgumentException.class, () -> ctx.getBundle(Read.class, Env.TEST));
+
+    final var metrics = ctx.metrics();
+    assertEquals(1, metrics.getBundles().get(Read.class.getName()).getHits());
+    assertEquals(1, metrics.getBundles().get(Read.class.getName() + "[PROD]").getHits());
+    assertEquals(1, metrics.getBundles().get(Read.class.getName() + "[TEST]").getMisses());
+    assertEquals(List.of(Unread.class.getName()), metrics.getUnreadBundles());
+  }
+
+  @Test
+  void sampledCountsAreScaledUp() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a", 1);
+    ctx.enableMetrics(8);
+    for (int i = 0; i < 80_000; i++) {
+      ctx.getValue("a");
+    }
+    final var hits = ctx.metrics().getValues().get("a").getHits();
+    assertEquals(0, hits % 8);
+    // Expected to be 80k, the chance of being off by more than 10% is negligible.
+    assertTrue(hits > 72_000 && hits < 88_000, "hits = " + hits);
+  }
+
+  private enum Env {
+    PROD,
+    TEST
+  }
+
+  private static final class Read implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+  }
+
+  private static final class Unread implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+  }
+}
@@ -3,12 +3,21 @@ package com.ud.bundle;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 
@@ -50,6 +59,23 @@ public class AppContextBundleTest {
     assertNotNull(retrievedThree);
   }
 
+  @Test
+  void registerBundlesQualifiedByDifferentEnumTypes() {
+    final var ctx = new AppContext();
+    final var one = new TestBundle();
+    final var other = new TestBundle();
+    final var unqualified = new TestBundle();
+    ctx.registerBundle(one, TestDiscriminator.ONE);
+    ctx.registerBundle(other, OtherDiscriminator.ONE);
+    ctx.registerBundle(unqualified);
+    assertSame(one, ctx.getBundle(TestBundle.class, TestDiscriminator.ONE));
+    assertSame(other, ctx.getBundle(TestBundle.class, OtherDiscriminator.ONE));
+    assertSame(unqualified, ctx.getBundle(TestBundle.class));
+    assertFalse(ctx.isBundleRegistered(TestBundle.class, TestDiscriminator.TWO));
+    assertFalse(ctx.isBundleRegistered(TestBundle.class, OtherDiscriminator.TWO));
+    assertThrows(IllegalArgumentException.class, () -> ctx.registerBundle(new TestBundle(), OtherDiscriminator.ONE));
+  }
+
   @Test
   void registerAndUseBundle() {
     final var ctx = new AppContext();
@@ -138,6 +164,265 @@ public class AppContextBundleTest {
     assertEquals(TestBundle.class, provided.get(0).getClass());
   }
 
+  @Test
+  void registerAllAppliesRequiredBundlesFirst() {
+    final var ctx = new AppContext();
+    final var dependent = new TestBundleWithRequires();
+    ctx.registerAll(List.of(QualifiedBundle.create(dependent), QualifiedBundle.create(new TestBundle())));
+    assertTrue(dependent.gotRequiredBundles);
+    assertNotNull(ctx.getBundle(TestBundle.class));
+  }
+
+  @Test
+  void registerAllAcceptsAlreadyRegisteredRequirements() {
+    final var ctx = new AppContext();
+    ctx.registerBundle(new TestBundle());
+    final var dependent = new TestBundleWithRequires();
+    ctx.registerAll(List.of(QualifiedBundle.create(dependent)));
+    assertTrue(dependent.gotRequiredBundles);
+  }
+
+  @Test
+  void registerAllAppliesIndependentBundlesConcurrently() {
+    final var ctx = new AppContext();
+    final var barrier = new CyclicBarrier(2);
+    final var executor = Executors.newFixedThreadPool(2);
+    try {
+      ctx.registerAll(List.of(
+          QualifiedBundle.create(new BarrierBundle(barrier), TestDiscriminator.ONE),
+          QualifiedBundle.create(new BarrierBundle(barrier), TestDiscriminator.TWO)
+      ), executor);
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(ctx.isBundleRegistered(BarrierBundle.class, TestDiscriminator.ONE));
+    assertTrue(ctx.isBundleRegistered(BarrierBundle.class, TestDiscriminator.TWO));
+  }
+
+  @Test
+  void registerAllTracksProvidedBundlesPerProvider() {
+    final var ctx = new AppContext();
+    final var executor = Executors.newFixedThreadPool(4);
+    try {
+      ctx.registerAll(List.of(
+          QualifiedBundle.create(new TestBundleThatProvides()),
+          QualifiedBundle.create(new QualifiedProvider(TestDiscriminator.ONE), TestDiscriminator.ONE),
+          QualifiedBundle.create(new QualifiedProvider(TestDiscriminator.TWO), TestDiscriminator.TWO),
+          QualifiedBundle.create(new QualifiedProvider(TestDiscriminator.THREE), TestDiscriminator.THREE)
+      ), executor);
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(List.of(ctx.getBundle(TestBundleThatProvides2.class)), ctx.providedBy(TestBundleThatProvides.class));
+    assertEquals(List.of(ctx.getBundle(TestBundle.class)), ctx.providedBy(TestBundleThatProvides2.class));
+    for (final TestDiscriminator qualifier : TestDiscriminator.values()) {
+      assertEquals(List.of(ctx.getBundle(TestBundle2.class, qualifier)), ctx.providedBy(QualifiedProvider.class, qualifier));
+    }
+  }
+
+  @Test
+  void registerAllThrowsOnCycle() {
+    final var ctx = new AppContext();
+    final var exception = assertThrows(IllegalStateException.class, () -> ctx.registerAll(List.of(
+        QualifiedBundle.create(new CyclicBundle(TestDiscriminator.TWO), TestDiscriminator.ONE),
+        QualifiedBundle.create(new CyclicBundle(TestDiscriminator.ONE), TestDiscriminator.TWO)
+    )));
+    assertTrue(exception.getMessage().contains("cycle"));
+    assertFalse(ctx.isBundleRegistered(CyclicBundle.class, TestDiscriminator.ONE));
+  }
+
+  @Test
+  void registerAllThrowsOnMissingRequirement() {
+    final var ctx = new AppContext();
+    assertThrows(IllegalStateException.class, () -> ctx.registerAll(List.of(QualifiedBundle.create(new TestBundleWithRequires()))));
+    assertFalse(ctx.isBundleRegistered(TestBundleWithRequires.class));
+  }
+
+  @Test
+  void registerAllThrowsOnDuplicate() {
+    final var ctx = new AppContext();
+    ctx.registerBundle(new TestBundle());
+    assertThrows(IllegalArgumentException.class, () -> ctx.registerAll(List.of(QualifiedBundle.create(new TestBundle()))));
+    assertThrows(IllegalArgumentException.class, () -> ctx.registerAll(List.of(
+        QualifiedBundle.create(new TestBundle2()),
+        QualifiedBundle.create(new TestBundle2())
+    )));
+  }
+
+  @Test
+  void registerAllRethrowsApplyFailureAndSkipsDependents() {
+    final var ctx = new AppContext();
+    final var failure = new IllegalStateException("boom");
+    final var dependent = new RequiresFailingBundle();
+    final var thrown = assertThrows(IllegalStateException.class, () -> ctx.registerAll(List.of(
+        QualifiedBundle.create(new FailingBundle(failure)),
+        QualifiedBundle.create(dependent),
+        QualifiedBundle.create(new TestBundle())
+    )));
+    assertEquals(failure, thrown);
+    assertFalse(dependent.applied);
+    assertFalse(ctx.isBundleRegistered(RequiresFailingBundle.class));
+    assertTrue(ctx.isBundleRegistered(TestBundle.class));
+  }
+
+  @Test
+  void lazyBundleIsOnlyCreatedOnFirstGet() {
+    final var ctx = new AppContext();
+    final var created = new AtomicInteger();
+    ctx.registerLazyBundle(TestBundle.class, () -> {
+      created.incrementAndGet();
+      return new TestBundle();
+    });
+    assertTrue(ctx.isBundleRegistered(TestBundle.class));
+    assertEquals(0, created.get());
+    final var first = ctx.getBundle(TestBundle.class);
+    assertSame(first, ctx.getBundle(TestBundle.class));
+    assertEquals(1, created.get());
+  }
+
+  @Test
+  void lazyBundleIsAppliedWithItsRequiredBundles() {
+    final var ctx = new AppContext();
+    ctx.registerLazyBundle(TestBundleWithRequires.class, TestBundleWithRequires::new);
+    ctx.registerBundle(new TestBundle());
+    final var bundle = ctx.getBundle(TestBundleWithRequires.class);
+    assertTrue(bundle.gotRequiredBundles);
+  }
+
+  @Test
+  void lazyBundleSatisfiesRequirementsAndIsInitialisedByDependent() {
+    final var ctx = new AppContext();
+    final var created = new AtomicInteger();
+    ctx.registerLazyBundle(TestBundle.class, () -> {
+      created.incrementAndGet();
+      return new TestBundle();
+    });
+    final var dependent = new TestBundleWithRequires();
+    ctx.registerBundle(dependent);
+    assertTrue(dependent.gotRequiredBundles);
+    assertEquals(1, created.get());
+  }
+
+  @Test
+  void lazyBundleIsInitialisedOnceUnderConcurrentAccess() throws Exception {
+    final var ctx = new AppContext();
+    final var created = new AtomicInteger();
+    final var applied = new AtomicInteger();
+    ctx.registerLazyBundle(CountingBundle.class, TestDiscriminator.ONE, () -> {
+      created.incrementAndGet();
+      return new CountingBundle(applied);
+    });
+
+    final var threads = 16;
+    final var start = new CountDownLatch(1);
+    final var executor = Executors.newFixedThreadPool(threads);
+    try {
+      final var results = new ArrayList<Future<CountingBundle>>();
+      for (int i = 0; i < threads; i++) {
+        results.add(executor.submit(() -> {
+          start.await();
+          return ctx.getBundle(CountingBundle.class, TestDiscriminator.ONE);
+        }));
+      }
+      start.countDown();
+      final var first = results.get(0).get(5, TimeUnit.SECONDS);
+      for (final Future<CountingBundle> result : results) {
+        assertSame(first, result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, created.get());
+    assertEquals(1, applied.get());
+  }
+
+  @Test
+  void lazyBundleApplyCanWaitOnAnotherThreadRetrievingIt() throws Exception {
+    final var ctx = new AppContext();
+    final var executor = Executors.newSingleThreadExecutor();
+    try {
+      ctx.registerLazyBundle(HandOffBundle.class, () -> new HandOffBundle(executor));
+      final var bundle = ctx.getBundle(HandOffBundle.class);
+      assertSame(bundle, executor.submit(() -> ctx.getBundle(HandOffBundle.class)).get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void lazyBundleRegisteredByProviderIsTrackedOnceInitialised() {
+    final var ctx = new AppContext();
+    ctx.registerBundle(new LazyProvider());
+    assertThrows(IllegalArgumentException.class, () -> ctx.providedBy(LazyProvider.class));
+    final var lazy = ctx.getBundle(TestBundleThatProvides2.class);
+    assertEquals(List.of(lazy), ctx.providedBy(LazyProvider.class));
+    assertNotNull(ctx.getBundle(TestBundle.class));
+    assertEquals(1, ctx.providedBy(TestBundleThatProvides2.class).size());
+  }
+
+  @Test
+  void lazyBundleFailureIsRememberedAndSupplierNotCalledAgain() {
+    final var ctx = new AppContext();
+    final var created = new AtomicInteger();
+    ctx.registerLazyBundle(TestBundle.class, () -> {
+      created.incrementAndGet();
+      throw new IllegalStateException("boom");
+    });
+    assertThrows(IllegalStateException.class, () -> ctx.getBundle(TestBundle.class));
+    assertThrows(IllegalStateException.class, () -> ctx.getBundle(TestBundle.class));
+    assertEquals(1, created.get());
+  }
+
+  @Test
+  void manyBundleClassesCanBeRegisteredAndLookedUp() {
+    final var ctx = new AppContext();
+    final List<Class<? extends ContextBundle>> classes = List.of(TestBundle.class, TestBundle2.class, TestBundleWithRequires.class,
+        TestBundleThatProvides.class, TestBundleThatProvides2.class, BarrierBundle.class, QualifiedProvider.class, CyclicBundle.class,
+        FailingBundle.class, RequiresFailingBundle.class, CountingBundle.class);
+    for (final Class<? extends ContextBundle> clazz : classes) {
+      assertFalse(ctx.isBundleRegistered(clazz));
+      registerUnused(ctx, clazz);
+    }
+    for (final Class<? extends ContextBundle> clazz : classes) {
+      assertTrue(ctx.isBundleRegistered(clazz));
+      assertFalse(ctx.isBundleRegistered(clazz, TestDiscriminator.ONE));
+    }
+    assertFalse(ctx.isBundleRegistered(LazyProvider.class));
+  }
+
+  private static <T extends ContextBundle> void registerUnused(final AppContext ctx, final Class<T> clazz) {
+    ctx.registerLazyBundle(clazz, () -> {
+      throw new IllegalStateException("Not used.");
+    });
+  }
+
+  @Test
+  void lazyBundleErrorIsRememberedAsTheFailure() {
+    final var ctx = new AppContext();
+    final var error = new AssertionError("boom");
+    ctx.registerLazyBundle(TestBundle.class, () -> {
+      throw error;
+    });
+    assertSame(error, assertThrows(AssertionError.class, () -> ctx.getBundle(TestBundle.class)));
+    final var e = assertThrows(IllegalStateException.class, () -> ctx.getBundle(TestBundle.class));
+    assertSame(error, e.getCause());
+  }
+
+  @Test
+  void lazyBundleRegisteredTwiceThrowsException() {
+    final var ctx = new AppContext();
+    ctx.registerBundle(new TestBundle());
+    assertThrows(IllegalArgumentException.class, () -> ctx.registerLazyBundle(TestBundle.class, TestBundle::new));
+  }
+
+  @Test
+  void lazyBundleIsResolvedThroughFrozenContext() {
+    final var ctx = new AppContext();
+    ctx.registerLazyBundle(TestBundle.class, TestBundle::new);
+    final var frozen = ctx.freeze();
+    assertSame(ctx.getBundle(TestBundle.class), frozen.getBundle(TestBundle.class));
+  }
+
   private static final class TestBundle implements ContextBundle {
 
     @Override
@@ -145,6 +430,25 @@ public class AppContextBundleTest {
     }
   }
 
+  private static final class HandOffBundle implements ContextBundle {
+
+    private final ExecutorService executor;
+
+    private HandOffBundle(final ExecutorService executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      try {
+        // The other thread gets the bundle that is applying rather than waiting for this apply to finish.
+        assertSame(this, executor.submit(() -> ctx.getBundle(HandOffBundle.class)).get(5, TimeUnit.SECONDS));
+      } catch (final Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
   private static final class TestBundle2 implements ContextBundle {
 
     @Override
@@ -187,9 +491,118 @@ public class AppContextBundleTest {
     }
   }
 
+  private static final class BarrierBundle implements ContextBundle {
+
+    private final CyclicBarrier barrier;
+
+    private BarrierBundle(final CyclicBarrier barrier) {
+      this.barrier = barrier;
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      try {
+        // Only returns if the other bundle is being applied at the same time.
+        barrier.await(5, TimeUnit.SECONDS);
+      } catch (final Exception e) {
+        throw new IllegalStateException("Bundles were not applied concurrently.", e);
+      }
+    }
+  }
+
+  private static final class QualifiedProvider implements ContextBundle {
+
+    private final TestDiscriminator qualifier;
+
+    private QualifiedProvider(final TestDiscriminator qualifier) {
+      this.qualifier = qualifier;
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      ctx.registerBundle(new TestBundle2(), qualifier);
+    }
+  }
+
+  private static final class CyclicBundle implements ContextBundle {
+
+    private final TestDiscriminator requires;
+
+    private CyclicBundle(final TestDiscriminator requires) {
+      this.requires = requires;
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+
+    @Override
+    @NotNull
+    public List<QualifiedBundle<? extends ContextBundle>> requiredBundles() {
+      return Collections.singletonList(QualifiedBundle.create(CyclicBundle.class, requires));
+    }
+  }
+
+  private static final class FailingBundle implements ContextBundle {
+
+    private final RuntimeException failure;
+
+    private FailingBundle(final RuntimeException failure) {
+      this.failure = failure;
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      throw failure;
+    }
+  }
+
+  private static final class RequiresFailingBundle implements ContextBundle {
+
+    boolean applied = false;
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      applied = true;
+    }
+
+    @Override
+    @NotNull
+    public List<QualifiedBundle<? extends ContextBundle>> requiredBundles() {
+      return Collections.singletonList(QualifiedBundle.create(FailingBundle.class));
+    }
+  }
+
+  private static final class CountingBundle implements ContextBundle {
+
+    private final AtomicInteger applied;
+
+    private CountingBundle(final AtomicInteger applied) {
+      this.applied = applied;
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      applied.incrementAndGet();
+    }
+  }
+
+  private static final class LazyProvider implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      ctx.registerLazyBundle(TestBundleThatProvides2.class, TestBundleThatProvides2::new);
+    }
+  }
+
   private enum TestDiscriminator {
     ONE,
     TWO,
     THREE
   }
+
+  private enum OtherDiscriminator {
+    ONE,
+    TWO
+  }
 }
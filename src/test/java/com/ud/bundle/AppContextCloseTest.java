@@ -0,0 +1,283 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+public class AppContextCloseTest {
+
+  @Test
+  public void bundlesCloseAfterTheBundlesThatRequireThem() {
+    final var closed = new CopyOnWriteArrayList<String>();
+    final var ctx = new AppContext();
+    ctx.registerBundle(new Pool(closed));
+    ctx.registerBundle(new Repository(closed));
+    ctx.registerBundle(new Service(closed));
+    ctx.close();
+    assertEquals(List.of("service", "repository", "pool"), closed);
+  }
+
+  @Test
+  public void providersCloseAfterTheBundlesTheyProvided() {
+    final var closed = new CopyOnWriteArrayList<String>();
+    final var ctx = new AppContext();
+    ctx.registerBundle(new ContextBundle() {
+      @Override
+      public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+        ctx.registerBundle(new Pool(closed));
+      }
+
+      @Override
+      public void close() {
+        closed.add("provider");
+      }
+    });
+    ctx.close();
+    assertEquals(List.of("pool", "provider"), closed);
+  }
+
+  @Test
+  public void independentBundlesCloseConcurrently() throws Exception {
+    final var barrier = new CyclicBarrier(2);
+    final var ctx = new AppContext();
+    ctx.registerBundle(new BarrierBundle(barrier));
+    ctx.registerBundle(new BarrierBundle(barrier), Qualifier.ONE);
+    final var executor = Executors.newFixedThreadPool(2);
+    try {
+      // Both closes only return once the other one has started too.
+      ctx.close(executor, Duration.ofSeconds(5));
+    } finally {
+      executor.shutdown();
+    }
+    assertFalse(barrier.isBroken());
+  }
+
+  @Test
+  public void slowCloseTimesOutWithoutHoldingUpTheRest() throws Exception {
+    final var closed = new CopyOnWriteArrayList<String>();
+    final var release = new CountDownLatch(1);
+    final var ctx = new AppContext();
+    ctx.registerBundle(new Pool(closed));
+    ctx.registerBundle(new Repository(closed) {
+      @Override
+      public void close() {
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    final var executor = Executors.newFixedThreadPool(2);
+    try {
+      final var e = assertThrows(IllegalStateException.class, () -> ctx.close(executor, Duration.ofMillis(50)));
+      assertTrue(e.getMessage().contains("did not close within"));
+      assertEquals(List.of("pool"), closed);
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void timeoutOnlyStartsOnceTheCloseRuns() {
+    final var closed = new CopyOnWriteArrayList<String>();
+    final var ctx = new AppContext();
+    // Keep every thread busy for longer than the timeout, so the repository's close is queued behind them past its timeout.
+    for (int i = 0; i < AppContext.CLOSE_THREADS; i++) {
+      ctx.registerBundle(new SlowBundle(), Qualifier.values()[i]);
+    }
+    ctx.registerBundle(new Pool(closed));
+    ctx.registerBundle(new Repository(closed));
+    final var executor = Executors.newFixedThreadPool(AppContext.CLOSE_THREADS);
+    try {
+      final var e = assertThrows(IllegalStateException.class, () -> ctx.close(executor, Duration.ofMillis(150)));
+      assertTrue(e.getMessage().contains(SlowBundle.class.getName()), e.getMessage());
+      for (final Throwable suppressed : e.getSuppressed()) {
+        assertTrue(suppressed.getMessage().contains(SlowBundle.class.getName()), suppressed.getMessage());
+      }
+      assertEquals(List.of("repository", "pool"), closed);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void failedCloseIsRethrownOnceEverythingHasClosed() {
+    final var closed = new CopyOnWriteArrayList<String>();
+    final var ctx = new AppContext();
+    ctx.registerBundle(new Pool(closed));
+    ctx.registerBundle(new Repository(closed) {
+      @Override
+      public void close() {
+        throw new IllegalStateException("failed");
+      }
+    });
+    final var e = assertThrows(IllegalStateException.class, ctx::close);
+    assertEquals("failed", e.getMessage());
+    assertEquals(List.of("pool"), closed);
+  }
+
+  @Test
+  public void closeRunsOffTheCommonPool() {
+    final var threads = new CopyOnWriteArrayList<String>();
+    final var ctx = new AppContext();
+    ctx.registerBundle(new Pool(threads) {
+      @Override
+      public void close() {
+        threads.add(Thread.currentThread().getName());
+      }
+    });
+    ctx.close();
+    assertEquals(1, threads.size());
+    assertTrue(threads.get(0).startsWith("app-context-close-"), threads.get(0));
+  }
+
+  @Test
+  public void onlyInitialisedBundlesAreClosedAndOnlyOnce() {
+    final var closed = new CopyOnWriteArrayList<String>();
+    final var ctx = new AppContext();
+    ctx.registerLazyBundle(Pool.class, () -> new Pool(closed));
+    ctx.registerLazyBundle(Repository.class, () -> new Repository(closed));
+    ctx.getBundle(Pool.class);
+    ctx.close();
+    ctx.close();
+    assertEquals(List.of("pool"), closed);
+  }
+
+  @Test
+  public void childOnlyClosesItsOwnBundles() {
+    final var closed = new CopyOnWriteArrayList<String>();
+    final var parent = new AppContext();
+    parent.registerBundle(new Pool(closed));
+    final var child = parent.newChild();
+    child.registerBundle(new Repository(closed));
+    child.close();
+    assertEquals(List.of("repository"), closed);
+    parent.close();
+    assertEquals(List.of("repository", "pool"), closed);
+  }
+
+  private static class Pool implements ContextBundle {
+
+    private final List<String> closed;
+
+    private Pool(final List<String> closed) {
+      this.closed = closed;
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+
+    @Override
+    public void close() {
+      closed.add("pool");
+    }
+  }
+
+  private static class Repository implements ContextBundle {
+
+    private final List<String> closed;
+
+    private Repository(final List<String> closed) {
+      this.closed = closed;
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+
+    @Override
+    @NotNull
+    public List<QualifiedBundle<? extends ContextBundle>> requiredBundles() {
+      return Collections.singletonList(QualifiedBundle.create(Pool.class));
+    }
+
+    @Override
+    public void close() {
+      closed.add("repository");
+    }
+  }
+
+  private static final class Service implements ContextBundle {
+
+    private final List<String> closed;
+
+    private Service(final List<String> closed) {
+      this.closed = closed;
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+
+    @Override
+    @NotNull
+    public List<QualifiedBundle<? extends ContextBundle>> requiredBundles() {
+      return List.of(QualifiedBundle.create(Repository.class), QualifiedBundle.create(Pool.class));
+    }
+
+    @Override
+    public void close() {
+      closed.add("service");
+    }
+  }
+
+  private static final class BarrierBundle implements ContextBundle {
+
+    private final CyclicBarrier barrier;
+
+    private BarrierBundle(final CyclicBarrier barrier) {
+      this.barrier = barrier;
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+
+    @Override
+    public void close() {
+      try {
+        barrier.await(5, TimeUnit.SECONDS);
+      } catch (final Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  private static final class SlowBundle implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+
+    @Override
+    public void close() {
+      try {
+        Thread.sleep(300);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private enum Qualifier {
+    ONE,
+    TWO,
+    THREE,
+    FOUR
+  }
+}
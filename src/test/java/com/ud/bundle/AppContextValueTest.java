@@ -1,9 +1,21 @@
 package com.ud.bundle;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 
 public class AppContextValueTest {
@@ -295,6 +307,390 @@ public class AppContextValueTest {
     assertEquals("foo", ctx.getValue("a.a.a").asString());
   }
 
+  @Test
+  public void registerAndGetWithValuePath() {
+    final var ctx = new AppContext();
+    final var path = ValuePath.of("a.0.b");
+    final var strValue = ctx.registerValue(path, "foo");
+    assertEquals(strValue, ctx.getValue(path));
+    assertEquals(strValue, ctx.getValue("a.0.b"));
+    assertTrue(ctx.getValue("a").isArray());
+    assertTrue(ctx.getValue("a.0").isObject());
+    assertEquals(strValue, ctx.getValue("a").child(0).child("b"));
+  }
+
+  @Test
+  public void registerAndGetIgnoresCase() {
+    final var ctx = new AppContext();
+    final var strValue = ctx.registerValue("Server.TimeoutMs", 100);
+    assertEquals(strValue, ctx.getValue("server.timeoutms"));
+    assertEquals(strValue, ctx.getValue("SERVER.TIMEOUTMS"));
+    assertThrows(IllegalArgumentException.class, () -> ctx.registerValue("server.timeoutMs", 200));
+  }
+
+  @Test
+  public void registerSiblingsShareContainers() {
+    final var ctx = new AppContext();
+    final var first = ctx.registerValue("a.b.c", 1);
+    final var second = ctx.registerValue("a.b.d", 2);
+    final var third = ctx.registerValue("a.e.1", 3);
+    final var container = ctx.getValue("a.b");
+    assertEquals(first, container.child("c"));
+    assertEquals(second, container.child("d"));
+    assertEquals(container, ctx.getValue("a").child("b"));
+    assertEquals(third, ctx.getValue("a").child("e").child(1));
+    assertNull(ctx.getValue("a.e").child(0));
+  }
+
+  @Test
+  public void registerKeyUnderLeafThrowsException() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a", 1);
+    assertThrows(IllegalArgumentException.class, () -> ctx.registerValue("a.b", 2));
+  }
+
+  @Test
+  public void registerIndexUnderObjectThrowsException() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.b", 1);
+    assertThrows(IllegalArgumentException.class, () -> ctx.registerValue("a.0", 2));
+  }
+
+  @Test
+  public void registerSameArrayIndexWithLeadingZeroThrowsException() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.1", 1);
+    assertThrows(IllegalArgumentException.class, () -> ctx.registerValue("a.01", 2));
+  }
+
+  @Test
+  public void readPrimitiveViewsOfNumericLeaves() {
+    final var ctx = new AppContext();
+    final var longValue = ctx.registerValue("a", 5_000_000_000L);
+    final var intValue = ctx.registerValue("b", 42);
+    final var doubleValue = ctx.registerValue("c", 2.5);
+    final var integralDouble = ctx.registerValue("d", 3.0);
+    assertEquals(5_000_000_000L, longValue.asLong());
+    assertEquals(5_000_000_000.0, longValue.asDouble());
+    assertThrows(UnsupportedOperationException.class, longValue::asInt);
+    assertEquals(42, intValue.asInt());
+    assertEquals(42L, intValue.asLong());
+    assertEquals(2.5, doubleValue.asDouble());
+    assertThrows(UnsupportedOperationException.class, doubleValue::asLong);
+    assertEquals(3, integralDouble.asInt());
+  }
+
+  @Test
+  public void readPrimitiveViewsOfNumericStrings() {
+    final var ctx = new AppContext();
+    final var integral = ctx.registerValue("a", "-17");
+    final var fractional = ctx.registerValue("b", "0.25");
+    final var text = ctx.registerValue("c", "foo");
+    assertEquals(-17, integral.asInt());
+    assertEquals(-17L, integral.asNumber());
+    assertEquals("-17", integral.asString());
+    assertEquals(0.25, fractional.asDouble());
+    assertEquals(0.25, fractional.asNumber());
+    assertThrows(UnsupportedOperationException.class, text::asLong);
+    assertThrows(UnsupportedOperationException.class, text::asNumber);
+    assertThrows(UnsupportedOperationException.class, () -> ctx.getValue("a").parent().asLong());
+  }
+
+  @Test
+  public void updateSwitchesLeafRepresentation() {
+    final var ctx = new AppContext();
+    final var value = ctx.registerValue("a", "10");
+    assertEquals(10L, value.asLong());
+    assertEquals("10", value.update(2.5));
+    assertEquals(2.5, value.asDouble());
+    assertEquals(2.5, value.update(7L));
+    assertEquals(7, value.asInt());
+    assertEquals("7", value.asString());
+  }
+
+  @Test
+  public void updatesBumpTheVersion() {
+    final var ctx = new AppContext();
+    final var value = ctx.registerValue("a", 1);
+    assertEquals(0, value.version());
+    value.update(2);
+    assertEquals(1, value.version());
+    assertFalse(value.compareAndUpdate(1, 3));
+    assertEquals(1, value.version());
+    assertTrue(value.compareAndUpdate(2, 3));
+    assertEquals(2, value.version());
+    assertEquals(3, value.getAndUpdate(v -> (Integer) v + 1));
+    assertEquals(4, value.asInt());
+    assertEquals(3, value.version());
+    assertThrows(UnsupportedOperationException.class, () -> value.parent().version());
+  }
+
+  @Test
+  public void concurrentUpdatesAreNotLost() throws Exception {
+    final var ctx = new AppContext();
+    final var value = ctx.registerValue("a", 0L);
+    final var threads = 4;
+    final var increments = 10_000;
+    final var pool = Executors.newFixedThreadPool(threads);
+    try {
+      final var start = new CountDownLatch(1);
+      final var futures = new ArrayList<Future<?>>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(pool.submit(() -> {
+          start.await();
+          for (int j = 0; j < increments; j++) {
+            value.getAndUpdate(v -> (Long) v + 1);
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (final Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(threads * increments, value.asLong());
+    assertEquals(threads * increments, value.version());
+  }
+
+  @Test
+  public void removeValuePrunesEmptyContainers() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.b.c", 1);
+    ctx.registerValue("a.d", 2, TestQualifier.ONE);
+    assertEquals(1, ctx.removeValue("a.b.c").asInt());
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("a.b.c"));
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("a.b"));
+    assertNull(ctx.getValue("a").child("b"));
+    assertEquals(2, ctx.removeValue("a.d").asInt());
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("a"));
+
+    ctx.registerValue("a.0", "now an array");
+    assertEquals("now an array", ctx.getValue("a.0").asString());
+  }
+
+  @Test
+  public void removeContainerOrUnknownPathThrowsException() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.b", 1);
+    assertThrows(IllegalArgumentException.class, () -> ctx.removeValue("a"));
+    assertThrows(IllegalArgumentException.class, () -> ctx.removeValue("a.c"));
+  }
+
+  @Test
+  public void registeredPathsAndStringsAreInterned() {
+    final var ctx = new AppContext();
+    final var first = (ValueHolder) ctx.registerValue(ValuePath.of(new String("tenants.a.host")), new String("localhost"));
+    final var second = (ValueHolder) ctx.registerValue(ValuePath.of(new String("tenants.b.host")), new String("localhost"));
+    assertSame(first.path().segment(0), second.path().segment(0));
+    assertSame(first.path().segment(2), second.path().segment(2));
+    assertSame(first.asString(), second.asString());
+    assertEquals("tenants.b.host", second.path().toString());
+  }
+
+  @Test
+  public void longLeafStringsAreNotInterned() {
+    final var ctx = new AppContext();
+    final var value = "x".repeat(InternTable.MAX_VALUE_LENGTH + 1);
+    final var first = ctx.registerValue("a", new String(value));
+    final var second = ctx.registerValue("b", new String(value));
+    assertEquals(first.asString(), second.asString());
+    assertNotSame(first.asString(), second.asString());
+  }
+
+  @Test
+  public void registeredPathIsNeverSeenWithoutItsValue() throws Exception {
+    final var ctx = new AppContext();
+    final var count = 20_000;
+    final var executor = Executors.newSingleThreadExecutor();
+    try {
+      final var registering = executor.submit(() -> {
+        for (int i = 0; i < count; i++) {
+          ctx.registerValue("v" + i, "x");
+        }
+      });
+      for (int i = 0; i < count; i++) {
+        final var path = "v" + i;
+        while (!registering.isDone()) {
+          try {
+            assertNotNull(ctx.getValue(path));
+            break;
+          } catch (final IllegalArgumentException notYetRegistered) {
+            Thread.onSpinWait();
+          }
+        }
+        assertNotNull(ctx.getValue(path));
+      }
+      registering.get(5, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void numericArraysAreStoredDense() {
+    final var ctx = new AppContext();
+    for (int i = 0; i < 20; i++) {
+      ctx.registerValue("longs." + i, (long) i * 3);
+    }
+    ctx.registerValue("doubles.0", 0.5);
+    ctx.registerValue("doubles.1", 2.0);
+
+    final var longs = ctx.getValue("longs");
+    assertEquals(20, longs.asLongArray().length);
+    assertEquals(57, longs.asLongArray()[19]);
+    assertEquals(57.0, longs.asDoubleArray()[19]);
+    assertEquals(9, ctx.getValue("longs.3").asInt());
+    assertEquals(0, ctx.getValue("longs.3").version());
+    assertEquals(ctx.getValue("longs.3"), longs.child(3));
+    assertNull(ctx.getValue("longs.3", TestQualifier.ONE));
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("longs.20"));
+    assertThrows(UnsupportedOperationException.class, () -> ctx.getValue("longs.3").asLongArray());
+
+    assertEquals(0.5, ctx.getValue("doubles").asDoubleArray()[0]);
+    assertEquals("2.0", ctx.getValue("doubles.1").asString());
+    assertThrows(UnsupportedOperationException.class, () -> ctx.getValue("doubles").asLongArray());
+  }
+
+  @Test
+  public void lookingUpADenseElementAgainReusesItsView() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.0", 1L);
+    ctx.registerValue("a.1", 2L);
+    final var path = ValuePath.of("a.1");
+    final var element = ctx.getValue(path);
+    assertSame(element, ctx.getValue(path));
+    assertSame(element, ctx.getValue("a.1"));
+    assertSame(element, ctx.getValue("a").child(1));
+    ctx.registerValue("a.2", 3L);
+    assertSame(element, ctx.getValue(path));
+    assertEquals(3, ctx.getValue(ValuePath.of("a.2")).asLong());
+  }
+
+  @Test
+  public void updatingAnElementInflatesDenseArray() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.0", 1L);
+    ctx.registerValue("a.1", 2L);
+    final var element = ctx.getValue("a.1");
+    assertEquals(2L, element.update(5L));
+    assertEquals(5, element.asLong());
+    assertEquals(1, element.version());
+    assertTrue(ctx.getValue("a.1") instanceof ValueHolder);
+    assertEquals(1, ctx.getValue("a.0").asLong());
+    assertEquals(5, ctx.getValue("a").asLongArray()[1]);
+  }
+
+  @Test
+  public void narrowerNumbersAreWidenedIntoDenseArrays() {
+    final var ctx = new AppContext();
+    ctx.registerValue("ints.0", 1);
+    ctx.registerValue("ints.1", (short) 2);
+    ctx.registerValue("ints.2", (byte) 3);
+    ctx.registerValue("ints.3", 4L);
+    ctx.registerValue("floats.0", 0.5f);
+    ctx.registerValue("floats.1", 1.5);
+    assertFalse(ctx.getValue("ints.0") instanceof ValueHolder);
+    assertArrayEquals(new long[]{1, 2, 3, 4}, ctx.getValue("ints").asLongArray());
+    assertEquals(1L, ctx.getValue("ints.0").asNumber());
+    assertFalse(ctx.getValue("floats.0") instanceof ValueHolder);
+    assertArrayEquals(new double[]{0.5, 1.5}, ctx.getValue("floats").asDoubleArray());
+  }
+
+  @Test
+  public void mixedArraysFallBackToHolders() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.0", 1L);
+    ctx.registerValue("a.1", 1.5);
+    ctx.registerValue("b.0", 1L);
+    ctx.registerValue("b.1", "two");
+    ctx.registerValue("c.0", 1L, TestQualifier.ONE);
+    ctx.registerValue("c.1", 2L);
+    assertTrue(ctx.getValue("a.0") instanceof ValueHolder);
+    assertEquals(1.5, ctx.getValue("a").asDoubleArray()[1]);
+    assertThrows(UnsupportedOperationException.class, () -> ctx.getValue("a").asLongArray());
+    assertTrue(ctx.getValue("b.0") instanceof ValueHolder);
+    assertEquals("two", ctx.getValue("b.1").asString());
+    assertEquals(1, ctx.getValue("c.0", TestQualifier.ONE).asLong());
+    assertEquals(2, ctx.getValue("c.1").asLong());
+    assertThrows(IllegalArgumentException.class, () -> ctx.registerValue("a.1", 3L));
+  }
+
+  @Test
+  public void removeElementOfDenseArray() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.0", 1L);
+    ctx.registerValue("a.1", 2L);
+    final var element = ctx.getValue("a.1");
+    assertEquals(2, ctx.removeValue("a.1").asLong());
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("a.1"));
+    assertThrows(IllegalStateException.class, () -> element.update(3L));
+    assertEquals(1, ctx.getValue("a").asLongArray().length);
+    ctx.registerValue("a.1", 3L);
+    assertEquals(3, ctx.getValue("a.1").asLong());
+  }
+
+  @Test
+  public void valueImplementedAgainstTheOriginalInterfaceStillWorks() {
+    final ContextValue value = new ContextValue() {
+      @Override
+      public ContextValue parent() {
+        return null;
+      }
+
+      @Override
+      public ContextValue child(@NotNull final String key) {
+        return null;
+      }
+
+      @Override
+      public ContextValue child(final int key) {
+        return null;
+      }
+
+      @Override
+      public boolean isContainer() {
+        return false;
+      }
+
+      @Override
+      public boolean isObject() {
+        return false;
+      }
+
+      @Override
+      public boolean isArray() {
+        return false;
+      }
+
+      @Override
+      public boolean isLeaf() {
+        return true;
+      }
+
+      @Override
+      public Object update(@NotNull final Object newValue) {
+        return null;
+      }
+
+      @Override
+      public String asString() {
+        return "a";
+      }
+
+      @Override
+      public Number asNumber() {
+        return 1;
+      }
+    };
+    assertEquals("a", value.asString());
+    assertThrows(UnsupportedOperationException.class, value::version);
+    assertThrows(UnsupportedOperationException.class, value::asLong);
+    assertThrows(UnsupportedOperationException.class, () -> value.compareAndUpdate("a", "b"));
+  }
+
   private enum TestQualifier {
     ONE,
     TWO
@@ -0,0 +1,183 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+public class AsyncContextBundleTest {
+
+  @Test
+  public void registerBundleDoesNotWaitForTheStage() {
+    final var ctx = new AppContext();
+    final var cache = new CacheBundle();
+    ctx.registerBundle(cache);
+    assertTrue(ctx.isBundleRegistered(CacheBundle.class));
+    final var ready = ctx.ready();
+    assertFalse(ready.isDone());
+    cache.loaded.complete(null);
+    ready.join();
+    assertTrue(ctx.ready().isDone());
+  }
+
+  @Test
+  public void dependentsAreAppliedOnceTheStageCompletes() {
+    final var ctx = new AppContext();
+    final var cache = new CacheBundle();
+    ctx.registerBundle(cache);
+    final var dependent = new CacheUser();
+    ctx.registerBundle(dependent);
+    assertTrue(ctx.isBundleRegistered(CacheUser.class));
+    assertFalse(dependent.required.isDone());
+
+    cache.loaded.complete(null);
+    ctx.ready().join();
+    assertSame(cache, dependent.required.join());
+  }
+
+  @Test
+  public void dependentFailureIsReportedByReadyRatherThanRegisterBundle() {
+    final var ctx = new AppContext();
+    final var cache = new CacheBundle();
+    ctx.registerBundle(cache);
+    final CacheUser dependent = new CacheUser() {
+      @Override
+      public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+        super.apply(ctx, requiredBundles);
+        throw new IllegalStateException("cache is empty");
+      }
+    };
+    // Returns before the dependent is applied, so its failure can't be thrown from here.
+    ctx.registerBundle(dependent);
+    assertFalse(dependent.required.isDone());
+
+    cache.loaded.complete(null);
+    final var e = assertThrows(CompletionException.class, () -> ctx.ready().join());
+    assertEquals("cache is empty", e.getCause().getMessage());
+    assertSame(cache, dependent.required.join());
+  }
+
+  @Test
+  public void dependentRegisteredFromApplyAsyncWaitsForTheStage() {
+    final var ctx = new AppContext();
+    final var dependent = new CacheUser();
+    final var cache = new CacheBundle();
+    cache.registerFromApply = dependent;
+    ctx.registerBundle(cache);
+    assertFalse(dependent.required.isDone());
+
+    cache.loaded.complete(null);
+    ctx.ready().join();
+    assertSame(cache, dependent.required.join());
+  }
+
+  @Test
+  public void bundlesRegisteredFromApplyAsyncAreProvidedByIt() {
+    final var ctx = new AppContext();
+    final var dependent = new CacheUser();
+    final var cache = new CacheBundle();
+    cache.registerFromApply = dependent;
+    ctx.registerBundle(cache);
+    cache.loaded.complete(null);
+    ctx.ready().join();
+    assertEquals(List.of(dependent), ctx.providedBy(CacheBundle.class));
+  }
+
+  @Test
+  public void registerAllWaitsForStages() {
+    final var ctx = new AppContext();
+    final var cache = new CacheBundle();
+    final var dependent = new CacheUser();
+    CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> cache.loaded.complete(null));
+    ctx.registerAll(List.of(QualifiedBundle.create(dependent), QualifiedBundle.create(cache)));
+    assertTrue(cache.loaded.isDone());
+    assertSame(cache, dependent.required.getNow(null));
+    assertTrue(ctx.ready().isDone());
+  }
+
+  @Test
+  public void failedStageFailsReadyAndSkipsDependents() {
+    final var ctx = new AppContext();
+    final var cache = new CacheBundle();
+    ctx.registerBundle(cache);
+    final var dependent = new CacheUser();
+    ctx.registerBundle(dependent);
+    cache.loaded.completeExceptionally(new IllegalStateException("handshake failed"));
+
+    final var e = assertThrows(CompletionException.class, () -> ctx.ready().join());
+    assertEquals("handshake failed", e.getCause().getMessage());
+    assertFalse(dependent.required.isDone());
+    // Bundles registered later that require it fail the same way.
+    ctx.registerBundle(new CacheUser(), Qualifier.ONE);
+    assertThrows(CompletionException.class, () -> ctx.ready().join());
+  }
+
+  @Test
+  public void lazyAsyncBundleIsWaitedForWhenRetrieved() {
+    final var ctx = new AppContext();
+    final var cache = new CacheBundle();
+    cache.loaded.complete(null);
+    ctx.registerLazyBundle(CacheBundle.class, () -> cache);
+    assertSame(cache, ctx.getBundle(CacheBundle.class));
+    assertTrue(ctx.ready().isDone());
+  }
+
+  @Test
+  public void childReadyWaitsForItsParent() {
+    final var parent = new AppContext();
+    final var cache = new CacheBundle();
+    parent.registerBundle(cache);
+    final var child = parent.newChild();
+    final var dependent = new CacheUser();
+    child.registerBundle(dependent);
+    assertFalse(child.ready().isDone());
+    cache.loaded.complete(null);
+    child.ready().join();
+    assertSame(cache, dependent.required.join());
+  }
+
+  private static final class CacheBundle implements AsyncContextBundle {
+
+    private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+    private ContextBundle registerFromApply;
+
+    @Override
+    @NotNull
+    public CompletionStage<Void> applyAsync(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      if (registerFromApply != null) {
+        ctx.registerBundle(registerFromApply);
+      }
+      return loaded;
+    }
+  }
+
+  private static class CacheUser implements ContextBundle {
+
+    private final CompletableFuture<ContextBundle> required = new CompletableFuture<>();
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      required.complete(requiredBundles[0]);
+    }
+
+    @Override
+    @NotNull
+    public List<QualifiedBundle<? extends ContextBundle>> requiredBundles() {
+      return Collections.singletonList(QualifiedBundle.create(CacheBundle.class));
+    }
+  }
+
+  private enum Qualifier {
+    ONE
+  }
+}
@@ -0,0 +1,204 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+public class ChildAppContextTest {
+
+  @Test
+  public void childFallsThroughToParentBundles() {
+    final var parent = new AppContext();
+    final var bundle = new TestBundle();
+    parent.registerBundle(bundle);
+    final var child = parent.newChild();
+    assertTrue(child.isBundleRegistered(TestBundle.class));
+    assertSame(bundle, child.getBundle(TestBundle.class));
+    assertFalse(child.isBundleRegistered(TestBundle.class, TestQualifier.ONE));
+    assertThrows(IllegalArgumentException.class, () -> child.getBundle(TestBundle.class, TestQualifier.ONE));
+  }
+
+  @Test
+  public void childBundlesShadowParentBundles() {
+    final var parent = new AppContext();
+    final var parentBundle = new TestBundle();
+    parent.registerBundle(parentBundle);
+    final var child = parent.newChild();
+    final var childBundle = new TestBundle();
+    child.registerBundle(childBundle);
+    assertSame(childBundle, child.getBundle(TestBundle.class));
+    assertSame(parentBundle, parent.getBundle(TestBundle.class));
+    assertThrows(IllegalArgumentException.class, () -> child.registerBundle(new TestBundle()));
+
+    final var sibling = parent.newChild();
+    assertSame(parentBundle, sibling.getBundle(TestBundle.class));
+  }
+
+  @Test
+  public void childBundlesRequireParentBundles() {
+    final var parent = new AppContext();
+    final var required = new TestBundle();
+    parent.registerBundle(required);
+    final var child = parent.newChild();
+    final var requiring = new RequiringBundle();
+    child.registerBundle(requiring);
+    assertSame(required, requiring.required);
+    assertFalse(parent.isBundleRegistered(RequiringBundle.class));
+  }
+
+  @Test
+  public void childKeepsItsOwnProvidedBundles() {
+    final var parent = new AppContext();
+    parent.registerBundle(new ProvidingBundle());
+    final var child = parent.newChild();
+    child.registerLazyBundle(ProvidingBundle.class, TestQualifier.ONE, ProvidingBundle::new);
+    assertEquals(1, child.providedBy(ProvidingBundle.class).size());
+    child.getBundle(ProvidingBundle.class, TestQualifier.ONE);
+    assertSame(child.getBundle(TestBundle.class), child.providedBy(ProvidingBundle.class, TestQualifier.ONE).get(0));
+    assertThrows(IllegalArgumentException.class, () -> parent.providedBy(ProvidingBundle.class, TestQualifier.ONE));
+  }
+
+  @Test
+  public void childValuesShadowParentValues() {
+    final var parent = new AppContext();
+    parent.registerValue("db.url", "parent");
+    parent.registerValue("db.pool", 4);
+    final var child = parent.newChild();
+    assertEquals("parent", child.getValue("db.url").asString());
+    child.registerValue("db.url", "child");
+    assertEquals("child", child.getValue("DB.URL").asString());
+    assertEquals("parent", parent.getValue("db.url").asString());
+    assertEquals(4, child.getValue("db.pool").asInt());
+    assertThrows(IllegalArgumentException.class, () -> child.getValue("db.missing"));
+    assertThrows(IllegalArgumentException.class, () -> child.registerValue("db.url", "again"));
+  }
+
+  @Test
+  public void childOnlyShadowsQualifiersItRegistered() {
+    final var parent = new AppContext();
+    parent.registerValue("limit", 1);
+    final var child = parent.newChild();
+    child.registerValue("limit", 2, TestQualifier.ONE);
+    assertEquals(1, child.getValue("limit").asInt());
+    assertEquals(2, child.getValue("limit", TestQualifier.ONE).asInt());
+    assertNull(parent.getValue("limit", TestQualifier.ONE));
+  }
+
+  @Test
+  public void pathsResolveInTheNearestContextThatHasThem() {
+    final var parent = new AppContext();
+    parent.registerValue("servers.a.port", 1);
+    parent.registerValue("servers.b.port", 2);
+    final var child = parent.newChild();
+    child.registerValue("servers.b.port", 3);
+    child.registerValue("request.id", "r1");
+
+    // The child has servers registered itself, so it is the child's that is listed.
+    assertEquals(List.of("b"), child.listChildren("servers"));
+    assertEquals(Set.of("a", "b"), Set.copyOf(parent.listChildren("servers")));
+    final var out = new StringWriter();
+    child.writeJson("servers.a", out);
+    assertEquals("{\"port\":1}", out.toString());
+
+    final var ports = child.findValues("servers.*.port");
+    assertEquals(Set.of("servers.a.port", "servers.b.port"), ports.keySet());
+    assertEquals(3, ports.get("servers.b.port").asInt());
+    assertEquals(2, parent.findValues("servers.*.port").get("servers.b.port").asInt());
+
+    final var whole = new StringWriter();
+    child.writeJson(whole);
+    // The whole context is only what was registered into the child.
+    assertTrue(whole.toString().contains("\"servers\":{\"b\":{\"port\":3}}"));
+    assertTrue(whole.toString().contains("\"request\":{\"id\":\"r1\"}"));
+  }
+
+  @Test
+  public void parentValuesCanNotBeRemovedThroughChild() {
+    final var parent = new AppContext();
+    parent.registerValue("a", 1);
+    final var child = parent.newChild();
+    assertThrows(IllegalArgumentException.class, () -> child.removeValue("a"));
+    child.registerValue("a", 2);
+    assertEquals(2, child.removeValue("a").asInt());
+    assertEquals(1, child.getValue("a").asInt());
+  }
+
+  @Test
+  public void childrenNest() {
+    final var root = new AppContext();
+    root.registerValue("a", 1);
+    final var tenant = root.newChild();
+    tenant.registerValue("b", 2);
+    final var request = tenant.newChild();
+    request.registerValue("a", 3);
+    assertEquals(3, request.getValue("a").asInt());
+    assertEquals(2, request.getValue("b").asInt());
+    assertEquals(1, tenant.getValue("a").asInt());
+  }
+
+  @Test
+  public void frozenChildHoldsWhatItCanLookUp() {
+    final var parent = new AppContext();
+    final var parentBundle = new TestBundle();
+    parent.registerBundle(parentBundle);
+    parent.registerBundle(new TestBundle(), TestQualifier.ONE);
+    parent.registerValue("a", 1);
+    parent.registerValue("b", 2);
+    final var child = parent.newChild();
+    final var childBundle = new TestBundle();
+    child.registerBundle(childBundle);
+    child.registerValue("a", 3);
+
+    final var frozen = child.freeze();
+    assertSame(childBundle, frozen.getBundle(TestBundle.class));
+    assertSame(parent.getBundle(TestBundle.class, TestQualifier.ONE), frozen.getBundle(TestBundle.class, TestQualifier.ONE));
+    assertEquals(3, frozen.getValue("a").asInt());
+    assertEquals(2, frozen.getValue("b").asInt());
+    assertSame(parentBundle, parent.freeze().getBundle(TestBundle.class));
+  }
+
+  private static final class TestBundle implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+  }
+
+  private static final class RequiringBundle implements ContextBundle {
+
+    private ContextBundle required;
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      required = requiredBundles[0];
+    }
+
+    @Override
+    @NotNull
+    public List<QualifiedBundle<? extends ContextBundle>> requiredBundles() {
+      return Collections.singletonList(QualifiedBundle.create(TestBundle.class));
+    }
+  }
+
+  private static final class ProvidingBundle implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      ctx.registerBundle(new TestBundle());
+    }
+  }
+
+  private enum TestQualifier {
+    ONE
+  }
+}
@@ -0,0 +1,76 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ud.bundle.reader.JsonContextValueReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class FindValuesTest {
+
+  private static final String JSON = "{\"servers\": {\"a\": {\"port\": 1, \"host\": \"ha\"}, \"b\": {\"port\": 2}, \"c\": {\"host\": \"hc\"}},"
+      + " \"pools\": [{\"size\": 3}, {\"size\": 4}], \"ports\": [80, 443]}";
+
+  @Test
+  public void wildcardMatchesObjectKeys() {
+    final var ctx = read();
+    final var ports = ctx.findValues("servers.*.port");
+    assertEquals(Set.of("servers.a.port", "servers.b.port"), ports.keySet());
+    assertEquals(2, ports.get("servers.b.port").asInt());
+    assertEquals(Set.of("servers.a", "servers.b", "servers.c"), ctx.findValues("Servers.*").keySet());
+    assertTrue(ctx.findValues("servers.*.missing").isEmpty());
+    assertTrue(ctx.findValues("nothing.*").isEmpty());
+  }
+
+  @Test
+  public void wildcardMatchesArrayElements() {
+    final var ctx = read();
+    assertEquals(List.of("pools.0.size", "pools.1.size"), List.copyOf(ctx.findValues("pools.*.size").keySet()));
+    final var ports = ctx.findValues("ports.*");
+    assertEquals(List.of("ports.0", "ports.1"), List.copyOf(ports.keySet()));
+    assertEquals(443, ports.get("ports.1").asInt());
+    assertEquals(Set.of("pools.1", "ports.1"), ctx.findValues("*.1").keySet());
+    assertEquals(4, ctx.findValues("pools.1.size").get("pools.1.size").asInt());
+    // Indices only match arrays and keys only match objects.
+    assertTrue(ctx.findValues("servers.0").isEmpty());
+    assertTrue(ctx.findValues("ports.a").isEmpty());
+  }
+
+  @Test
+  public void findValuesFiltersByQualifier() {
+    final var ctx = new AppContext();
+    ctx.registerValue("limits.a", 1, TestQualifier.ONE);
+    ctx.registerValue("limits.b", 2);
+    ctx.registerValue("list.0", 1L, TestQualifier.ONE);
+    assertEquals(Set.of("limits.a", "list.0"), ctx.findValues("*.*", TestQualifier.ONE).keySet());
+    assertEquals(Set.of("limits.a", "limits.b"), ctx.findValues("limits.*").keySet());
+    assertEquals(Set.of("limits.b"), ctx.findValues("limits.*", QualifiedBundle.NoQualifier.INSTANCE).keySet());
+    assertTrue(ctx.findValues("*.*", TestQualifier.TWO).isEmpty());
+  }
+
+  @Test
+  public void listChildrenOfObjectsAndArrays() {
+    final var ctx = read();
+    assertEquals(Set.of("a", "b", "c"), new HashSet<>(ctx.listChildren("servers")));
+    assertEquals(List.of("0", "1"), ctx.listChildren("ports"));
+    ctx.registerValue("sparse.2", "x");
+    assertEquals(List.of("2"), ctx.listChildren(ValuePath.of("sparse")));
+    assertThrows(IllegalArgumentException.class, () -> ctx.listChildren("servers.a.port"));
+    assertThrows(IllegalArgumentException.class, () -> ctx.listChildren("missing"));
+  }
+
+  private static AppContext read() {
+    final var ctx = new AppContext();
+    new JsonContextValueReader(JSON).readInto(ctx);
+    return ctx;
+  }
+
+  private enum TestQualifier {
+    ONE,
+    TWO
+  }
+}
@@ -0,0 +1,80 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import com.ud.bundle.reader.JsonContextValueReader;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FlightRecorderEventsTest {
+
+  private static final String JSON = "{\"a\": 1, \"b\": [\"x\", \"y\"]}";
+
+  @Test
+  void emitsEventsForApplyIngestAndUpdates(@TempDir final Path dir) throws Exception {
+    final var file = dir.resolve("recording.jfr");
+    try (final var recording = new Recording()) {
+      recording.enable("com.ud.bundle.BundleApply").withThreshold(Duration.ZERO);
+      recording.enable("com.ud.bundle.JsonIngest").withThreshold(Duration.ZERO);
+      recording.enable("com.ud.bundle.ValueUpdate");
+      recording.start();
+
+      final var ctx = new AppContext();
+      ctx.registerBundle(new Outer());
+      new JsonContextValueReader(JSON).readInto(ctx);
+      ctx.getValue("a").update(2);
+
+      recording.stop();
+      recording.dump(file);
+    }
+
+    final var events = RecordingFile.readAllEvents(file);
+    final var applies = named(events, "com.ud.bundle.BundleApply");
+    assertEquals(2, applies.size());
+    // The nested apply finishes first.
+    assertEquals(Inner.class.getName(), applies.get(0).getString("bundle"));
+    assertEquals(Outer.class.getName(), applies.get(0).getString("parent"));
+    assertFalse(applies.get(1).getBoolean("failed"));
+
+    final var ingests = named(events, "com.ud.bundle.JsonIngest");
+    assertEquals(1, ingests.size());
+    assertEquals(3, ingests.get(0).getLong("leaves"));
+    assertEquals(JSON.length(), ingests.get(0).getLong("characters"));
+
+    final var updates = named(events, "com.ud.bundle.ValueUpdate");
+    assertEquals(1, updates.size());
+    assertEquals("a", updates.get(0).getString("path"));
+    assertEquals(1, updates.get(0).getLong("version"));
+  }
+
+  private static List<RecordedEvent> named(final List<RecordedEvent> events, final String name) {
+    return events.stream()
+        .filter(e -> e.getEventType().getName().equals(name))
+        .sorted((a, b) -> a.getEndTime().compareTo(b.getEndTime()))
+        .collect(Collectors.toList());
+  }
+
+  private static final class Outer implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      ctx.registerBundle(new Inner());
+    }
+  }
+
+  private static final class Inner implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+public class FrozenAppContextTest {
+
+  @Test
+  public void frozenContextReturnsRegisteredBundles() {
+    final var ctx = new AppContext();
+    final var unqualified = new TestBundle();
+    final var qualified = new TestBundle();
+    ctx.registerBundle(unqualified);
+    ctx.registerBundle(qualified, TestQualifier.ONE);
+    final var frozen = ctx.freeze();
+    assertSame(unqualified, frozen.getBundle(TestBundle.class));
+    assertSame(qualified, frozen.getBundle(TestBundle.class, TestQualifier.ONE));
+    assertSame(qualified, frozen.getBundle(QualifiedBundle.create(TestBundle.class, TestQualifier.ONE)));
+    assertTrue(frozen.isBundleRegistered(TestBundle.class));
+    assertFalse(frozen.isBundleRegistered(TestBundle.class, TestQualifier.TWO));
+    assertThrows(IllegalArgumentException.class, () -> frozen.getBundle(TestBundle.class, TestQualifier.TWO));
+  }
+
+  @Test
+  public void frozenContextUsesBundles() {
+    final var ctx = new AppContext();
+    ctx.registerBundle(new TestBundle());
+    final var frozen = ctx.freeze();
+    final var b = new AtomicBoolean(false);
+    frozen.useBundle(TestBundle.class, bundle -> b.set(true));
+    assertTrue(b.get());
+  }
+
+  @Test
+  public void frozenContextKeepsProvidedBundles() {
+    final var ctx = new AppContext();
+    ctx.registerBundle(new ProvidingBundle());
+    final var frozen = ctx.freeze();
+    assertEquals(1, frozen.providedBy(ProvidingBundle.class).size());
+    assertSame(frozen.getBundle(TestBundle.class), frozen.providedBy(ProvidingBundle.class).get(0));
+    assertThrows(IllegalArgumentException.class, () -> frozen.providedBy(TestBundle.class));
+  }
+
+  @Test
+  public void frozenContextReturnsElementsOfDenseArrays() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.0", 1L);
+    ctx.registerValue("a.1", 2L);
+    ctx.registerValue("b.0", 3L, TestQualifier.ONE);
+    final var frozen = ctx.freeze();
+    assertEquals(2, frozen.getValue("a.1").asLong());
+    assertEquals(3, frozen.getValue("b.0", TestQualifier.ONE).asLong());
+    assertNull(frozen.getValue("b.0"));
+    assertThrows(IllegalArgumentException.class, () -> frozen.getValue("a.2"));
+    assertThrows(IllegalArgumentException.class, () -> frozen.getValue("a.x"));
+  }
+
+  @Test
+  public void frozenContextKeepsElementsOfDenseArraysInflatedAfterFreezing() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.0", 1L);
+    ctx.registerValue("a.1", 2L);
+    ctx.registerValue("a.2", 3L);
+    final var frozen = ctx.freeze();
+    assertEquals(1, frozen.getValue("a.0").asLong());
+
+    // Updating an element turns the array into a regular one.
+    ctx.getValue("a.0").update(10L);
+    assertEquals(10, frozen.getValue("a.0").asLong());
+    assertEquals(2, frozen.getValue("a.1").asLong());
+    ctx.registerValue("a.3", 4L);
+    assertThrows(IllegalArgumentException.class, () -> frozen.getValue("a.3"));
+    ctx.removeValue("a.2");
+    assertEquals(3, frozen.getValue("a.2").asLong());
+  }
+
+  @Test
+  public void frozenContextReturnsRegisteredValues() {
+    final var ctx = new AppContext();
+    final var leaf = ctx.registerValue("a.b", 1);
+    final var qualified = ctx.registerValue("c", "foo", TestQualifier.ONE);
+    final var frozen = ctx.freeze();
+    assertSame(leaf, frozen.getValue("a.b"));
+    assertSame(leaf, frozen.getValue(ValuePath.of("A.B")));
+    assertSame(ctx.getValue("a"), frozen.getValue("a"));
+    assertSame(qualified, frozen.getValue("c", TestQualifier.ONE));
+    assertNull(frozen.getValue("c"));
+    assertThrows(IllegalArgumentException.class, () -> frozen.getValue("d"));
+  }
+
+  @Test
+  public void frozenContextDoesNotSeeLaterRegistrations() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a", 1);
+    final var frozen = ctx.freeze();
+    ctx.registerValue("b", 2);
+    ctx.registerBundle(new TestBundle());
+    assertThrows(IllegalArgumentException.class, () -> frozen.getValue("b"));
+    assertFalse(frozen.isBundleRegistered(TestBundle.class));
+  }
+
+  @Test
+  public void frozenContextFindsManyValues() {
+    final var ctx = new AppContext();
+    for (int i = 0; i < 1000; i++) {
+      ctx.registerValue("values." + i, i);
+    }
+    final var frozen = ctx.freeze();
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, frozen.getValue("values." + i).asNumber().intValue());
+    }
+  }
+
+  private static final class TestBundle implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+  }
+
+  private static final class ProvidingBundle implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      ctx.registerBundle(new TestBundle());
+    }
+  }
+
+  private enum TestQualifier {
+    ONE,
+    TWO
+  }
+}
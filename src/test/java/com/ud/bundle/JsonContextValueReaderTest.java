@@ -1,9 +1,12 @@
 package com.ud.bundle;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.ud.bundle.reader.JsonContextValueReader;
+import java.io.StringReader;
 import org.junit.jupiter.api.Test;
 
 public class JsonContextValueReaderTest {
@@ -69,4 +72,118 @@ public class JsonContextValueReaderTest {
     assertEquals("foo", ctx.getValue("a.a.a").asString());
     assertEquals(5, ctx.getValue("a.a.b").asNumber().intValue());
   }
+
+  @Test
+  public void readObjectsInsideArrayFromString() {
+    final var json = "{\"a\": [{\"b\": \"foo\"}, {\"b\": 5}], \"c\": 1.5}";
+    final var ctx = new AppContext();
+    final var reader = new JsonContextValueReader(json);
+    reader.readInto(ctx);
+    assertTrue(ctx.getValue("a").isArray());
+    assertEquals("foo", ctx.getValue("a.0.b").asString());
+    assertEquals(5, ctx.getValue("a.1.b").asNumber().intValue());
+    assertEquals(1.5, ctx.getValue("c").asNumber().doubleValue());
+  }
+
+  @Test
+  public void readNullValuesAreSkipped() {
+    final var json = "{\"a\": null, \"b\": 5}";
+    final var ctx = new AppContext();
+    final var reader = new JsonContextValueReader(json);
+    reader.readInto(ctx);
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("a"));
+    assertEquals(5, ctx.getValue("b").asNumber().intValue());
+  }
+
+  @Test
+  public void readNonObjectRootThrowsException() {
+    final var reader = new JsonContextValueReader("[1, 2]");
+    assertThrows(IllegalStateException.class, () -> reader.readInto(new AppContext()));
+  }
+
+  @Test
+  public void readStringContentIntoMultipleContexts() {
+    final var reader = new JsonContextValueReader("{\"a\": \"foo\"}");
+    final var first = new AppContext();
+    final var second = new AppContext();
+    reader.readInto(first);
+    reader.readInto(second);
+    assertEquals("foo", first.getValue("a").asString());
+    assertEquals("foo", second.getValue("a").asString());
+  }
+
+  @Test
+  public void readProvidedReaderTwiceThrowsException() {
+    final var reader = new JsonContextValueReader(new StringReader("{\"a\": \"foo\"}"));
+    reader.readInto(new AppContext());
+    assertThrows(IllegalStateException.class, () -> reader.readInto(new AppContext()));
+  }
+
+  @Test
+  public void readLargeIntegersKeepTheirValue() {
+    final var json = "{\"a\": 9007199254740993, \"b\": 123456789012345678901234567890}";
+    final var ctx = new AppContext();
+    final var reader = new JsonContextValueReader(json);
+    reader.readInto(ctx);
+    assertEquals(9007199254740993L, ctx.getValue("a").asNumber().longValue());
+    assertFalse(ctx.getValue("b").asNumber() instanceof Long);
+    assertEquals("123456789012345678901234567890", ctx.getValue("b").asString());
+  }
+
+  @Test
+  public void readNumbersAsPrimitives() {
+    final var json = "{\"timeoutMs\": 2500, \"ratio\": 0.75, \"big\": 1e3, \"huge\": 123456789012345678901234567890}";
+    final var ctx = new AppContext();
+    new JsonContextValueReader(json).readInto(ctx);
+    assertEquals(2500, ctx.getValue("timeoutMs").asInt());
+    assertEquals(0.75, ctx.getValue("ratio").asDouble());
+    assertEquals(1000L, ctx.getValue("big").asLong());
+    assertThrows(UnsupportedOperationException.class, () -> ctx.getValue("huge").asLong());
+  }
+
+  @Test
+  public void readIntoMountPoint() {
+    final var json = "{\"a\": {\"b\": \"foo\"}, \"c\": [5]}";
+    final var ctx = new AppContext();
+    final var reader = new JsonContextValueReader(json);
+    reader.readInto(ctx, ValuePath.of("config.main"));
+    assertTrue(ctx.getValue("config.main").isObject());
+    assertEquals("foo", ctx.getValue("config.main.a.b").asString());
+    assertEquals(5, ctx.getValue("config.main.c.0").asNumber().intValue());
+  }
+
+  @Test
+  public void readNumericArraysAsPrimitiveArrays() {
+    final var json = "{\"a\": [1, 2, 3], \"b\": [0.5, 1.5], \"c\": [1, \"two\"]}";
+    final var ctx = new AppContext();
+    new JsonContextValueReader(json).readInto(ctx);
+    assertEquals(3, ctx.getValue("a").asLongArray()[2]);
+    assertEquals(2, ctx.getValue("a.1").asLong());
+    assertEquals(1.5, ctx.getValue("b").asDoubleArray()[1]);
+    assertEquals("two", ctx.getValue("c.1").asString());
+    assertThrows(UnsupportedOperationException.class, () -> ctx.getValue("c").asLongArray());
+  }
+
+  @Test
+  public void largeDocumentIsRegisteredAsItIsRead() {
+    final var json = new StringBuilder("{\"a\": [0");
+    for (int i = 1; i < 3000; i++) {
+      json.append(", ").append(i);
+    }
+    json.append("], \"b\": ");
+    final var ctx = new AppContext();
+    assertThrows(IllegalArgumentException.class, () -> new JsonContextValueReader(json.toString()).readInto(ctx));
+    assertEquals(3000, ctx.getValue("a").asLongArray().length);
+    assertEquals(2999, ctx.getValue("a.2999").asLong());
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("b"));
+  }
+
+  @Test
+  public void booleansAreRejectedWithTheirPath() {
+    final var ctx = new AppContext();
+    final var e = assertThrows(IllegalArgumentException.class,
+        () -> new JsonContextValueReader("{\"a\": 1, \"b\": {\"c\": [false]}}").readInto(ctx));
+    assertEquals("Boolean at 'b.c.0' is not supported, an AppContext only holds strings and numbers.", e.getMessage());
+    assertEquals(1, ctx.getValue("a").asInt());
+  }
 }
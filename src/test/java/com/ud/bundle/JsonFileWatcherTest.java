@@ -0,0 +1,135 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ud.bundle.reader.JsonFileWatcher;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JsonFileWatcherTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  public void reloadOnlyUpdatesChangedLeaves() throws IOException {
+    final var file = write("{\"a\": 1, \"b\": \"foo\", \"c\": {\"d\": 2.5}}");
+    final var ctx = new AppContext(Runnable::run);
+    try (final var watcher = JsonFileWatcher.watch(ctx, file)) {
+      final var a = ctx.getValue("a");
+      final var b = ctx.getValue("b");
+      final var changes = new ArrayList<ValueChange>();
+      ctx.subscribe("a", changes::addAll);
+      ctx.subscribe("b", changes::addAll);
+
+      write("{\"a\": 1, \"b\": \"bar\", \"c\": {\"d\": 2.5}}");
+      watcher.reload();
+      assertSame(b, ctx.getValue("b"));
+      assertSame(a, ctx.getValue("a"));
+      assertEquals("bar", b.asString());
+      assertEquals(0, a.version());
+      assertEquals(1, changes.size());
+      assertEquals(ValuePath.of("b"), changes.get(0).getPath());
+    }
+  }
+
+  @Test
+  public void reloadAddsAndRemovesLeaves() throws IOException {
+    final var file = write("{\"a\": 1, \"b\": {\"c\": 2}, \"list\": [1, 2, 3]}");
+    final var ctx = new AppContext();
+    try (final var watcher = JsonFileWatcher.watch(ctx, file)) {
+      write("{\"a\": {\"x\": 1}, \"list\": [1], \"b2\": \"new\"}");
+      watcher.reload();
+      assertEquals(1, ctx.getValue("a.x").asInt());
+      assertEquals("new", ctx.getValue("b2").asString());
+      assertThrows(IllegalArgumentException.class, () -> ctx.getValue("b.c"));
+      assertThrows(IllegalArgumentException.class, () -> ctx.getValue("b"));
+      assertThrows(IllegalArgumentException.class, () -> ctx.getValue("list.1"));
+      assertEquals(1, ctx.getValue("list.0").asInt());
+      assertEquals(null, ctx.getValue("list").child(1));
+    }
+  }
+
+  @Test
+  public void brokenFileLeavesContextUntouched() throws IOException {
+    final var file = write("{\"a\": 1}");
+    final var ctx = new AppContext();
+    try (final var watcher = JsonFileWatcher.watch(ctx, file)) {
+      write("{\"a\": 2, \"b\": ");
+      assertThrows(RuntimeException.class, watcher::reload);
+      assertEquals(1, ctx.getValue("a").asInt());
+      write("{\"a\": 3}");
+      watcher.reload();
+      assertEquals(3, ctx.getValue("a").asInt());
+    }
+  }
+
+  @Test
+  public void clashingFileIsAppliedUpToTheClashAndLaterReloadsRecover() throws IOException {
+    final var file = write("{\"a\": 1, \"b\": 2}");
+    final var ctx = new AppContext();
+    ctx.registerValue("c", "elsewhere");
+    try (final var watcher = JsonFileWatcher.watch(ctx, file)) {
+      write("{\"b\": 3, \"added\": 1, \"c\": {\"d\": 1}}");
+      assertThrows(IllegalArgumentException.class, watcher::reload);
+      assertThrows(IllegalArgumentException.class, () -> ctx.getValue("a"));
+      assertEquals(3, ctx.getValue("b").asInt());
+      assertEquals(1, ctx.getValue("added").asInt());
+
+      write("{\"b\": 4}");
+      watcher.reload();
+      assertEquals(4, ctx.getValue("b").asInt());
+      assertThrows(IllegalArgumentException.class, () -> ctx.getValue("added"));
+      assertEquals("elsewhere", ctx.getValue("c").asString());
+    }
+  }
+
+  @Test
+  public void leafRegisteredElsewhereIsNotTakenOverByAFailedReload() throws IOException {
+    final var file = write("{\"a\": 1}");
+    final var ctx = new AppContext();
+    ctx.registerValue("b", "elsewhere");
+    try (final var watcher = JsonFileWatcher.watch(ctx, file)) {
+      write("{\"a\": 1, \"b\": 2}");
+      assertThrows(IllegalArgumentException.class, watcher::reload);
+
+      write("{\"a\": 1}");
+      watcher.reload();
+      assertEquals("elsewhere", ctx.getValue("b").asString());
+    }
+  }
+
+  @Test
+  public void changesOnDiskAreApplied() throws Exception {
+    final var file = write("{\"limits\": {\"rps\": 100}}");
+    final var ctx = new AppContext();
+    try (final var ignored = JsonFileWatcher.watch(ctx, file, ValuePath.of("service"))) {
+      final var updated = new CountDownLatch(1);
+      final var seen = new ArrayList<List<ValueChange>>();
+      ctx.subscribe("service.limits", changes -> {
+        seen.add(changes);
+        updated.countDown();
+      });
+      write("{\"limits\": {\"rps\": 250}}");
+      assertTrue(updated.await(30, TimeUnit.SECONDS));
+      assertEquals(250, ctx.getValue("service.limits.rps").asInt());
+      assertFalse(seen.isEmpty());
+    }
+  }
+
+  private Path write(final String json) throws IOException {
+    return Files.writeString(dir.resolve("config.json"), json, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,117 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ud.bundle.reader.JsonContextValueReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class LayeredValuesTest {
+
+  @Test
+  public void higherLayersWin() {
+    final var ctx = new AppContext();
+    final var layers = LayeredValues.create(ctx, "defaults", "file", "overrides");
+    layers.replace("defaults", Map.of("db.host", "localhost", "db.port", 5432L, "db.pool", 4L));
+    layers.read("file", new JsonContextValueReader("{\"db\": {\"host\": \"db.internal\"}}"));
+    layers.set("overrides", "db.pool", 16L);
+
+    assertEquals("db.internal", ctx.getValue("db.host").asString());
+    assertEquals(5432, ctx.getValue("db.port").asInt());
+    assertEquals(16, ctx.getValue("db.pool").asInt());
+    assertEquals("file", layers.layerOf("db.host"));
+    assertEquals("defaults", layers.layerOf("DB.PORT"));
+    assertEquals("overrides", layers.layerOf("db.pool"));
+    assertNull(layers.layerOf("db.user"));
+  }
+
+  @Test
+  public void changesFallBackToLowerLayersInPlace() {
+    final var ctx = new AppContext();
+    final var layers = LayeredValues.create(ctx, "defaults", "overrides");
+    layers.replace("defaults", Map.of("a", "default", "b", "only default"));
+    final var a = ctx.getValue("a");
+    layers.set("overrides", "a", "override");
+    assertEquals("override", a.asString());
+    assertSame(a, ctx.getValue("a"));
+
+    assertTrue(layers.remove("overrides", "a"));
+    assertFalse(layers.remove("overrides", "a"));
+    assertEquals("default", a.asString());
+    assertEquals(2, a.version());
+
+    // Shadowed paths don't change what the context holds.
+    layers.set("overrides", "b", "override");
+    layers.set("defaults", "b", "new default");
+    assertEquals("override", ctx.getValue("b").asString());
+    layers.clear("overrides");
+    assertEquals("new default", ctx.getValue("b").asString());
+  }
+
+  @Test
+  public void replacingLayerRemovesWhatItNoLongerHas() {
+    final var ctx = new AppContext();
+    final var layers = LayeredValues.create(ctx, TestQualifier.ONE, "file");
+    layers.replace("file", Map.of("a.b", 1L, "a.c", 2L));
+    assertEquals(1, ctx.getValue("a.b", TestQualifier.ONE).asLong());
+    layers.replace("file", Map.of("a.c", 3L, "d", "x"));
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("a.b"));
+    assertEquals(3, ctx.getValue("a.c", TestQualifier.ONE).asLong());
+    assertEquals("x", ctx.getValue("d", TestQualifier.ONE).asString());
+    layers.clear("file");
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("a"));
+  }
+
+  @Test
+  public void failedReadLeavesLayerUntouched() {
+    final var ctx = new AppContext();
+    final var layers = LayeredValues.create(ctx, "file");
+    layers.read("file", new JsonContextValueReader("{\"a\": 1}"));
+    assertThrows(IllegalStateException.class, () -> layers.read("file", new JsonContextValueReader("[1, 2]")));
+    assertEquals(1, ctx.getValue("a").asInt());
+    assertEquals("file", layers.layerOf("a"));
+  }
+
+  @Test
+  public void clashingChangeIsUndoneAndLeavesLayerUntouched() {
+    final var ctx = new AppContext();
+    ctx.registerValue("c", "elsewhere");
+    final var layers = LayeredValues.create(ctx, "defaults");
+    layers.replace("defaults", Map.of("a", 1L, "b", 2L));
+    final var b = ctx.getValue("b");
+
+    final var clashing = new LinkedHashMap<String, Object>();
+    clashing.put("b", 3L);
+    clashing.put("added", 1L);
+    clashing.put("c.d", 1L);
+    assertThrows(IllegalArgumentException.class, () -> layers.replace("defaults", clashing));
+    assertEquals(1, ctx.getValue("a").asInt());
+    assertEquals(2, b.asInt());
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("added"));
+    assertEquals("defaults", layers.layerOf("a"));
+    assertNull(layers.layerOf("added"));
+
+    layers.replace("defaults", Map.of("b", 4L));
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("a"));
+    assertEquals(4, b.asInt());
+    assertEquals("elsewhere", ctx.getValue("c").asString());
+  }
+
+  @Test
+  public void unknownOrDuplicateLayersThrowException() {
+    final var ctx = new AppContext();
+    assertThrows(IllegalArgumentException.class, () -> LayeredValues.create(ctx));
+    assertThrows(IllegalArgumentException.class, () -> LayeredValues.create(ctx, "a", "a"));
+    assertThrows(IllegalArgumentException.class, () -> LayeredValues.create(ctx, "a").set("b", "x", 1));
+  }
+
+  private enum TestQualifier {
+    ONE
+  }
+}
@@ -0,0 +1,172 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonParser;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+public class StartupProfilerTest {
+
+  @Test
+  void recordsNothingUnlessStarted() {
+    final var ctx = new AppContext();
+    final var profiler = ctx.startProfiling();
+    ctx.stopProfiling();
+    ctx.registerBundle(new Root());
+    assertTrue(profiler.timings().isEmpty());
+  }
+
+  @Test
+  void recordsNestingAndSelfTime() {
+    final var ctx = new AppContext();
+    final var profiler = ctx.startProfiling();
+    ctx.registerBundle(new Provider());
+
+    final var timings = profiler.timings();
+    assertEquals(2, timings.size());
+    final var provider = find(timings, Provider.class);
+    final var nested = find(timings, SleepingBundle.class);
+    assertNull(provider.getParent());
+    assertEquals(Provider.class.getName(), nested.getParent());
+    assertTrue(nested.getApplyNanos() >= 20_000_000);
+    assertTrue(provider.getApplyNanos() >= nested.getApplyNanos());
+    assertEquals(provider.getApplyNanos() - nested.getApplyNanos(), provider.getSelfNanos());
+    assertEquals(SleepingBundle.class.getName(), profiler.slowest(1).get(0).getBundle());
+  }
+
+  @Test
+  void criticalPathFollowsTheSlowestChainOfRequirements() {
+    final var ctx = new AppContext();
+    final var profiler = ctx.startProfiling();
+    final var executor = Executors.newFixedThreadPool(2);
+    try {
+      ctx.registerAll(List.of(
+          QualifiedBundle.create(new Root()),
+          QualifiedBundle.create(new SleepingBundle(30, QualifiedBundle.create(Root.class)), Tier.SLOW),
+          QualifiedBundle.create(new SleepingBundle(0, QualifiedBundle.create(Root.class)), Tier.FAST),
+          QualifiedBundle.create(new Leaf())
+      ), executor);
+    } finally {
+      executor.shutdown();
+    }
+
+    final var path = new ArrayList<String>();
+    for (final StartupProfiler.BundleTiming timing : profiler.criticalPath()) {
+      path.add(timing.getBundle());
+    }
+    assertEquals(List.of(
+        Root.class.getName(),
+        SleepingBundle.class.getName() + "[SLOW]",
+        Leaf.class.getName()
+    ), path);
+    // The leaf had to wait for the slow bundle to be applied.
+    assertTrue(find(profiler.timings(), Leaf.class).getWaitNanos() >= 30_000_000);
+  }
+
+  @Test
+  void recordsFailedApplies() {
+    final var ctx = new AppContext();
+    final var profiler = ctx.startProfiling();
+    assertThrows(IllegalStateException.class, () -> ctx.registerBundle(new Failing()));
+    assertTrue(profiler.timings().get(0).isFailed());
+  }
+
+  @Test
+  void reportsAsTextAndJson() {
+    final var ctx = new AppContext();
+    final var profiler = ctx.startProfiling();
+    ctx.registerBundle(new Provider());
+
+    final var text = profiler.toText();
+    assertTrue(text.startsWith("Startup profile: 2 bundles"));
+    assertTrue(text.contains(SleepingBundle.class.getName() + " (inside " + Provider.class.getName() + ")"));
+
+    final var json = new JsonParser().parse(profiler.toJson()).getAsJsonObject();
+    assertEquals(Provider.class.getName(), json.getAsJsonArray("criticalPath").get(0).getAsString());
+    final var bundles = json.getAsJsonArray("bundles");
+    assertEquals(2, bundles.size());
+    final var slowest = bundles.get(0).getAsJsonObject();
+    assertEquals(SleepingBundle.class.getName(), slowest.get("bundle").getAsString());
+    assertEquals(Provider.class.getName(), slowest.get("parent").getAsString());
+    assertTrue(slowest.get("applyNanos").getAsLong() >= 20_000_000);
+  }
+
+  private static StartupProfiler.BundleTiming find(final List<StartupProfiler.BundleTiming> timings, final Class<?> clazz) {
+    return timings.stream().filter(t -> t.getBundle().equals(clazz.getName())).findFirst().orElseThrow();
+  }
+
+  private enum Tier {
+    SLOW,
+    FAST
+  }
+
+  private static final class SleepingBundle implements ContextBundle {
+
+    private final long millis;
+    private final List<QualifiedBundle<? extends ContextBundle>> requires;
+
+    @SafeVarargs
+    private SleepingBundle(final long millis, final QualifiedBundle<? extends ContextBundle>... requires) {
+      this.millis = millis;
+      this.requires = List.of(requires);
+    }
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      try {
+        Thread.sleep(millis);
+      } catch (final InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    @NotNull
+    public List<QualifiedBundle<? extends ContextBundle>> requiredBundles() {
+      return requires;
+    }
+  }
+
+  private static final class Provider implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      ctx.registerBundle(new SleepingBundle(20));
+    }
+  }
+
+  private static final class Root implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+  }
+
+  private static final class Leaf implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+    }
+
+    @Override
+    @NotNull
+    public List<QualifiedBundle<? extends ContextBundle>> requiredBundles() {
+      return List.of(QualifiedBundle.create(SleepingBundle.class, Tier.SLOW), QualifiedBundle.create(SleepingBundle.class, Tier.FAST));
+    }
+  }
+
+  private static final class Failing implements ContextBundle {
+
+    @Override
+    public void apply(@NotNull final AppContext ctx, @NotNull final ContextBundle... requiredBundles) {
+      throw new IllegalStateException("Failed on purpose.");
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ud.bundle.reader.Utf8JsonContextValueReader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+
+public class Utf8JsonContextValueReaderTest {
+
+  private static Utf8JsonContextValueReader reader(final String json) {
+    return new Utf8JsonContextValueReader(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void readNestedObjectsAndArrays() {
+    final var json = "{\"a\": {\"b\": \"foo\", \"c\": [1, {\"d\": 2.5}, [\"x\"]]}, \"E\": 3}";
+    final var ctx = new AppContext();
+    reader(json).readInto(ctx);
+    assertTrue(ctx.getValue("a").isObject());
+    assertEquals("foo", ctx.getValue("a.b").asString());
+    assertTrue(ctx.getValue("a.c").isArray());
+    assertEquals(1, ctx.getValue("a.c.0").asInt());
+    assertEquals(2.5, ctx.getValue("a.c.1.d").asNumber().doubleValue());
+    assertEquals("x", ctx.getValue("a.c.2.0").asString());
+    assertEquals(3, ctx.getValue("e").asInt());
+  }
+
+  @Test
+  public void readNumbersIntoTheirSmallestExactType() {
+    final var json = "{\"small\": -42, \"long\": 123456789012345678901, \"max\": 9223372036854775807, \"min\": -9223372036854775808, "
+        + "\"fraction\": 0.5, \"exponent\": 1e3}";
+    final var ctx = new AppContext();
+    reader(json).readInto(ctx);
+    assertEquals(-42L, ctx.getValue("small").asNumber());
+    assertEquals(new BigInteger("123456789012345678901"), ctx.getValue("long").asNumber());
+    assertEquals(Long.MAX_VALUE, ctx.getValue("max").asNumber());
+    assertEquals(Long.MIN_VALUE, ctx.getValue("min").asNumber());
+    assertEquals(0.5, ctx.getValue("fraction").asNumber());
+    assertEquals(1000.0, ctx.getValue("exponent").asNumber());
+  }
+
+  @Test
+  public void readEscapesAndMultiByteCharacters() {
+    final var json = "\uFEFF{\"text\": \"a\\\"b\\\\c\\n\\u00e9\", \"utf8\": \"\u00e9\u4e2d\uD83D\uDE00\", \"k\u00e9y\": 1, \"esc\\u0061ped\": 2}";
+    final var ctx = new AppContext();
+    reader(json).readInto(ctx);
+    assertEquals("a\"b\\c\n\u00e9", ctx.getValue("text").asString());
+    assertEquals("\u00e9\u4e2d\uD83D\uDE00", ctx.getValue("utf8").asString());
+    assertEquals(1, ctx.getValue("k\u00e9y").asInt());
+    assertEquals(2, ctx.getValue("escaped").asInt());
+  }
+
+  @Test
+  public void readRepeatedKeys() {
+    final var json = "{\"servers\": [{\"host\": \"a\", \"port\": 1}, {\"host\": \"b\", \"port\": 2}, {\"hots\": \"c\"}]}";
+    final var ctx = new AppContext();
+    reader(json).readInto(ctx);
+    assertEquals("b", ctx.getValue("servers.1.host").asString());
+    assertEquals(2, ctx.getValue("servers.1.port").asInt());
+    assertEquals("c", ctx.getValue("servers.2.hots").asString());
+  }
+
+  @Test
+  public void readIntoMountPoint() {
+    final var ctx = new AppContext();
+    reader("{\"port\": 80}").readInto(ctx, ValuePath.of("server"));
+    assertEquals(80, ctx.getValue("server.port").asInt());
+  }
+
+  @Test
+  public void nullIsSkipped() {
+    final var ctx = new AppContext();
+    reader("{\"a\": null, \"b\": 1}").readInto(ctx);
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("a"));
+    assertEquals(1, ctx.getValue("b").asInt());
+  }
+
+  @Test
+  public void bufferCanBeReadMoreThanOnce() {
+    final var buffer = ByteBuffer.wrap("xx{\"a\": 1}".getBytes(StandardCharsets.UTF_8));
+    buffer.position(2);
+    final var reader = new Utf8JsonContextValueReader(buffer);
+    final var first = new AppContext();
+    final var second = new AppContext();
+    reader.readInto(first);
+    reader.readInto(second);
+    assertEquals(1, first.getValue("a").asInt());
+    assertEquals(1, second.getValue("a").asInt());
+    assertEquals(2, buffer.position());
+  }
+
+  @Test
+  public void readFromFile() throws Exception {
+    final var file = Files.createTempFile("context", ".json");
+    try {
+      Files.writeString(file, "{\"name\": \"caf\u00e9\"}");
+      final var ctx = new AppContext();
+      new Utf8JsonContextValueReader(file).readInto(ctx);
+      assertEquals("caf\u00e9", ctx.getValue("name").asString());
+      try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        final var other = new AppContext();
+        new Utf8JsonContextValueReader(channel).readInto(other);
+        assertTrue(channel.isOpen());
+        assertEquals("caf\u00e9", other.getValue("name").asString());
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void rootMustBeAnObject() {
+    assertThrows(IllegalStateException.class, () -> reader("[1]").readInto(new AppContext()));
+  }
+
+  @Test
+  public void booleansAreRejectedWithTheirPath() {
+    final var ctx = new AppContext();
+    final var e = assertThrows(IllegalArgumentException.class, () -> reader("{\"a\": 1, \"b\": {\"c\": [false]}}").readInto(ctx));
+    assertEquals("Boolean at 'b.c.0' is not supported, an AppContext only holds strings and numbers.", e.getMessage());
+    assertEquals(1, ctx.getValue("a").asInt());
+  }
+
+  @Test
+  public void malformedDocumentKeepsTheLeavesBeforeTheError() {
+    final var ctx = new AppContext();
+    final var e = assertThrows(IllegalArgumentException.class, () -> reader("{\"a\": 1, \"b\": 01}").readInto(ctx));
+    assertTrue(e.getMessage().contains("byte 16"));
+    assertEquals(1, ctx.getValue("a").asInt());
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("b"));
+    for (final String json : new String[]{"{\"a\": 1", "{\"a\" 1}", "{\"a\": 1,}", "{\"a\": \"b}", "{\"a\": -}", "{\"a\": 1.}", "{\"a\": 1} x",
+        "{\"a\": \"\\x\"}", "{\"a\": [1 2]}", "{a: 1}"}) {
+      assertThrows(IllegalArgumentException.class, () -> reader(json).readInto(new AppContext()), json);
+    }
+  }
+
+  @Test
+  public void invalidUtf8IsRejected() {
+    final var bytes = new byte[]{'{', '"', 'a', '"', ':', '"', (byte) 0xC0, (byte) 0x80, '"', '}'};
+    assertThrows(IllegalArgumentException.class, () -> new Utf8JsonContextValueReader(ByteBuffer.wrap(bytes)).readInto(new AppContext()));
+  }
+}
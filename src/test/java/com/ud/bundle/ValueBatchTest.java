@@ -0,0 +1,85 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class ValueBatchTest {
+
+  @Test
+  public void batchRegistersEveryValue() {
+    final var ctx = new AppContext();
+    ctx.registerValue("service.name", "existing");
+    final var batch = ctx.batch()
+        .add("service.host", "localhost")
+        .add("service.port", 8080)
+        .add("service.limits.0", 1L)
+        .add("service.limits.1", 2L)
+        .add("other", 0.5, TestQualifier.ONE);
+    assertEquals(5, batch.size());
+    batch.register();
+
+    assertEquals("existing", ctx.getValue("service.name").asString());
+    assertEquals("localhost", ctx.getValue("service.host").asString());
+    assertEquals(8080, ctx.getValue("service.port").asInt());
+    assertEquals(2, ctx.getValue("service.limits").asLongArray().length);
+    assertEquals(0.5, ctx.getValue("other", TestQualifier.ONE).asDouble());
+    assertNull(ctx.getValue("other"));
+    assertSame(ctx.getValue("service"), ctx.getValue("service.port").parent());
+    assertThrows(IllegalStateException.class, batch::register);
+  }
+
+  @Test
+  public void invalidEntriesRegisterNothing() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a", 1);
+    final var registered = ctx.batch().add("b", 2).add("a", 3);
+    assertThrows(IllegalArgumentException.class, registered::register);
+    final var wrongType = ctx.batch().add("b", 2).add("c", new Object());
+    assertThrows(IllegalArgumentException.class, wrongType::register);
+    assertThrows(IllegalArgumentException.class, () -> ctx.getValue("b"));
+    assertEquals(0, registered.registeredCount());
+  }
+
+  @Test
+  public void clashesWithinBatchAreRejected() {
+    final var ctx = new AppContext();
+    final var clashing = ctx.batch().add("a.b", 1).add("a.c", 2).add("a.b", 3);
+    assertThrows(IllegalArgumentException.class, clashing::register);
+    assertEquals(2, clashing.registeredCount());
+    assertThrows(IllegalArgumentException.class, () -> ctx.batch().add("a.b", 1).add("a.b", 2).register());
+    assertThrows(IllegalArgumentException.class, () -> ctx.batch().add("c", 1).add("c.d", 2).register());
+    assertThrows(IllegalArgumentException.class, () -> ctx.batch().add("e.0", 1).add("e.f", 2).register());
+  }
+
+  @Test
+  public void registerValuesSortsPathsByPrefix() {
+    final var values = new HashMap<String, Object>();
+    for (int i = 11; i >= 0; i--) {
+      values.put("list." + i, (long) i);
+      values.put("tenants.t" + i + ".host", "host-" + i);
+    }
+    final var ctx = new AppContext();
+    ctx.registerValues(values, TestQualifier.TWO);
+
+    final var list = ctx.getValue("list", TestQualifier.TWO).asLongArray();
+    assertEquals(12, list.length);
+    assertEquals(11, list[11]);
+    assertEquals("host-3", ctx.getValue("tenants.t3.host", TestQualifier.TWO).asString());
+    assertTrue(ctx.getValue("tenants", TestQualifier.TWO).isObject());
+
+    ctx.registerValues(Map.of("more", "x"));
+    assertEquals("x", ctx.getValue("more").asString());
+  }
+
+  private enum TestQualifier {
+    ONE,
+    TWO
+  }
+}
@@ -0,0 +1,171 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.ud.bundle.reader.JsonContextValueReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ValueBinderTest {
+
+  private static final String JSON = "{\"server\": {\"host\": \"localhost\", \"port\": 8080, \"timeoutMs\": 1500, \"ratio\": 0.25,"
+      + " \"weights\": [1, 2, 3], \"tags\": [\"a\", \"b\"], \"tls\": {\"enabled\": \"yes\", \"port\": 8443},"
+      + " \"backends\": [{\"host\": \"b1\", \"port\": 1}, {\"host\": \"b2\", \"port\": 2}]}}";
+
+  @TempDir
+  Path dir;
+
+  @Test
+  public void bindPojo() {
+    final var ctx = read();
+    final var server = ctx.bind("server", Server.class);
+    assertEquals("localhost", server.host);
+    assertEquals(8080, server.port);
+    assertEquals(1500L, server.timeoutMs);
+    assertEquals(0.25, server.ratio);
+    assertArrayEquals(new long[] {1, 2, 3}, server.weights);
+    assertEquals(List.of("a", "b"), server.tags);
+    assertEquals(8443, server.tls.port);
+    assertEquals("yes", server.tls.enabled);
+    assertEquals(2, server.backends.size());
+    assertEquals("b2", server.backends.get(1).host);
+    // Missing values keep the default.
+    assertEquals(7, server.retries);
+    assertNotSame(server, ctx.bind("server", Server.class));
+  }
+
+  @Test
+  public void bindRecordCompiledAtRuntime() throws Exception {
+    assumeTrue(Runtime.version().feature() >= 16);
+    final var source = dir.resolve("Endpoint.java");
+    Files.writeString(source, "public record Endpoint(String host, int port, Long missing) {}", StandardCharsets.UTF_8);
+    // The tests target 11 as well, so the record is compiled here, and javax.tools is looked up reflectively as the module doesn't read it.
+    final var compiler = Class.forName("javax.tools.ToolProvider").getMethod("getSystemJavaCompiler").invoke(null);
+    final var run = Class.forName("javax.tools.Tool")
+        .getMethod("run", InputStream.class, OutputStream.class, OutputStream.class, String[].class);
+    assertEquals(0, run.invoke(compiler, null, null, null, new String[] {"-d", dir.toString(), source.toString()}));
+    try (final var loader = new URLClassLoader(new URL[] {dir.toUri().toURL()}, getClass().getClassLoader())) {
+      final var type = loader.loadClass("Endpoint");
+      final var endpoint = read().bind("server.tls", type);
+      assertEquals(8443, type.getMethod("port").invoke(endpoint));
+      assertNull(type.getMethod("host").invoke(endpoint));
+      assertNull(type.getMethod("missing").invoke(endpoint));
+    }
+  }
+
+  @Test
+  public void bindingFailuresThrowException() {
+    final var ctx = read();
+    assertThrows(IllegalArgumentException.class, () -> ctx.bind("server.host", Server.class));
+    assertThrows(IllegalArgumentException.class, () -> ctx.bind("server.missing", Server.class));
+    assertThrows(IllegalArgumentException.class, () -> ctx.bind("server", Unsupported.class));
+    assertThrows(IllegalArgumentException.class, () -> ctx.bind("server", NoDefaultConstructor.class));
+    assertThrows(IllegalArgumentException.class, () -> ctx.bind("server", WrongType.class));
+  }
+
+  @Test
+  public void liveBindingFollowsUpdates() {
+    final var executor = new QueuedExecutor();
+    final var ctx = new AppContext(executor);
+    new JsonContextValueReader(JSON).readInto(ctx);
+    try (final var binding = ctx.bindLive("server", Server.class)) {
+      final var first = binding.get();
+      assertEquals(8080, first.port);
+      ctx.getValue("server.port").update(9090L);
+      ctx.getValue("server.backends.0.host").update("b0");
+      assertSame(first, binding.get());
+      executor.runAll();
+      assertEquals(9090, binding.get().port);
+      assertEquals("b0", binding.get().backends.get(0).host);
+      assertEquals(8080, first.port);
+
+      binding.close();
+      ctx.getValue("server.port").update(1L);
+      executor.runAll();
+      assertEquals(9090, binding.get().port);
+    }
+  }
+
+  private static AppContext read() {
+    final var ctx = new AppContext();
+    new JsonContextValueReader(JSON).readInto(ctx);
+    return ctx;
+  }
+
+  static class Server {
+
+    String host;
+    int port;
+    long timeoutMs;
+    double ratio;
+    long[] weights;
+    List<String> tags;
+    Tls tls;
+    List<Backend> backends;
+    int retries = 7;
+  }
+
+  static class Tls {
+
+    String enabled;
+    Integer port;
+  }
+
+  static class Backend {
+
+    String host;
+    long port;
+  }
+
+  static class Unsupported {
+
+    boolean flag;
+  }
+
+  static class NoDefaultConstructor {
+
+    final String host;
+
+    NoDefaultConstructor(final String host) {
+      this.host = host;
+    }
+  }
+
+  static class WrongType {
+
+    int host;
+  }
+
+  private static final class QueuedExecutor implements Executor {
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public void execute(final Runnable command) {
+      tasks.add(command);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.poll().run();
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class ValuePathTest {
+
+  @Test
+  public void parseClassifiesSegments() {
+    final var path = ValuePath.of("servers.0.port");
+    assertEquals(3, path.size());
+    assertEquals("servers", path.segment(0));
+    assertFalse(path.isIndex(0));
+    assertTrue(path.isIndex(1));
+    assertEquals(0, path.index(1));
+    assertFalse(path.isIndex(2));
+  }
+
+  @Test
+  public void parseNormalisesCase() {
+    final var path = ValuePath.of("Server.TimeoutMs");
+    assertEquals("server.timeoutms", path.toString());
+    assertEquals(ValuePath.of("server.timeoutms"), path);
+  }
+
+  @Test
+  public void parseTreatsNonIndexNumbersAsKeys() {
+    final var path = ValuePath.of("a.-1.99999999999");
+    assertFalse(path.isIndex(1));
+    assertFalse(path.isIndex(2));
+    assertThrows(IllegalStateException.class, () -> path.index(1));
+  }
+
+  @Test
+  public void prefixReturnsContainerPaths() {
+    final var path = ValuePath.of("a.b.0.c");
+    assertEquals("a", path.prefix(1));
+    assertEquals("a.b", path.prefix(2));
+    assertEquals("a.b.0", path.prefix(3));
+    assertEquals("a.b.0.c", path.prefix(4));
+  }
+
+  @Test
+  public void childAppendsSegments() {
+    final var path = ValuePath.of("a").child("B").child(2).child("c.d");
+    assertEquals(ValuePath.of("a.b.2.c.d"), path);
+    assertTrue(path.isIndex(2));
+    assertEquals("a.b.2", path.prefix(3));
+  }
+
+  @Test
+  public void parseBlankPathThrowsException() {
+    assertThrows(IllegalArgumentException.class, () -> ValuePath.of(" "));
+  }
+
+  @Test
+  public void parseBlankSegmentThrowsException() {
+    assertThrows(IllegalArgumentException.class, () -> ValuePath.of("a..b"));
+    assertThrows(IllegalArgumentException.class, () -> ValuePath.of("a.b."));
+  }
+
+  @Test
+  public void parseRootIndexThrowsException() {
+    assertThrows(IllegalArgumentException.class, () -> ValuePath.of("0.a"));
+  }
+}
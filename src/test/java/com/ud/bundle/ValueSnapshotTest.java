@@ -0,0 +1,117 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.ud.bundle.reader.JsonContextValueReader;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ValueSnapshotTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  public void snapshotRoundTripsValues() {
+    final var json = "{\"service\": {\"host\": \"h\u00f6st\", \"port\": 8080, \"ratio\": 0.5, \"tags\": [\"a\", \"b\"],"
+        + " \"servers\": [{\"name\": \"one\"}, {\"name\": \"two\"}], \"big\": 123456789012345678901234567890}}";
+    final var ctx = new AppContext();
+    new JsonContextValueReader(json).readInto(ctx);
+    final var file = dir.resolve("values.snapshot");
+    ctx.writeSnapshot(file);
+
+    final var loaded = new AppContext();
+    loaded.loadSnapshot(file);
+    assertEquals("h\u00f6st", loaded.getValue("service.host").asString());
+    assertEquals(8080, loaded.getValue("service.port").asInt());
+    assertEquals(0.5, loaded.getValue("service.ratio").asDouble());
+    assertEquals("b", loaded.getValue("service.tags.1").asString());
+    assertEquals("two", loaded.getValue("service.servers.1.name").asString());
+    assertEquals(new BigInteger("123456789012345678901234567890"), loaded.getValue("service.big").asNumber());
+    assertTrue(loaded.getValue("service.servers").isArray());
+    assertTrue(loaded.getValue("service.servers.0").isObject());
+    assertEquals(loaded.getValue("service"), loaded.getValue("service.port").parent());
+  }
+
+  @Test
+  public void snapshotKeepsDenseArrays() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.0", 1L, TestQualifier.ONE);
+    ctx.registerValue("a.1", 2L, TestQualifier.ONE);
+    ctx.registerValue("b.0", 0.25);
+    final var file = dir.resolve("values.snapshot");
+    ctx.writeSnapshot(file);
+
+    final var loaded = new AppContext();
+    loaded.loadSnapshot(file);
+    assertEquals(2, loaded.getValue("a.1", TestQualifier.ONE).asLong());
+    assertNull(loaded.getValue("a.1"));
+    assertEquals(2, loaded.getValue("a", TestQualifier.ONE).asLongArray().length);
+    assertEquals(0.25, loaded.getValue("b").asDoubleArray()[0]);
+  }
+
+  @Test
+  public void snapshotKeepsQualifiersAndGaps() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.b", 1, TestQualifier.ONE);
+    ctx.registerValue("a.c", "x", TestQualifier.TWO);
+    ctx.registerValue("list.2", 3L);
+    final var file = dir.resolve("values.snapshot");
+    ctx.writeSnapshot(file);
+
+    final var loaded = new AppContext();
+    loaded.loadSnapshot(file);
+    assertEquals(1, loaded.getValue("a.b", TestQualifier.ONE).asInt());
+    assertNull(loaded.getValue("a.b"));
+    assertEquals("x", loaded.getValue("a.c", TestQualifier.TWO).asString());
+    assertEquals(3, loaded.getValue("list.2").asLong());
+    assertNull(loaded.getValue("list").child(0));
+  }
+
+  @Test
+  public void loadedValuesCanBeUpdated() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a", 1);
+    final var file = dir.resolve("values.snapshot");
+    ctx.writeSnapshot(file);
+
+    final var loaded = new AppContext();
+    loaded.loadSnapshot(file);
+    final var value = loaded.getValue("a");
+    assertEquals(1L, value.update(2));
+    assertEquals(2, value.asInt());
+    assertEquals(1, value.version());
+  }
+
+  @Test
+  public void loadIntoContextWithSamePathThrowsException() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.b", 1);
+    final var file = dir.resolve("values.snapshot");
+    ctx.writeSnapshot(file);
+
+    final var other = new AppContext();
+    other.registerValue("a.c", 2);
+    other.loadSnapshot(file);
+    assertEquals(1, other.getValue("a.b").asInt());
+    assertThrows(IllegalArgumentException.class, () -> other.loadSnapshot(file));
+  }
+
+  @Test
+  public void loadOtherFileThrowsException() throws IOException {
+    final var file = Files.writeString(dir.resolve("values.json"), "{\"a\": 1}");
+    assertThrows(IllegalArgumentException.class, () -> new AppContext().loadSnapshot(file));
+  }
+
+  private enum TestQualifier {
+    ONE,
+    TWO
+  }
+}
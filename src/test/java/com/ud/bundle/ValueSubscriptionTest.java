@@ -0,0 +1,209 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class ValueSubscriptionTest {
+
+  @Test
+  public void updatesAreNotDeliveredOnTheWriterThread() {
+    final var executor = new QueuedExecutor();
+    final var ctx = new AppContext(executor);
+    final var value = ctx.registerValue("a", 1);
+    final var batches = new ArrayList<List<ValueChange>>();
+    ctx.subscribe("a", batches::add);
+
+    value.update(2);
+    assertTrue(batches.isEmpty());
+    executor.runAll();
+    assertEquals(1, batches.size());
+    final var change = batches.get(0).get(0);
+    assertEquals(ValuePath.of("a"), change.getPath());
+    assertEquals(1, change.getOldValue());
+    assertEquals(2, change.getNewValue());
+    assertEquals(1, change.getVersion());
+  }
+
+  @Test
+  public void subscribeToElementOfDenseArray() {
+    final var executor = new QueuedExecutor();
+    final var ctx = new AppContext(executor);
+    final var first = ctx.registerValue("ports.0", 0L);
+    ctx.registerValue("ports.1", 0L);
+    final var batches = new ArrayList<List<ValueChange>>();
+    ctx.subscribe("ports.1", batches::add);
+
+    ctx.getValue("ports.1").update(8080L);
+    first.update(1L);
+    executor.runAll();
+    assertEquals(1, batches.size());
+    assertEquals(ValuePath.of("ports.1"), batches.get(0).get(0).getPath());
+    assertEquals(8080L, batches.get(0).get(0).getNewValue());
+  }
+
+  @Test
+  public void updatesAreCoalescedPerLeaf() {
+    final var executor = new QueuedExecutor();
+    final var ctx = new AppContext(executor);
+    final var a = ctx.registerValue("limits.a", 0);
+    final var b = ctx.registerValue("limits.b", 0);
+    final var batches = new ArrayList<List<ValueChange>>();
+    ctx.subscribe("limits", batches::add);
+
+    for (int i = 1; i <= 10_000; i++) {
+      a.update(i);
+      b.update(-i);
+    }
+    assertEquals(1, executor.size());
+    executor.runAll();
+    assertEquals(1, batches.size());
+    final var batch = batches.get(0);
+    assertEquals(2, batch.size());
+    assertEquals(ValuePath.of("limits.a"), batch.get(0).getPath());
+    assertEquals(0, batch.get(0).getOldValue());
+    assertEquals(10_000, batch.get(0).getNewValue());
+    assertEquals(10_000, batch.get(0).getVersion());
+    assertEquals(-10_000, batch.get(1).getNewValue());
+  }
+
+  @Test
+  public void changesOfferedOutOfOrderKeepTheLatestVersion() {
+    final var executor = new QueuedExecutor();
+    final var ctx = new AppContext(executor);
+    final var a = ctx.registerValue("a", 1);
+    a.update(2);
+    a.update(3);
+    final var batches = new ArrayList<List<ValueChange>>();
+    final var subscription = ctx.subscribe("a", batches::add);
+
+    // As if the thread that made the first update was overtaken by the one that made the second.
+    subscription.offer(new ValueChange(ValuePath.of("a"), a, 2, 3, 2));
+    subscription.offer(new ValueChange(ValuePath.of("a"), a, 1, 2, 1));
+    executor.runAll();
+    assertEquals(1, batches.size());
+    final var change = batches.get(0).get(0);
+    assertEquals(1, change.getOldValue());
+    assertEquals(3, change.getNewValue());
+    assertEquals(2, change.getVersion());
+  }
+
+  @Test
+  public void staleChangeOfferedAfterDeliveryIsDropped() {
+    final var executor = new QueuedExecutor();
+    final var ctx = new AppContext(executor);
+    final var a = ctx.registerValue("a", 1);
+    final var batches = new ArrayList<List<ValueChange>>();
+    final var subscription = ctx.subscribe("a", batches::add);
+    a.update(2);
+    a.update(3);
+    executor.runAll();
+    subscription.offer(new ValueChange(ValuePath.of("a"), a, 1, 2, 1));
+    executor.runAll();
+    assertEquals(1, batches.size());
+    assertEquals(3, batches.get(0).get(0).getNewValue());
+  }
+
+  @Test
+  public void listenerThrowingErrorStillGetsLaterChanges() {
+    final var executor = new QueuedExecutor();
+    final var ctx = new AppContext(executor);
+    final var a = ctx.registerValue("a", 1);
+    final var batches = new ArrayList<List<ValueChange>>();
+    ctx.subscribe("a", changes -> {
+      batches.add(changes);
+      if (batches.size() == 1) {
+        throw new AssertionError("listener failed");
+      }
+    });
+    a.update(2);
+    assertThrows(AssertionError.class, executor::runAll);
+    a.update(3);
+    executor.runAll();
+    assertEquals(2, batches.size());
+    assertEquals(3, batches.get(1).get(0).getNewValue());
+  }
+
+  @Test
+  public void subtreeSubscriptionsOnlySeeTheirSubtree() {
+    final var executor = new QueuedExecutor();
+    final var ctx = new AppContext(executor);
+    final var inside = ctx.registerValue("a.b.0", "x");
+    final var outside = ctx.registerValue("a.c", "y");
+    final var subtree = new ArrayList<ValueChange>();
+    final var everything = new ArrayList<ValueChange>();
+    ctx.subscribe("a.b", subtree::addAll);
+    ctx.subscribe("a", everything::addAll);
+
+    inside.update("x2");
+    outside.update("y2");
+    executor.runAll();
+    assertEquals(1, subtree.size());
+    assertEquals(inside, subtree.get(0).getValue());
+    assertEquals(2, everything.size());
+  }
+
+  @Test
+  public void closedSubscriptionsAreNotCalled() {
+    final var executor = new QueuedExecutor();
+    final var ctx = new AppContext(executor);
+    final var value = ctx.registerValue("a", 1);
+    final var changes = new ArrayList<ValueChange>();
+    final var subscription = ctx.subscribe("a", changes::addAll);
+
+    value.update(2);
+    subscription.close();
+    value.update(3);
+    executor.runAll();
+    assertTrue(changes.isEmpty());
+  }
+
+  @Test
+  public void perSubscriptionExecutorIsUsed() throws Exception {
+    final var contextExecutor = new QueuedExecutor();
+    final var ctx = new AppContext(contextExecutor);
+    final var value = ctx.registerValue("a", 1);
+    final var delivered = new CountDownLatch(1);
+    ctx.subscribe("a", changes -> delivered.countDown(), Runnable::run);
+
+    value.compareAndUpdate(1, 2);
+    assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    assertEquals(0, contextExecutor.size());
+  }
+
+  @Test
+  public void subscribeToUnregisteredPathThrowsException() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.b", 1);
+    assertThrows(IllegalArgumentException.class, () -> ctx.subscribe("a.c", changes -> {}));
+  }
+
+  private static final class QueuedExecutor implements Executor {
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public void execute(final Runnable task) {
+      tasks.add(task);
+    }
+
+    int size() {
+      return tasks.size();
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.poll().run();
+      }
+    }
+  }
+}
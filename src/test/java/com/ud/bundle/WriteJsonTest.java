@@ -0,0 +1,120 @@
+package com.ud.bundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonParser;
+import com.ud.bundle.reader.JsonContextValueReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class WriteJsonTest {
+
+  private static final String JSON = "{\"service\": {\"host\": \"h\u00f6st\", \"port\": 8080, \"ratio\": 0.5, \"tags\": [\"a\", \"b\"],"
+      + " \"limits\": [1, 2, 3], \"weights\": [0.25, 0.75], \"servers\": [{\"name\": \"one\"}, {\"name\": \"two\"}],"
+      + " \"big\": 123456789012345678901234567890}, \"other\": \"x\"}";
+
+  @Test
+  public void writeWholeContext() {
+    final var ctx = new AppContext();
+    new JsonContextValueReader(JSON).readInto(ctx);
+    final var out = new StringWriter();
+    ctx.writeJson(out);
+    assertEquals(new JsonParser().parse(JSON), new JsonParser().parse(out.toString()));
+  }
+
+  @Test
+  public void writeSubtreeAndLeaves() {
+    final var ctx = new AppContext();
+    new JsonContextValueReader(JSON).readInto(ctx);
+    assertEquals(new JsonParser().parse("[{\"name\": \"one\"}, {\"name\": \"two\"}]"), new JsonParser().parse(write(ctx, "service.servers")));
+    assertEquals("[1,2,3]", write(ctx, "service.limits"));
+    assertEquals("\"h\u00f6st\"", write(ctx, "service.host"));
+    assertEquals("8080", write(ctx, "service.port"));
+    assertEquals("0.75", write(ctx, "service.weights.1"));
+    assertThrows(IllegalArgumentException.class, () -> write(ctx, "service.missing"));
+  }
+
+  @Test
+  public void writeReflectsUpdatesAndGaps() {
+    final var ctx = new AppContext();
+    ctx.registerValue("a.0", 1L);
+    ctx.registerValue("a.1", 2L);
+    ctx.registerValue("b.2", "x");
+    ctx.getValue("a.1").update("two");
+    assertEquals(new JsonParser().parse("{\"a\": [1, \"two\"], \"b\": [null, null, \"x\"]}"), new JsonParser().parse(write(ctx, null)));
+  }
+
+  @Test
+  public void writeContainersLargerThanAChunk() {
+    final var ctx = new AppContext();
+    final var expected = new StringBuilder("{\"list\": [");
+    for (int i = 0; i < 2500; i++) {
+      ctx.registerValue("list." + i, "v" + i);
+      expected.append(i == 0 ? "" : ", ").append("\"v").append(i).append('"');
+    }
+    expected.append("], \"map\": {");
+    for (int i = 0; i < 2500; i++) {
+      ctx.registerValue("map.k" + i, i);
+      expected.append(i == 0 ? "" : ", ").append("\"k").append(i).append("\": ").append(i);
+    }
+    expected.append("}}");
+    assertEquals(new JsonParser().parse(expected.toString()), new JsonParser().parse(write(ctx, null)));
+  }
+
+  @Test
+  public void writeToChannel() {
+    final var ctx = new AppContext();
+    new JsonContextValueReader(JSON).readInto(ctx);
+    final var bytes = new ByteArrayOutputStream();
+    ctx.writeJson("service.host", Channels.newChannel(bytes));
+    assertEquals("\"h\u00f6st\"", bytes.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void slowWriterDoesNotHoldUpRegistration() throws Exception {
+    final var ctx = new AppContext();
+    ctx.registerValue("a", 1L);
+    final var writing = new CountDownLatch(1);
+    final var release = new CountDownLatch(1);
+    final var out = new StringWriter() {
+      @Override
+      public void write(final String str) {
+        writing.countDown();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.write(str);
+      }
+    };
+    final var written = CompletableFuture.runAsync(() -> ctx.writeJson(out));
+    try {
+      assertTrue(writing.await(5, TimeUnit.SECONDS));
+      CompletableFuture.runAsync(() -> ctx.registerValue("b", 2L)).get(1, TimeUnit.SECONDS);
+    } finally {
+      release.countDown();
+    }
+    written.get(5, TimeUnit.SECONDS);
+    // Registered after the keys of the root object were listed, so it isn't part of what was written.
+    assertEquals(new JsonParser().parse("{\"a\": 1}"), new JsonParser().parse(out.toString()));
+  }
+
+  private static String write(final AppContext ctx, final String path) {
+    final var out = new StringWriter();
+    if (path == null) {
+      ctx.writeJson(out);
+    } else {
+      ctx.writeJson(path, out);
+    }
+    return out.toString();
+  }
+}